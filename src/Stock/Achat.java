@@ -17,14 +17,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import javax.swing.*;
-import net.sf.jasperreports.engine.JasperCompileManager;
-import net.sf.jasperreports.engine.JasperFillManager;
-import net.sf.jasperreports.engine.JasperPrint;
-import net.sf.jasperreports.engine.JasperReport;
-import net.sf.jasperreports.engine.design.JRDesignQuery;
-import net.sf.jasperreports.engine.design.JasperDesign;
-import net.sf.jasperreports.engine.xml.JRXmlLoader;
-import net.sf.jasperreports.view.JasperViewer;
 import org.jdesktop.swingx.autocomplete.AutoCompleteDecorator;
 //import net.proteanit.sql.DbUtils;
 
@@ -65,7 +57,7 @@ public class Achat extends javax.swing.JFrame {
         KeyboardFocusManager.getCurrentKeyboardFocusManager()
                 .setDefaultFocusTraversalKeys(
                 KeyboardFocusManager.FORWARD_TRAVERSAL_KEYS, ftk);
-        AutoCompleteDecorator.decorate(jComboBox2);
+        Recherche_Article.installer(jComboBox2, base);
         AutoCompleteDecorator.decorate(jComboBox1);
     }
     
@@ -686,20 +678,12 @@ public class Achat extends javax.swing.JFrame {
             txt_titre.setBackground(Color.BLUE);
             txt_titre.setForeground(Color.WHITE);
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-            String sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;           
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            cnx = javaconnect.cnx_activite(base);
             St = cnx.createStatement();
-            }
+            dao = new Dao_Stock(cnx);
             query = "truncate table facture_a";
             St.execute(query);
+            totaux.vider();
           // query = "select count(*) as nbre_enr FROM " + fichier_master + ";";
            // St.execute(query);
             //Rs = St.executeQuery(query);
@@ -725,7 +709,7 @@ public class Achat extends javax.swing.JFrame {
                 date_fact.setDateFormatString("yyyy-MM-dd");
                 //JOptionPane.showMessageDialog(null, txt_nfact.getText());
                 fillCombo1();
-                fillCombo2();
+                charger_articles();
             //}
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur de connexcion\n" + e.getMessage());
@@ -736,25 +720,10 @@ public class Achat extends javax.swing.JFrame {
     
     
     private void mettre_jour_stock(String xcode_art, String oper, String qte) {
-        int x_resultat = 0;                
         try {
-            if (!parametre.equals("")) {                
-                String sql = "select stock_f,stock_bl from article where narticle = '" + xcode_art + "'";                
-                Rs = St.executeQuery(sql);                
-                if (Rs.next()) {
-                    //String xstock_f = Rs.getString("stock_f");
-                    String xstock_f = Rs.getString(parametre);
-                    int v_xstock_f = Integer.parseInt(xstock_f);
-                    int xqte = Integer.parseInt(qte);
-                    
-                    if (!"ajouter".equals(oper)) {                        
-                        x_resultat = v_xstock_f - xqte;
-                    } else {                        
-                        x_resultat = v_xstock_f + xqte;                        
-                    }
-                    String query = "update article set " + parametre + " = '" + x_resultat + "' where narticle = '" + xcode_art + "'";                    
-                    St3.executeUpdate(query);                    
-                }                
+            if (!parametre.equals("")) {
+                int xqte = Integer.parseInt(qte);
+                new Mouvement_Stock().ajouter(parametre, xcode_art, "ajouter".equals(oper) ? xqte : -xqte).appliquer(cnx);
             }
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans la mise à jour dans la table Article\n" + e.getMessage());
@@ -765,34 +734,17 @@ public class Achat extends javax.swing.JFrame {
     private void calcul_des_montant() {
         
         try {            
-            String sql = "select sum(qte*prix) as \"s_total\",sum(qte*prix*tva/100) as \"s_tva\" from facture_a";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-                String add1 = Rs.getString("s_total") + "0";
-                String add2 = Rs.getString("s_tva") + "0";
-                if ("null0".equals(add1)) {
-                    add1 = "0.0";
-                    add2 = "0.0";
-                } else {
-                    add1 = Rs.getString("s_total");
-                    add2 = Rs.getString("s_tva");
-                }                
-                double add1_d = Double.parseDouble(add1);
-                double add2_d = Double.parseDouble(add2);
-                xtot_ht = add1_d;
-                xtot_tva = add2_d;
-                add1 = mntFmt.mntFmt(add1_d);
-                add2 = mntFmt.mntFmt(add2_d);
-                txt_s_total.setText(add1);
-                txt_total_tva.setText(add2);
-                timbre = add1_d * 1 / 100;
-                if (timbre > 2500.00) {
-                    timbre = 2500.00;
-                }
-                String add3 = mntFmt.mntFmt(timbre);
-                txt_timbre.setText(add3);
-                
-            }
+            double add1_d = totaux.ht();
+            double add2_d = totaux.tva();
+            xtot_ht = add1_d;
+            xtot_tva = add2_d;
+            String add1 = mntFmt.mntFmt(add1_d);
+            String add2 = mntFmt.mntFmt(add2_d);
+            txt_s_total.setText(add1);
+            txt_total_tva.setText(add2);
+            timbre = Totaux_Document.timbre(add1_d);
+            String add3 = mntFmt.mntFmt(timbre);
+            txt_timbre.setText(add3);
             double ttc = xtot_ht + xtot_tva + timbre;
             String add_ttc = mntFmt.mntFmt(ttc);
             txt_TTC.setText(add_ttc);
@@ -810,7 +762,7 @@ public class Achat extends javax.swing.JFrame {
 
     private void champs_vide() {        
         txt_code_art.setText("");        
-        jComboBox2.setSelectedIndex(0);        
+        jComboBox2.setSelectedItem("");        
         txt_prix_unit.setText("");
         txt_tva.setText("");        
         txt_stock_f.setText("");        
@@ -831,14 +783,7 @@ public class Achat extends javax.swing.JFrame {
             txt_code_art.setText(add3);
             String add4 = Rs.getString("Designation");
             
-            for (j = 0; j < jComboBox2.getItemCount(); j++) {
-                
-                if (add4.equals(jComboBox2.getItemAt(j).toString())) {
-                    
-                    break;                    
-                }
-            }
-            jComboBox2.setSelectedIndex(j);            
+            jComboBox2.setSelectedItem(add4);
             String add5 = Rs.getString("Prix Unitaire");
             txt_prix_unit.setText(mntFmt.mntFmt(Double.parseDouble(add5)));
             String add6 = Rs.getString("TVA");
@@ -898,10 +843,9 @@ public class Achat extends javax.swing.JFrame {
     private void ajout_ligne() {
         try {
             //date_rc.setDateFormatString("yyyy-MM-dd");  
-            String sql = "select * from article where narticle='" + txt_code_art.getText() + "'";
-            Rs = St.executeQuery(sql);
+            Rs = dao.article(txt_code_art.getText());
             if (Rs.next()) {                
-                sql = "select id, Narticle , prix, tva, qte , total_ligne from facture_a where narticle='" + txt_code_art.getText() + "'";
+                String sql = "select id, Narticle , prix, tva, qte , total_ligne from facture_a where narticle='" + txt_code_art.getText() + "'";
                 //Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test", "root", "");
                 // JOptionPane.showMessageDialog(null,sql);
                 St1 = cnx.createStatement();
@@ -910,6 +854,7 @@ public class Achat extends javax.swing.JFrame {
                 Rs = St.executeQuery(sql);
                 if (Rs.next()) {                    
                     String add7 = Rs.getString("qte");
+                    double taux_tva = Rs.getDouble("tva");
                     // JOptionPane.showMessageDialog(null,add7);
                     mettre_jour_stock(txt_code_art.getText(), "restituer", add7);
                     String query = "update facture_a set qte ='"
@@ -917,6 +862,7 @@ public class Achat extends javax.swing.JFrame {
                             + prix_unitaire.toString() + "', total_ligne ='"
                             + stot_ligne.toString() + "' where narticle = '" + txt_code_art.getText() + "'";                    
                     St.executeUpdate(query);
+                    totaux.ligne(txt_code_art.getText(), Integer.parseInt(txt_qte.getText()), prix_unitaire, taux_tva);
                     mettre_jour_stock(txt_code_art.getText(), "ajouter", txt_qte.getText());
                     Update_Table_Factures();
                     // JOptionPane.showMessageDialog(null,"ligne moodifiée !");                        
@@ -932,6 +878,7 @@ public class Achat extends javax.swing.JFrame {
                             + parametre + "')";
                    // JOptionPane.showMessageDialog(null,query);
                     St.executeUpdate(query);
+                    totaux.ligne(txt_code_art.getText(), Integer.parseInt(txt_qte.getText()), prix_unitaire, Double.parseDouble(txt_tva.getText()));
                     mettre_jour_stock(txt_code_art.getText(), "ajouter", txt_qte.getText());
                     Update_Table_Factures();                    
                     
@@ -987,17 +934,14 @@ public class Achat extends javax.swing.JFrame {
             return;
         }
         try {
-            String sql = "select * from article where narticle = '" + txt_code_art.getText() + "'";
-            Rs = St.executeQuery(sql);            
-            if (Rs.next()) {
-                //JOptionPane.showMessageDialog(null, "trouvé");
+            boolean trouve = Index_Codes.existe(base, Index_Codes.ARTICLE, txt_code_art.getText());
+            if (trouve) {
+                Rs = dao.article(txt_code_art.getText());
+                trouve = Rs.next();
+            }
+            if (trouve) {
                 String add4 = Rs.getString("Designation");                
-                for (j = 0; j < jComboBox2.getItemCount(); j++) {                    
-                    if (add4.equals(jComboBox2.getItemAt(j).toString())) {                        
-                        break;                        
-                    }
-                }
-                jComboBox2.setSelectedIndex(j);                
+                jComboBox2.setSelectedItem(add4);
                 String add5 = Rs.getString("Prix_unitaire");
                 txt_prix_unit.setText(mntFmt.mntFmt(Double.parseDouble(add5)));                
                 String add6 = Rs.getString("TVA");
@@ -1009,7 +953,7 @@ public class Achat extends javax.swing.JFrame {
                 txt_qte.setText("");
                 txt_prix_tot.setText("");                
             } else {
-                jComboBox2.setSelectedIndex(0);                
+                jComboBox2.setSelectedItem("");                
                 txt_prix_unit.setText("");
                 txt_tva.setText("");                
                 txt_stock_f.setText("");                
@@ -1032,42 +976,27 @@ public class Achat extends javax.swing.JFrame {
         
     }//GEN-LAST:event_txt_qteActionPerformed
     private void fillCombo1() {
-        String sql = "select * from fournisseur order by nom_fournisseur";
         try {
-            jComboBox1.addItem("          ");            
-            Rs = St.executeQuery(sql);
-            while (Rs.next()) {
-                String nme = Rs.getString("nom_fournisseur");
-                //String nme1 = Rs.getString("nfournisseur");
-                //jComboBox1.addItem(nme1 + " " + nme);
-                jComboBox1.addItem(nme);
-            }
-            //JOptionPane.showMessageDialog(null, jComboBox1.getItemCount());
+            jComboBox1.setModel(Listes_Reference.modele(base, Listes_Reference.FOURNISSEURS, true, false));
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
         }
     }
 
-    private void fillCombo2() {
-        String sql = "select * from article order by designation";
-        try {
-            jComboBox2.addItem("          ");            
-            Rs = St.executeQuery(sql);
-            while (Rs.next()) {
-                String nme = Rs.getString("designation");
-                //String nme1 = Rs.getString("narticle");
-                jComboBox2.addItem(nme);
+    /** Charge l'index des articles pour la recherche à la frappe (Recherche_Article). */
+    private void charger_articles() {
+        new Tache_Bd<Void>(this) {
+            @Override
+            protected Void executer() throws Exception {
+                Index_Articles.charger(base);
+                return null;
             }
-            
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
-        }
+        }.lancer();
     }
     
     private void txt_code_cliKeyReleased(java.awt.event.KeyEvent evt) {//GEN-FIRST:event_txt_code_cliKeyReleased
         try {
-            String sql = "select * from fournisseur where nfournisseur = '" + txt_code_cli.getText() + "'";
-            Rs = St.executeQuery(sql);            
+            Rs = dao.fournisseur(txt_code_cli.getText());
             if (Rs.next()) {
                 //JOptionPane.showMessageDialog(null, "trouvé");
                 String add4 = Rs.getString("nfournisseur");
@@ -1275,6 +1204,7 @@ public class Achat extends javax.swing.JFrame {
                                 + parametre + "')";
                         
                         St.executeUpdate(query);
+                        totaux.ligne(txt_code_art.getText(), Integer.parseInt(txt_qte.getText()), prix_unitaire, Double.parseDouble(txt_tva.getText()));
                         Update_Table_Factures();                        
                         mettre_jour_stock(txt_code_art.getText(), "ajouter", txt_qte.getText());
                         int lastRow = Table_Factures.getRowCount() - 1;
@@ -1291,50 +1221,36 @@ public class Achat extends javax.swing.JFrame {
                     txt_TTC.setText(add_ttc);
                 }                
                 date_fact.setDateFormatString("yyyy-MM-dd");                
-                String query = "insert into " + fichier_master + "(nfact,nfournisseur,date_fact,montant_ht,timbre,tva,autre_taxe,banque,ncheque) values ('"
-                        + txt_nfact.getText() + "','"
-                        + txt_code_cli.getText() + "','"
-                        + ((JTextField) date_fact.getDateEditor().getUiComponent()).getText() + "','"
-                        + xtot_ht.toString() + "','"
-                        + timbre.toString() + "','"
-                        + xtot_tva.toString() + "','"
-                        + stot_ligne.toString() + "','"
-                        + txt_dom_bnq + "','"
-                        + txt_ncheque + "')";
-                  
-                St.executeUpdate(query);
+                Enregistrement_Document doc = new Enregistrement_Document(base, fichier_master);
+                doc.maj("insert into " + fichier_master + "(nfact,nfournisseur,date_fact,montant_ht,timbre,tva,autre_taxe,banque,ncheque)"
+                        + " values (?,?,?,?,?,?,?,?,?)",
+                        txt_nfact.getText(), txt_code_cli.getText(),
+                        ((JTextField) date_fact.getDateEditor().getUiComponent()).getText(),
+                        xtot_ht, timbre, xtot_tva, stot_ligne, txt_dom_bnq, txt_ncheque);
                 if (!parametre.equals("")) {
-                    query = "select ca" + champf + " as ca from fournisseur where nfournisseur= '" + txt_code_cli.getText() + "'";
-                   
-                    St.execute(query);
-                    Rs = St.executeQuery(query);
-                    if (Rs.next()) {
-                        String add1 = Rs.getString("ca");                        
-                        double xtot_ttc = xtot_ht + timbre + xtot_tva + Double.parseDouble(add1);                        
-                        query = "update fournisseur set ca" + champf + "=" + xtot_ttc + " where nfournisseur= '" + txt_code_cli.getText() + "'";
-                        //JOptionPane.showMessageDialog(null,query);
-                        exp_spell = Numb_to_Spell.spell((xtot_ht + timbre + xtot_tva), "");;
-                        St.executeUpdate(query);                        
-                    } 
-                    } else {
-                         exp_spell = Numb_to_Spell.spell((xtot_ht + timbre + xtot_tva), "");
-                        
+                    doc.chiffre_affaires("fournisseur", "ca" + champf, "nfournisseur", txt_code_cli.getText(),
+                            xtot_ht + timbre + xtot_tva);
                 }
-                query ="update facture_a set nfact='" +txt_nfact.getText() + "'";
-                // JOptionPane.showMessageDialog(null, query);
-                St.executeUpdate(query);
-                query = "insert into " + fichier_detail + " (nfact,nfournisseur, narticle, qte,tva,prix,total_ligne) select nfact,nfournisseur, narticle, qte,tva,prix,total_ligne from facture_a";
-                // JOptionPane.showMessageDialog(null, query);
-                St.executeUpdate(query);
-                Update_Table_Factures();
-                query = "truncate table facture_temp";
-                St.execute(query);
-                query = "INSERT INTO facture_temp select id, NFact, Narticle, Qte, tva, prix,prix, total_ligne, type_fact from facture_a";
-                // JOptionPane.showMessageDialog(null, query);
-                St.execute(query);
-                calcul_des_montant();
-                query = "truncate table facture_a";
-                St.execute(query);
+                doc.maj("update facture_a set nfact=?", txt_nfact.getText());
+                doc.maj("insert into " + fichier_detail + " (nfact,nfournisseur, narticle, qte,tva,prix,total_ligne) select nfact,nfournisseur, narticle, qte,tva,prix,total_ligne from facture_a");
+                doc.maj("delete from facture_temp");
+                doc.maj("INSERT INTO facture_temp select id, NFact, Narticle, Qte, tva, prix,prix, total_ligne, type_fact from facture_a");
+                doc.maj("delete from facture_a");
+                final double ttc = xtot_ht + timbre + xtot_tva;
+                new Tache_Enregistrement(this, doc) {
+                    @Override
+                    protected void enregistre() {
+                        exp_spell = Numb_to_Spell.spell(ttc, "");
+                        calcul_des_montant();
+                        totaux.vider();
+                    }
+
+                    @Override
+                    protected void refuse(Exception e) {
+                        super.refuse(e);
+                        sauvegarder.setEnabled(true);
+                    }
+                }.lancer();
                 //JOptionPane.showMessageDialog(null,"ligne ajoutée !");            
                 //JOptionPane.showMessageDialog(null,"Vous avez dit Yes !");            
                 
@@ -1359,6 +1275,7 @@ public class Achat extends javax.swing.JFrame {
                 
                // St = cnx.createStatement();
                 St.executeUpdate(sql);
+                totaux.retirer(txt_code_art.getText());
                 Update_Table_Factures();
                 calcul_des_montant();
                 JOptionPane.showMessageDialog(null, " Ligne supprimée !");
@@ -1379,9 +1296,8 @@ public class Achat extends javax.swing.JFrame {
         
         if (!art_ok) {            
             txt_code_cli.setInputVerifier(new Pass_Verifier_Fournisseur(base));
-            String sql = "select * from fournisseur where nfournisseur = '" + txt_code_cli.getText() + "'";            
             try {
-                Rs = St.executeQuery(sql);                
+                Rs = dao.fournisseur(txt_code_cli.getText());
                 if (Rs.next()) {
                     String add = txt_code_cli.getText() ;//+ " " + Rs.getString("nom_fournisseur");
                     String add2 = Rs.getString("nom_fournisseur");
@@ -1440,9 +1356,8 @@ public class Achat extends javax.swing.JFrame {
     private void jComboBox1PopupMenuWillBecomeInvisible(javax.swing.event.PopupMenuEvent evt) {//GEN-FIRST:event_jComboBox1PopupMenuWillBecomeInvisible
         String tmp = (String) jComboBox1.getSelectedItem();        
         
-        String sql = "select * from fournisseur where nom_fournisseur  = '" + tmp + "'";        
         try {
-            Rs = St.executeQuery(sql);            
+            Rs = dao.fournisseur_nom(tmp);
             if (Rs.next()) {
                 
                 String add = Rs.getString("nfournisseur");                
@@ -1459,21 +1374,14 @@ public class Achat extends javax.swing.JFrame {
         //JOptionPane.showMessageDialog(null, art_ok); 
         //if (!art_ok) {           
         txt_code_art.setInputVerifier(new Pass_Verifier_Art(base));
-        String sql = "select * from article where narticle = '" + txt_code_art.getText() + "'";        
         try {
-            Rs = St.executeQuery(sql);            
+            Rs = dao.article(txt_code_art.getText());
             if (Rs.next()) {
                 String add = Rs.getString("designation");
                 String add1 = Rs.getString("narticle");
                 txt_code_art.setText(add1);                
                 
-                for (j = 0; j < jComboBox2.getItemCount(); j++) {
-                    
-                    if (add.equals(jComboBox2.getItemAt(j).toString())) {                        
-                        break;                        
-                    }
-                }
-                jComboBox2.setSelectedIndex(j);                
+                jComboBox2.setSelectedItem(add);
             } else {
                 //JOptionPane.showMessageDialog(null, "Salam");
                 getToolkit().beep();
@@ -1491,9 +1399,8 @@ public class Achat extends javax.swing.JFrame {
     
     private void jComboBox2PopupMenuWillBecomeInvisible(javax.swing.event.PopupMenuEvent evt) {//GEN-FIRST:event_jComboBox2PopupMenuWillBecomeInvisible
         String tmp = (String) jComboBox2.getSelectedItem();        
-        String sql = "select * from article where designation = '" + tmp + "'";        
         try {
-            Rs = St.executeQuery(sql);            
+            Rs = dao.article_designation(tmp);
             if (Rs.next()) {
                 String add = Rs.getString("narticle");                
                 txt_code_art.setText(add);                
@@ -1530,6 +1437,7 @@ public class Achat extends javax.swing.JFrame {
         query = "truncate table facture_a";
         try {
             St.execute(query);            
+            totaux.vider();
             /* query = "select count(*) as nbre_enr FROM " + fichier_master + ";";
             St.execute(query);
             Rs = St.executeQuery(query);
@@ -1576,36 +1484,19 @@ public class Achat extends javax.swing.JFrame {
     private void btn_imprimerActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btn_imprimerActionPerformed
         art_desactive();        
         try {            
-            String query = "select * from activite";
-            Rs = St.executeQuery(query);
-            if (Rs.next()) {                
-                txt_domaine_actvite = Rs.getString("domaine_activite");                
-                txt_sous_domaine = Rs.getString("sous_domaine");
-                txt_raison_sociale_v = Rs.getString("raison_sociale");
-                txt_adresse = Rs.getString("adresse");
-                txt_commune = Rs.getString("commune");
-                txt_wilaya = Rs.getString("wilaya");
-                txt_tel_fixe = Rs.getString("tel_fixe");
-                txt_tel_port = Rs.getString("tel_port");
-                txt_nrcv = Rs.getString("nrc");
-                txt_nis = Rs.getString("nis");
-                txt_nart = Rs.getString("nart");
-                txt_ident_fiscal = Rs.getString("ident_fiscal");
-                txt_banq = Rs.getString("banq");                
-            }            
             switch (parametre) {
                 case "stock_f":
-                    jd = JRXmlLoader.load("C:\\outil_dev\\report_fact.jrxml");
+                    etat = "report_fact";
                     sql = "SELECT fact.`NFact` AS fact_NFact,      fact.`Nclient` AS fact_Nclient,      fact.`date_fact` AS fact_date_fact,      fact.`montant_ht` AS fact_montant_ht,      fact.`timbre` AS fact_timbre,      fact.`TVA` AS fact_TVA,      fact.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article       FROM      `client` client INNER JOIN `fact` fact ON client.`Nclient` = fact.`Nclient` WHERE fact.nfact ='" + txt_nfact.getText() + "'";
                     break;
                 
                 case "stock_bl":                   
-                    jd = JRXmlLoader.load("C:\\outil_dev\\report_bl.jrxml");
+                    etat = "report_bl";
                     sql = "SELECT bl.`NFact` AS fact_NFact,      bl.`Nclient` AS fact_Nclient,      bl.`date_fact` AS fact_date_fact,      bl.`montant_ht` AS fact_montant_ht,      bl.`timbre` AS fact_timbre,      bl.`TVA` AS fact_TVA,      bl.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article,  bl.`nbc` AS fact_nbc, bl.`date_bc` AS fact_date_bc, bl.`nom_preneur` AS fact_nom_preneur        FROM      `client` client INNER JOIN `bl` bl ON client.`Nclient` = bl.`Nclient` WHERE bl.nfact ='" + txt_nfact.getText() + "'";                    
                     break;
                 
                 case "":
-                    jd = JRXmlLoader.load("C:\\outil_dev\\report_prof.jrxml");
+                    etat = "report_prof";
                     sql = "SELECT fprof.`NFact` AS fact_NFact,      fprof.`Nclient` AS fact_Nclient,      fprof.`date_fact` AS fact_date_fact,      fprof.`montant_ht` AS fact_montant_ht,      fprof.`timbre` AS fact_timbre,      fprof.`TVA` AS fact_TVA,      fprof.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article       FROM      `client` client INNER JOIN `fprof` fprof ON client.`Nclient` = fprof.`Nclient` WHERE fprof.nfact ='" + txt_nfact.getText() + "'";
                     break;
                 
@@ -1613,29 +1504,12 @@ public class Achat extends javax.swing.JFrame {
 
 
             //JOptionPane.showMessageDialog(null, sql);
-            JRDesignQuery newquery = new JRDesignQuery();
-            newquery.setText(sql);
-            jd.setQuery(newquery);
             //JOptionPane.showMessageDialog(null, cnx);
             
-            HashMap hm = new HashMap();
+            HashMap hm = Entete_Activite.parametres(base);
+            hm.put(Etats.REQUETE, sql);
             hm.put("fact_spell", exp_spell);            
-            hm.put("domaine_activite_p", txt_domaine_actvite);
-            hm.put("sous_domaine_p", txt_sous_domaine);
-            hm.put("raison_sociale_p", txt_raison_sociale_v);
-            hm.put("adress_p", txt_adresse);
-            hm.put("commune_p", txt_commune);
-            hm.put("wilaya_p", txt_wilaya);
-            hm.put("tel_fixe_p", txt_tel_fixe);
-            hm.put("tel_port_p", txt_tel_port);
-            hm.put("nrc_p", txt_nrcv);
-            hm.put("nis_p", txt_nis);
-            hm.put("art_p", txt_nart);
-            hm.put("ident_fiscal_p", txt_ident_fiscal);
-            hm.put("banq_p", txt_banq);
-            JasperReport jr = JasperCompileManager.compileReport(jd);
-            JasperPrint jp = JasperFillManager.fillReport(jr, hm, cnx);            
-            JasperViewer.viewReport(jp, false);            
+            new Tache_Impression(this, etat, hm, Param_Activite.schema(base)).lancer();
         } catch (Exception e) {
             e.printStackTrace() ;
         }        
@@ -1711,6 +1585,13 @@ public class Achat extends javax.swing.JFrame {
         txt_prix_unit.selectAll();        // TODO add your handling code here:
     }//GEN-LAST:event_txt_prix_unitFocusGained
 
+    @Override
+    public void dispose() {
+        Tache_Bd.annuler(this);
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * 6
      *
@@ -1753,15 +1634,16 @@ public class Achat extends javax.swing.JFrame {
     private Statement St, St1, St3;
     private ResultSet Rs, Rs1;
     public Connection cnx;
-    public String txt_domaine_actvite, txt_sous_domaine, txt_raison_sociale_v, txt_adresse, txt_commune, txt_wilaya;
-    public String txt_tel_fixe, txt_tel_port, txt_nrcv, txt_nis, txt_nart, txt_ident_fiscal, txt_banq, txt_query, exp_spell;
+    private Dao_Stock dao;
+    private final Totaux_Document totaux = new Totaux_Document();
+    public String txt_query, exp_spell;
     public String parametre, fichier_detail, fichier_master,champf,base;
     String query, facture;
     public String txt_nom_preneur, txt_dt_bc, txt_bc;
     public boolean art_ok = false, ind_timbre = false, escape = true;
     public String sql, txt_dom_bnq, txt_ncheque;
     public Object[] message;
-    public JasperDesign jd;
+    public String etat;
     int j, int_nfact;
     MyTableModel tm;
     Double stot_ligne = 0.00, prix_unitaire = 0.00, add1_d = .00, mnt = 0.00, timbre = 0.00, tva = 0.00, xtot_ht = 0.00, xtot_tva = 0.00;
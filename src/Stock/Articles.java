@@ -14,14 +14,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import javax.swing.*;
-import net.sf.jasperreports.engine.JasperCompileManager;
-import net.sf.jasperreports.engine.JasperFillManager;
-import net.sf.jasperreports.engine.JasperPrint;
-import net.sf.jasperreports.engine.JasperReport;
-import net.sf.jasperreports.engine.design.JRDesignQuery;
-import net.sf.jasperreports.engine.design.JasperDesign;
-import net.sf.jasperreports.engine.xml.JRXmlLoader;
-import net.sf.jasperreports.view.JasperViewer;
 import org.jdesktop.swingx.autocomplete.AutoCompleteDecorator;
 
 /**
@@ -38,11 +30,6 @@ public class Articles extends javax.swing.JFrame {
     public Articles(String bas) {
         base = bas;
         initComponents();
-         jComboBox1.addItem(" ");
-         
-         k=jComboBox1.getComponentCount();
-        // JOptionPane.showMessageDialog(null, k);
-         jComboBox1.setSelectedItem(k);
        // KeyStroke existingKeyStroke = KeyStroke.getKeyStroke("TAB");
         
 // 1. Get default keys
@@ -68,18 +55,19 @@ AutoCompleteDecorator.decorate(jComboBox2);
         try {
                     
            if (k == 0 ) {           
-             sql = "select A.NArticle as \"Nom Article\",A.famille as \"Famille\", A.designation as \"Désignation\",F.nom_fournisseur as \"Fourniseur\", A.prix_unitaire as \"Prix Unitaire\", A.marge as \"Marge\", A.tva as \"TVA\", A.prix_vente as \"Prix de Vente\",A.prix_vente+A.prix_vente*A.tva/100 as \"Prix T.T.C\",A.seuil as \"Seuil\", A.stock_f as \"Stock.F\", A.stock_bl as \"Stock.BL\"  from article A, fournisseur F where A.nfournisseur=F.nfournisseur order by a.designation";
+             // catalogue complet : lu par pages dans l'ordre des désignations
+             String colonnes = "A.NArticle as \"Nom Article\",A.famille as \"Famille\", A.designation as \"Désignation\",F.nom_fournisseur as \"Fourniseur\", A.prix_unitaire as \"Prix Unitaire\", A.marge as \"Marge\", A.tva as \"TVA\", A.prix_vente as \"Prix de Vente\",A.prix_vente+A.prix_vente*A.tva/100 as \"Prix T.T.C\",A.seuil as \"Seuil\", A.stock_f as \"Stock.F\", A.stock_bl as \"Stock.BL\"";
+             String from_where = "from article A, fournisseur F where A.nfournisseur=F.nfournisseur";
+             sql = "select " + colonnes + "  " + from_where + " order by A.designation";
+             new Chargement_Table(this, Table_Articles, colonnes, from_where, new String[]{"A.designation", "A.narticle"}, base).lancer();
            } else {                    
               sql = query;    
+              new Chargement_Table(this, Table_Articles, sql, base).lancer();
            }            
            
           // Rs = St.executeQuery(sql);                      
           // Table_Articles.setModel(DbUtils.resultSetToTableModel(Rs));
            
-           tm = new MyTableModel(sql, base);
-           Table_Articles.setModel(tm);
-           Table_Articles.setDefaultRenderer(Double.class, new TKMntRenderer());
-           
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "avec la table articles\n" + e.getMessage());
 
@@ -694,7 +682,7 @@ AutoCompleteDecorator.decorate(jComboBox2);
         try {
             // connexion avec la base de donnée 
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
+            cnx = javaconnect.cnx_mysql();
             St = cnx.createStatement();  
             String sql1="select profil from user_info where has_login='Yes' and code_activite ='"+base+"'";
             Rs = St.executeQuery(sql1);
@@ -707,16 +695,9 @@ AutoCompleteDecorator.decorate(jComboBox2);
                 txt_bl_disponible.setEnabled(user_profil);
                 }
             }
-            String sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;    
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            javaconnect.liberer(cnx);
+            cnx = javaconnect.cnx_activite(base);
             St = cnx.createStatement();
-            }            
             jRadioButton1.setSelected(true);
              fillCombo();
              fillCombo1();
@@ -963,36 +944,18 @@ AutoCompleteDecorator.decorate(jComboBox2);
     }//GEN-LAST:event_Table_ArticlesKeyReleased
 
     private void fillCombo() {
-    String sql ="select * from famille_art";
-    try {
-        
-    Rs = St.executeQuery(sql);
-    while (Rs.next() ) {
-       String nme = Rs.getString("famille");
-       jComboBox1.addItem(nme);
-    }
-    
-    } catch (Exception e) {
-                JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
-            }
+        try {
+            jComboBox1.setModel(Listes_Reference.modele(base, Listes_Reference.FAMILLES, true, false));
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
+        }
     }
      private void fillCombo1() {
-    
-    String sql ="select * from fournisseur  order by nom_fournisseur";
-    //JOptionPane.showMessageDialog(null, sql);
-    try {
-    jComboBox2.addItem("          ");    
-    Rs = St.executeQuery(sql);
-    while (Rs.next() ) {
-       String nme = Rs.getString("nom_fournisseur");
-       //JOptionPane.showMessageDialog(null, nme);
-       // String nme1 = Rs.getString("nfournisseur");
-       jComboBox2.addItem(nme);
-    }
-    
-    } catch (Exception e) {
-                JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
-            }
+        try {
+            jComboBox2.setModel(Listes_Reference.modele(base, Listes_Reference.FOURNISSEURS, true, false));
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox2\n" + e.getMessage());
+        }
     }
      
      class PassVerifier extends InputVerifier {
@@ -1023,10 +986,22 @@ AutoCompleteDecorator.decorate(jComboBox2);
             +txt_bl_disponible.getText()+"')";
             //JOptionPane.showMessageDialog(null,query);
            // txt_designation.setText(query);
-            St.executeUpdate(query);
-            Update_Table_Article(0);
-            new_saisie = true;
-            JOptionPane.showMessageDialog(null,"Article ajouté !");
+            final String code = txt_Narticle.getText();
+            new Tache_Maj(this, base, query) {
+                @Override
+                protected void terminer(Integer n) {
+                    Index_Codes.ajouter(base, Index_Codes.ARTICLE, code);
+                    Index_Articles.invalider(base);
+                    Update_Table_Article(0);
+                    new_saisie = true;
+                    JOptionPane.showMessageDialog(null,"Article ajouté !");
+                }
+
+                @Override
+                protected void echouer(Exception e) {
+                    JOptionPane.showMessageDialog(null, "Erreur dans l'insertion table\n" + e.getMessage());
+                }
+            }.lancer();
 
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans l'insertion table\n" + e.getMessage());
@@ -1097,6 +1072,7 @@ AutoCompleteDecorator.decorate(jComboBox2);
             +Integer.parseInt(txt_bl_disponible.getText())+ 
              "' where narticle = '" + txt_Narticle.getText() + "'";   
             St.executeUpdate(query);            
+            Index_Articles.invalider(base);
             Update_Table_Article(0);
             JOptionPane.showMessageDialog(null,"Article Modifié !");
             txt_Narticle.setEditable(true); 
@@ -1117,6 +1093,8 @@ AutoCompleteDecorator.decorate(jComboBox2);
          //JOptionPane.showConfirmDialog(null, " confirmer Effacer ", query, WIDTH);
             if (JOptionPane.showConfirmDialog(null,"Confimer la suppression", " Effacer", JOptionPane.YES_NO_OPTION) == JOptionPane.OK_OPTION )  {
             St.executeUpdate(query);
+            Index_Codes.retirer(base, Index_Codes.ARTICLE, txt_Narticle.getText());
+            Index_Articles.invalider(base);
             Update_Table_Article(0);    
         }
             
@@ -1400,11 +1378,9 @@ AutoCompleteDecorator.decorate(jComboBox2);
         }
         Rs=St.executeQuery(sql_sum);
         if (Rs.next()) {
-        jd = JRXmlLoader.load("C:\\outil_dev\\report_art_stock.jrxml");
-        JRDesignQuery newquery = new JRDesignQuery();
-        newquery.setText(sql);
-        jd.setQuery(newquery);
+        etat = "report_art_stock";
         HashMap hm = new HashMap();
+        hm.put(Etats.REQUETE, sql);
         hm.put("famille_p", txt_famille1);
         hm.put("som_f_u_p",Double.parseDouble((Rs.getString("som_f_u"))));
         hm.put("som_bl_u_p",Double.parseDouble((Rs.getString("som_bl_u"))));
@@ -1412,9 +1388,7 @@ AutoCompleteDecorator.decorate(jComboBox2);
         hm.put("som_bl_v_p",Double.parseDouble((Rs.getString("som_bl_v"))));
         hm.put("sous_titre_p", txt_sous_titre);
         hm.put("sql_p_req",sql_p);
-        JasperReport jr = JasperCompileManager.compileReport(jd);
-        JasperPrint jp = JasperFillManager.fillReport(jr, hm, cnx);            
-        JasperViewer.viewReport(jp, false);          
+        new Tache_Impression(this, etat, hm, Param_Activite.schema(base)).lancer();
        } 
        }
        catch (Exception e) {
@@ -1461,11 +1435,9 @@ AutoCompleteDecorator.decorate(jComboBox2);
         //Rs=St.executeQuery(sql_sum);
         //JOptionPane.showMessageDialog(null,sql_p);
        // if (Rs.next()) {
-        jd = JRXmlLoader.load("C:\\outil_dev\\report_art_seuil.jrxml");
-        JRDesignQuery newquery = new JRDesignQuery();
-        newquery.setText(sql);
-        jd.setQuery(newquery);
+        etat = "report_art_seuil";
         HashMap hm = new HashMap();
+        hm.put(Etats.REQUETE, sql);
         hm.put("famille_p", txt_famille1);
         //hm.put("som_f_u_p",Double.parseDouble((Rs.getString("som_f_u"))));
         //hm.put("som_bl_u_p",Double.parseDouble((Rs.getString("som_bl_u"))));
@@ -1473,9 +1445,7 @@ AutoCompleteDecorator.decorate(jComboBox2);
         //hm.put("som_bl_v_p",Double.parseDouble((Rs.getString("som_bl_v"))));
         hm.put("sous_titre_p", txt_sous_titre);
         hm.put("sql_p_req",sql_p);
-        JasperReport jr = JasperCompileManager.compileReport(jd);
-        JasperPrint jp = JasperFillManager.fillReport(jr, hm, cnx);            
-        JasperViewer.viewReport(jp, false);          
+        new Tache_Impression(this, etat, hm, Param_Activite.schema(base)).lancer();
        } 
        //}
        catch (Exception e) {
@@ -1516,20 +1486,15 @@ private void publi(){
            return;
         }
         
-        jd = JRXmlLoader.load("C:\\outil_dev\\report_art_publ.jrxml");
+        etat = "report_art_publ";
         //jd = JRXmlLoader.load("C:\\outil_dev\\Report_test.jrxml");
-        JRDesignQuery newquery = new JRDesignQuery();
-        newquery.setText(sql);
-        jd.setQuery(newquery);
         HashMap hm = new HashMap();
+        hm.put(Etats.REQUETE, sql);
         
         Double val_pour =Double.parseDouble((txt_pour.toString()));
         hm.put("p_pourcentage", val_pour); 
     
-        JasperReport jr = JasperCompileManager.compileReport(jd);
-        JasperPrint jp = JasperFillManager.fillReport(jr, hm, cnx);  
-      
-        JasperViewer.viewReport(jp, false);          
+        new Tache_Impression(this, etat, hm, Param_Activite.schema(base)).lancer();
        } 
        //}
        catch (Exception e) {
@@ -1588,6 +1553,13 @@ private void publi(){
         
     
     /**/
+    @Override
+    public void dispose() {
+        Tache_Bd.annuler(this);
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -1630,11 +1602,11 @@ private void publi(){
     private Statement St,St1;
     private ResultSet Rs,Rs1;
     private boolean new_saisie = true,user_profil=false;
-    private int i,j,k;
+    private int i,j;
     private Double stot_ligne,prix_unitaire, stot_ttc ;
     private String base,txt_famille1,query,sql_p,sql_sum,txt_sous_titre,txt_pour;
     MyTableModel tm;
-    public JasperDesign jd;
+    public String etat;
     //private String pilote;
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JTable Table_Articles;
@@ -0,0 +1,159 @@
+/*
+ * Journal local d'une saisie en cours, pour la reprendre après un arrêt brutal.
+ */
+package Stock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Un fichier texte par écran de saisie dans ~/stock_brouillons, une ligne
+ * par ligne de document, champs séparés par des tabulations. L'écran garde
+ * le fichier verrouillé tant qu'il est ouvert : un fichier qu'on peut
+ * verrouiller appartient à une saisie interrompue (application arrêtée,
+ * poste éteint) et peut être repris.
+ *
+ * -Dstock.brouillon=false désactive le journal.
+ *
+ * @author IT
+ */
+public class Brouillon {
+
+    static final File DOSSIER = new File(System.getProperty("user.home"), "stock_brouillons");
+    static final boolean ACTIF = !"false".equals(System.getProperty("stock.brouillon"));
+    /** Un fichier vide plus récent peut être celui d'un écran en train de s'ouvrir. */
+    static final long AGE_MIN_VIDE_MS = 60 * 1000;
+
+    private final File fichier;
+    private final RandomAccessFile acces;
+    private final FileLock verrou;
+
+    private Brouillon(File xfichier, RandomAccessFile xacces, FileLock xverrou) {
+        fichier = xfichier;
+        acces = xacces;
+        verrou = xverrou;
+    }
+
+    /** Nouveau journal pour l'activité et le type de document ; null si indisponible. */
+    public static Brouillon nouveau(String base, String type) {
+        if (!ACTIF) {
+            return null;
+        }
+        try {
+            DOSSIER.mkdirs();
+            return verrouiller(File.createTempFile(prefixe(base, type), ".txt", DOSSIER));
+        } catch (IOException e) {
+            System.out.println("Brouillon indisponible : " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Journal non vide d'une saisie interrompue du même type, verrouillé pour l'appelant ; null sinon. */
+    public static Brouillon reprendre(String base, String type) {
+        File[] fichiers = ACTIF ? DOSSIER.listFiles() : null;
+        if (fichiers == null) {
+            return null;
+        }
+        String prefixe = prefixe(base, type);
+        for (File f : fichiers) {
+            if (!f.getName().startsWith(prefixe) || !f.getName().endsWith(".txt")) {
+                continue;
+            }
+            Brouillon b = verrouiller(f);
+            if (b == null) {
+                continue;
+            }
+            try {
+                if (!b.lire().isEmpty()) {
+                    return b;
+                }
+            } catch (IOException e) {
+                System.out.println("Brouillon illisible " + f + " : " + e.getMessage());
+            }
+            if (System.currentTimeMillis() - f.lastModified() > AGE_MIN_VIDE_MS) {
+                b.supprimer();
+            } else {
+                b.liberer();
+            }
+        }
+        return null;
+    }
+
+    private static String prefixe(String base, String type) {
+        return (base + "_" + type + "_").replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    private static Brouillon verrouiller(File f) {
+        RandomAccessFile a = null;
+        try {
+            a = new RandomAccessFile(f, "rw");
+            FileLock v = a.getChannel().tryLock();
+            if (v != null) {
+                return new Brouillon(f, a, v);
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            // ouvert par un autre écran
+        }
+        if (a != null) {
+            try {
+                a.close();
+            } catch (IOException e) {
+                // rien à faire
+            }
+        }
+        return null;
+    }
+
+    public List<String[]> lire() throws IOException {
+        byte[] octets = new byte[(int) acces.length()];
+        acces.seek(0);
+        acces.readFully(octets);
+        List<String[]> lignes = new ArrayList<>();
+        for (String ligne : new String(octets, StandardCharsets.UTF_8).split("\n")) {
+            if (!ligne.isEmpty()) {
+                lignes.add(ligne.split("\t", -1));
+            }
+        }
+        return lignes;
+    }
+
+    /** Remplace tout le contenu, écrit sur disque avant de rendre la main. */
+    public void ecrire(List<String[]> lignes) throws IOException {
+        StringBuilder texte = new StringBuilder();
+        for (String[] champs : lignes) {
+            for (int i = 0; i < champs.length; i++) {
+                if (i > 0) {
+                    texte.append('\t');
+                }
+                texte.append(champs[i] == null ? "" : champs[i].replaceAll("[\t\r\n]", " "));
+            }
+            texte.append('\n');
+        }
+        byte[] octets = texte.toString().getBytes(StandardCharsets.UTF_8);
+        acces.setLength(0);
+        acces.seek(0);
+        acces.write(octets);
+        acces.getChannel().force(false);
+    }
+
+    /** Fin normale de la saisie : le fichier disparaît. */
+    public void supprimer() {
+        liberer();
+        fichier.delete();
+    }
+
+    private void liberer() {
+        try {
+            verrou.release();
+            acces.close();
+        } catch (IOException e) {
+            // rien à faire
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Chargement d'une JTable hors de l'EDT.
+ */
+package Stock;
+
+import java.awt.Point;
+import java.awt.Window;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.swing.JOptionPane;
+import javax.swing.JTable;
+import javax.swing.JViewport;
+import javax.swing.table.TableModel;
+
+/**
+ * Construit le MyTableModel de la requête en fond puis le pose sur la table.
+ * Si la table porte déjà un MyTableModel du même genre, il est relu et mis à
+ * jour sur place (MyTableModel.appliquer) au lieu d'être remplacé.
+ * Un nouveau chargement de la même table annule le précédent, pour qu'un
+ * résultat ancien n'écrase jamais un plus récent.
+ *
+ * @author IT
+ */
+public class Chargement_Table extends Tache_Bd<MyTableModel> {
+
+    private static final Map<JTable, Chargement_Table> par_table = new WeakHashMap<>();
+
+    private final JTable table;
+    private final String sql;
+    private final String base;
+    private String from_where;
+    private String[] cles;
+    private final MyTableModel actuel;
+    private int[] pages_lues;
+    private MyTableModel.Releve releve;
+
+    public Chargement_Table(Window fenetre, JTable xtable, String xsql, String xbase) {
+        super(fenetre);
+        table = xtable;
+        sql = xsql;
+        base = xbase;
+        TableModel m = table.getModel();
+        actuel = m instanceof MyTableModel && base.equals(((MyTableModel) m).base) ? (MyTableModel) m : null;
+        remplacer_precedent();
+    }
+
+    /** Table en mode paginé, voir MyTableModel(colonnes, from_where, cles, base). */
+    public Chargement_Table(Window fenetre, JTable xtable, String colonnes, String xfrom_where, String[] xcles, String xbase) {
+        this(fenetre, xtable, colonnes, xbase);
+        from_where = xfrom_where;
+        cles = xcles;
+        if (actuel != null && actuel.memes_pages(colonnes, from_where, cles)) {
+            pages_lues = actuel.pages_lues();
+        }
+    }
+
+    private void remplacer_precedent() {
+        Chargement_Table precedent;
+        synchronized (par_table) {
+            precedent = par_table.put(table, this);
+        }
+        if (precedent != null) {
+            precedent.cancel(true);
+        }
+    }
+
+    @Override
+    protected MyTableModel executer() throws Exception {
+        if (cles != null) {
+            if (pages_lues != null) {
+                releve = actuel.relire(null, pages_lues);
+                return actuel;
+            }
+            return new MyTableModel(sql, from_where, cles, base);
+        }
+        if (actuel != null && !actuel.pagine) {
+            releve = actuel.relire(sql, null);
+            return actuel;
+        }
+        return new MyTableModel(sql, base);
+    }
+
+    @Override
+    protected void terminer(MyTableModel tm) {
+        if (releve == null) {
+            table.setModel(tm);
+            table.setDefaultRenderer(Double.class, new TKMntRenderer());
+            return;
+        }
+        // sélection et défilement, au cas où le modèle signale un changement global
+        int choisie = table.getSelectedRow();
+        Object cle = choisie < 0 ? null : tm.getValueAt(table.convertRowIndexToModel(choisie), MyTableModel.COL_CLE);
+        JViewport vue = table.getParent() instanceof JViewport ? (JViewport) table.getParent() : null;
+        Point position = vue == null ? null : vue.getViewPosition();
+        tm.appliquer(releve);
+        if (cle != null && table.getSelectedRow() < 0) {
+            int l = tm.ligne(cle);
+            if (l >= 0) {
+                l = table.convertRowIndexToView(l);
+                table.setRowSelectionInterval(l, l);
+            }
+        }
+        if (vue != null) {
+            vue.setViewPosition(position);
+        }
+    }
+
+    @Override
+    protected void echouer(Exception e) {
+        JOptionPane.showMessageDialog(null, "Erreur dans le chargement de la table\n" + e.getMessage());
+    }
+}
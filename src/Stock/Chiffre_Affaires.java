@@ -0,0 +1,127 @@
+/*
+ * Chiffre d'affaires des clients et des fournisseurs.
+ */
+package Stock;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * client.c_affaire_fact / c_affaire_bl et fournisseur.caf / cabl sont des
+ * cumuls tenus par mises à jour relatives (Enregistrement_Document.
+ * chiffre_affaires) : un document enregistré ajoute son TTC, un document
+ * supprimé le retire, sans relire la valeur.
+ *
+ * recalculer() sert au contrôle : il refait chaque cumul depuis les
+ * tables maîtres (fact, bl, fachat, bachat), les quatre lues en parallèle
+ * par une requête groupée chacune, et ne corrige que les comptes qui
+ * s'écartent, en une transaction.
+ *
+ * @author IT
+ */
+public class Chiffre_Affaires {
+
+    /** {table du compte, clé, colonne du cumul, table maître}. */
+    static final String[][] CUMULS = {
+        {"client", "nclient", "c_affaire_fact", "fact"},
+        {"client", "nclient", "c_affaire_bl", "bl"},
+        {"fournisseur", "nfournisseur", "caf", "fachat"},
+        {"fournisseur", "nfournisseur", "cabl", "bachat"}
+    };
+
+    static final double ECART = 0.005;
+
+    /** Cumul retenu et cumul recalculé d'un compte. */
+    public static class Ecart {
+        public final String colonne, code;
+        public final double retenu, calcule;
+
+        Ecart(String xcolonne, String xcode, double xretenu, double xcalcule) {
+            colonne = xcolonne;
+            code = xcode;
+            retenu = xretenu;
+            calcule = xcalcule;
+        }
+    }
+
+    /** TTC (montant_ht+tva+timbre) par client ou fournisseur d'une table maître. */
+    public static Map<String, Double> totaux(Connection cnx, String master, String cle) throws SQLException {
+        Map<String, Double> totaux = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        try (Statement st = cnx.createStatement();
+                ResultSet rs = st.executeQuery("select " + cle + ", sum(montant_ht + tva + timbre) from "
+                        + master + " group by " + cle)) {
+            while (rs.next()) {
+                totaux.put(rs.getString(1), rs.getDouble(2));
+            }
+        }
+        return totaux;
+    }
+
+    /** Recalcule les quatre cumuls et corrige les écarts ; rend les écarts trouvés. */
+    public static List<Ecart> recalculer(final String base) throws SQLException, InterruptedException {
+        ExecutorService executeur = Executors.newFixedThreadPool(CUMULS.length);
+        List<Future<List<Ecart>>> resultats = new ArrayList<>();
+        try {
+            for (final String[] c : CUMULS) {
+                resultats.add(executeur.submit(new Callable<List<Ecart>>() {
+                    @Override
+                    public List<Ecart> call() throws SQLException {
+                        try (Connection cnx = javaconnect.cnx_activite(base)) {
+                            return ecarts(cnx, c);
+                        }
+                    }
+                }));
+            }
+            List<Ecart> ecarts = new ArrayList<>();
+            Enregistrement_Document doc = new Enregistrement_Document(base, "chiffre_affaires");
+            for (int i = 0; i < CUMULS.length; i++) {
+                List<Ecart> e;
+                try {
+                    e = resultats.get(i).get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+                }
+                List<Object[]> lignes = new ArrayList<>();
+                for (Ecart l : e) {
+                    lignes.add(new Object[]{l.calcule, l.code});
+                }
+                doc.lot("update " + CUMULS[i][0] + " set " + CUMULS[i][2] + " = ? where " + CUMULS[i][1] + " = ?", lignes);
+                ecarts.addAll(e);
+            }
+            doc.executer();
+            return ecarts;
+        } finally {
+            executeur.shutdownNow();
+        }
+    }
+
+    private static List<Ecart> ecarts(Connection cnx, String[] c) throws SQLException {
+        Map<String, Double> calcules = totaux(cnx, c[3], c[1]);
+        List<Ecart> ecarts = new ArrayList<>();
+        try (Statement st = cnx.createStatement();
+                ResultSet rs = st.executeQuery("select " + c[1] + ", " + c[2] + " from " + c[0])) {
+            while (rs.next()) {
+                String code = rs.getString(1);
+                double retenu = rs.getDouble(2);
+                Double calcule = calcules.get(code);
+                double attendu = calcule == null ? 0 : calcule;
+                if (Math.abs(attendu - retenu) > ECART || rs.wasNull()) {
+                    ecarts.add(new Ecart(c[2], code, retenu, attendu));
+                }
+            }
+        }
+        return ecarts;
+    }
+}
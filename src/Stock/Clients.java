@@ -57,9 +57,7 @@ private void Update_Table_Clients() {
             //Rs = St.executeQuery(sql);
             //Table_Clients.setModel(DbUtils.resultSetToTableModel(Rs));
             
-            tm = new MyTableModel(sql,base);
-            Table_Clients.setModel(tm);
-            Table_Clients.setDefaultRenderer(Double.class, new TKMntRenderer());
+            new Chargement_Table(this, Table_Clients, sql, base).lancer();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "avec la table Clients\n" + e.getMessage());
 
@@ -454,6 +452,8 @@ private void Update_Table_Clients() {
                        else {
                         String sql = "delete from client where nclient = '" + nclient.getText() + "'";
                         St.executeUpdate(sql);        
+                        Index_Codes.retirer(base, Index_Codes.CLIENT, nclient.getText());
+                        Listes_Reference.supprime(base, Listes_Reference.CLIENTS, nclient.getText());
                         vider_champs();
                         Update_Table_Clients();
                        }
@@ -483,6 +483,7 @@ private void Update_Table_Clients() {
             +email.getText()+"', commentaire ='"
             +commentaire.getText().replace( "'",  "\\'")+"' where nclient= '" + nclient.getText() + "'";         
             St.executeUpdate(query);
+            Listes_Reference.enregistre(base, Listes_Reference.CLIENTS, nclient.getText());
             Update_Table_Clients();
             JOptionPane.showMessageDialog(null,"Client modifié !");
         } catch (Exception e) {
@@ -526,16 +527,27 @@ private void Update_Table_Clients() {
             +commentaire.getText().replace( "'",  "\\'")+"')";        
             
             //commentaire.setText(query);
-            St.executeUpdate(query);
-            Update_Table_Clients();
-            JOptionPane.showMessageDialog(null,"Client ajouté !");
+            final String code = nclient.getText();
+            new Tache_Maj(this, base, query) {
+                @Override
+                protected void terminer(Integer n) {
+                    Index_Codes.ajouter(base, Index_Codes.CLIENT, code);
+                    Listes_Reference.enregistre(base, Listes_Reference.CLIENTS, code);
+                    Update_Table_Clients();
+                    JOptionPane.showMessageDialog(null,"Client ajouté !");
+                }
+
+                @Override
+                protected void echouer(Exception e) {
+                    JOptionPane.showMessageDialog(null, "Erreur dans l'insertion table\n" + e.getMessage());
+                }
+            }.lancer();
 
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans l'insertion table\n" + e.getMessage());
 
         }
          date_rc.setDateFormatString("dd-MM-yyyy");                         
-         Update_Table_Clients();
     }//GEN-LAST:event_saveButtonActionPerformed
 
     private void caffaireblActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_caffaireblActionPerformed
@@ -547,18 +559,8 @@ private void Update_Table_Clients() {
         try {
             // connexion avec la base de donnée 
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-            String sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base+"?zeroDateTimeBehavior=convertToNull";    
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            cnx = javaconnect.cnx_activite(base, "?zeroDateTimeBehavior=convertToNull");
             St = cnx.createStatement();
-            }
             //Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test?useUnicode=yes&amp;characterEncoding=UTF-8", "root", "");
             //St = cnx.createStatement();           
         } catch (Exception e) {
@@ -725,6 +727,13 @@ private void affiche_champs_s_raison() {
         this.dispose();
     }//GEN-LAST:event_btn_quitterActionPerformed
 
+    @Override
+    public void dispose() {
+        Tache_Bd.annuler(this);
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -0,0 +1,240 @@
+/*
+ * Stockage en colonnes des lignes de MyTableModel.
+ */
+package Stock;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Une colonne de MyTableModel : un tableau de double, int ou long pour les
+ * colonnes numériques (plus un BitSet des valeurs nulles), des String
+ * partagées pour le texte, des Object pour le reste. getValueAt() rend la
+ * même classe que rs.getObject().
+ *
+ * @author IT
+ */
+abstract class Colonne {
+
+    static final int TAILLE_INITIALE = 64;
+
+    protected int taille = 0;
+
+    /** Colonne adaptée à la classe annoncée par ResultSetMetaData. */
+    static Colonne pour(Class<?> classe) {
+        if (classe == Double.class) {
+            return new Reels();
+        }
+        if (classe == Integer.class) {
+            return new Entiers();
+        }
+        if (classe == Long.class) {
+            return new Longs();
+        }
+        if (classe == String.class) {
+            return new Textes();
+        }
+        return new Objets();
+    }
+
+    /** Lit la valeur de la ligne courante de rs à l'indice i (base 1). */
+    abstract void ajouter(ResultSet rs, int i) throws SQLException;
+
+    abstract Object get(int ligne);
+
+    /** false si la valeur n'a pas le type de la colonne. */
+    abstract boolean set(int ligne, Object valeur);
+
+    /** Libère la capacité en trop une fois toutes les lignes lues. */
+    abstract void ajuster();
+
+    /** Copie en Object, pour une valeur qui ne tient plus dans la colonne. */
+    Colonne en_objets() {
+        Objets o = new Objets();
+        o.valeurs = new Object[Math.max(taille, 1)];
+        for (int l = 0; l < taille; l++) {
+            o.valeurs[l] = get(l);
+        }
+        o.taille = taille;
+        return o;
+    }
+
+    private static class Reels extends Colonne {
+        double[] valeurs = new double[TAILLE_INITIALE];
+        final BitSet nuls = new BitSet();
+
+        @Override
+        void ajouter(ResultSet rs, int i) throws SQLException {
+            if (taille == valeurs.length) {
+                valeurs = Arrays.copyOf(valeurs, Math.max(TAILLE_INITIALE, taille * 2));
+            }
+            valeurs[taille] = rs.getDouble(i);
+            nuls.set(taille, rs.wasNull());
+            taille++;
+        }
+
+        @Override
+        Object get(int ligne) {
+            return nuls.get(ligne) ? null : Double.valueOf(valeurs[ligne]);
+        }
+
+        @Override
+        boolean set(int ligne, Object valeur) {
+            if (valeur != null && !(valeur instanceof Double)) {
+                return false;
+            }
+            nuls.set(ligne, valeur == null);
+            valeurs[ligne] = valeur == null ? 0 : (Double) valeur;
+            return true;
+        }
+
+        @Override
+        void ajuster() {
+            valeurs = Arrays.copyOf(valeurs, taille);
+        }
+    }
+
+    private static class Entiers extends Colonne {
+        int[] valeurs = new int[TAILLE_INITIALE];
+        final BitSet nuls = new BitSet();
+
+        @Override
+        void ajouter(ResultSet rs, int i) throws SQLException {
+            if (taille == valeurs.length) {
+                valeurs = Arrays.copyOf(valeurs, Math.max(TAILLE_INITIALE, taille * 2));
+            }
+            valeurs[taille] = rs.getInt(i);
+            nuls.set(taille, rs.wasNull());
+            taille++;
+        }
+
+        @Override
+        Object get(int ligne) {
+            return nuls.get(ligne) ? null : Integer.valueOf(valeurs[ligne]);
+        }
+
+        @Override
+        boolean set(int ligne, Object valeur) {
+            if (valeur != null && !(valeur instanceof Integer)) {
+                return false;
+            }
+            nuls.set(ligne, valeur == null);
+            valeurs[ligne] = valeur == null ? 0 : (Integer) valeur;
+            return true;
+        }
+
+        @Override
+        void ajuster() {
+            valeurs = Arrays.copyOf(valeurs, taille);
+        }
+    }
+
+    private static class Longs extends Colonne {
+        long[] valeurs = new long[TAILLE_INITIALE];
+        final BitSet nuls = new BitSet();
+
+        @Override
+        void ajouter(ResultSet rs, int i) throws SQLException {
+            if (taille == valeurs.length) {
+                valeurs = Arrays.copyOf(valeurs, Math.max(TAILLE_INITIALE, taille * 2));
+            }
+            valeurs[taille] = rs.getLong(i);
+            nuls.set(taille, rs.wasNull());
+            taille++;
+        }
+
+        @Override
+        Object get(int ligne) {
+            return nuls.get(ligne) ? null : Long.valueOf(valeurs[ligne]);
+        }
+
+        @Override
+        boolean set(int ligne, Object valeur) {
+            if (valeur != null && !(valeur instanceof Long)) {
+                return false;
+            }
+            nuls.set(ligne, valeur == null);
+            valeurs[ligne] = valeur == null ? 0 : (Long) valeur;
+            return true;
+        }
+
+        @Override
+        void ajuster() {
+            valeurs = Arrays.copyOf(valeurs, taille);
+        }
+    }
+
+    /** Les valeurs répétées (famille, fournisseur, ...) partagent la même String. */
+    private static class Textes extends Colonne {
+        String[] valeurs = new String[TAILLE_INITIALE];
+        HashMap<String, String> partagees = new HashMap<>();
+
+        @Override
+        void ajouter(ResultSet rs, int i) throws SQLException {
+            if (taille == valeurs.length) {
+                valeurs = Arrays.copyOf(valeurs, Math.max(TAILLE_INITIALE, taille * 2));
+            }
+            String v = rs.getString(i);
+            if (v != null && partagees != null) {
+                String deja = partagees.get(v);
+                if (deja == null) {
+                    partagees.put(v, v);
+                } else {
+                    v = deja;
+                }
+            }
+            valeurs[taille++] = v;
+        }
+
+        @Override
+        Object get(int ligne) {
+            return valeurs[ligne];
+        }
+
+        @Override
+        boolean set(int ligne, Object valeur) {
+            if (valeur != null && !(valeur instanceof String)) {
+                return false;
+            }
+            valeurs[ligne] = (String) valeur;
+            return true;
+        }
+
+        @Override
+        void ajuster() {
+            valeurs = Arrays.copyOf(valeurs, taille);
+            partagees = null;
+        }
+    }
+
+    private static class Objets extends Colonne {
+        Object[] valeurs = new Object[TAILLE_INITIALE];
+
+        @Override
+        void ajouter(ResultSet rs, int i) throws SQLException {
+            if (taille == valeurs.length) {
+                valeurs = Arrays.copyOf(valeurs, Math.max(TAILLE_INITIALE, taille * 2));
+            }
+            valeurs[taille++] = rs.getObject(i);
+        }
+
+        @Override
+        Object get(int ligne) {
+            return valeurs[ligne];
+        }
+
+        @Override
+        boolean set(int ligne, Object valeur) {
+            valeurs[ligne] = valeur;
+            return true;
+        }
+
+        @Override
+        void ajuster() {
+            valeurs = Arrays.copyOf(valeurs, taille);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Requêtes paramétrées sur les tables article, client, fournisseur et détail.
+ */
+package Stock;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Les recherches fréquentes des écrans de saisie (Facture, Achat,
+ * entree_stock), préparées une seule fois par connexion.
+ * Pool_Cnx ouvre les connexions avec useServerPrepStmts et cachePrepStmts :
+ * MySQL analyse la requête une fois et le pilote garde la requête préparée
+ * côté serveur d'un emprunt à l'autre de la connexion physique.
+ *
+ * Comme avec un Statement, exécuter à nouveau la même requête ferme le
+ * ResultSet précédent.
+ *
+ * @author IT
+ */
+public class Dao_Stock {
+
+    static final int IN_MAX = 500;
+
+    private final Connection cnx;
+    private final HashMap<String, PreparedStatement> requetes = new HashMap<>();
+
+    public Dao_Stock(Connection xcnx) {
+        cnx = xcnx;
+    }
+
+    public ResultSet article(String narticle) throws SQLException {
+        return requete("select * from article where narticle = ?", narticle);
+    }
+
+    public ResultSet article_designation(String designation) throws SQLException {
+        return requete("select * from article where designation = ?", designation);
+    }
+
+    public ResultSet stock_article(String narticle) throws SQLException {
+        return requete("select stock_f, stock_bl from article where narticle = ?", narticle);
+    }
+
+    /**
+     * Prix d'achat (article.prix_unitaire) de tous les articles d'un
+     * document, en une requête par paquet de IN_MAX codes. Clés sans
+     * distinction de casse, comme la comparaison MySQL.
+     */
+    public Map<String, Double> prix_achat(Collection<String> narticles) throws SQLException {
+        Map<String, Double> prix = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<String> codes = new ArrayList<>(new LinkedHashSet<>(narticles));
+        for (int debut = 0; debut < codes.size(); debut += IN_MAX) {
+            List<String> paquet = codes.subList(debut, Math.min(codes.size(), debut + IN_MAX));
+            StringBuilder sql = new StringBuilder("select narticle, prix_unitaire from article where narticle in (");
+            for (int i = 0; i < paquet.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            ResultSet rs = requete(sql.append(")").toString(), paquet.toArray());
+            while (rs.next()) {
+                prix.put(rs.getString(1), rs.getDouble(2));
+            }
+        }
+        return prix;
+    }
+
+    public ResultSet client(String nclient) throws SQLException {
+        return requete("select * from client where nclient = ?", nclient);
+    }
+
+    public ResultSet client_raison_sociale(String raison_sociale) throws SQLException {
+        return requete("select * from client where raison_sociale = ?", raison_sociale);
+    }
+
+    public ResultSet fournisseur(String nfournisseur) throws SQLException {
+        return requete("select * from fournisseur where nfournisseur = ?", nfournisseur);
+    }
+
+    public ResultSet fournisseur_nom(String nom_fournisseur) throws SQLException {
+        return requete("select * from fournisseur where nom_fournisseur = ?", nom_fournisseur);
+    }
+
+    /** Lignes d'un document dans sa table détail (detail_fact, detail_bl, ...). */
+    public ResultSet lignes(String detail, String nfact) throws SQLException {
+        return requete("select * from " + detail + " where nfact = ?", nfact);
+    }
+
+    public ResultSet requete(String sql, Object... valeurs) throws SQLException {
+        return preparer(sql, valeurs).executeQuery();
+    }
+
+    public int maj(String sql, Object... valeurs) throws SQLException {
+        return preparer(sql, valeurs).executeUpdate();
+    }
+
+    private PreparedStatement preparer(String sql, Object... valeurs) throws SQLException {
+        PreparedStatement ps = requetes.get(sql);
+        if (ps == null || ps.isClosed()) {
+            ps = cnx.prepareStatement(sql);
+            requetes.put(sql, ps);
+        }
+        for (int i = 0; i < valeurs.length; i++) {
+            ps.setObject(i + 1, valeurs[i]);
+        }
+        return ps;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Enregistrement d'un document en une seule transaction.
+ */
+package Stock;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Les écritures de la sauvegarde d'un document (en-tête, lignes, stock,
+ * chiffre d'affaires, tables de travail) sont d'abord décrites, puis
+ * executer() les passe dans l'ordre sur une connexion du pool en
+ * autoCommit=false : tout est validé ou rien. Les lignes partent en lots
+ * JDBC, réécrits en un seul INSERT multi-lignes par le pilote
+ * (rewriteBatchedStatements, voir Pool_Cnx.OPTIONS).
+ *
+ * Pas de TRUNCATE ici : il valide implicitement la transaction en cours,
+ * vider une table se fait par "delete from".
+ *
+ * La durée de chaque transaction est comptée par Mesures_Sql sous
+ * "commit <libellé>", au nom de l'écran appelant.
+ *
+ * @author IT
+ */
+public class Enregistrement_Document {
+
+    private interface Etape {
+        void executer(Connection cnx) throws SQLException;
+    }
+
+    private final String base;
+    private final String libelle;
+    private final List<Etape> etapes = new ArrayList<>();
+
+    /** libelle : table maître du document (fact, bl, fprof, achat, ...). */
+    public Enregistrement_Document(String xbase, String xlibelle) {
+        base = xbase;
+        libelle = xlibelle;
+    }
+
+    /** Une requête, avec ses paramètres. */
+    public Enregistrement_Document maj(final String sql, final Object... valeurs) {
+        etapes.add(new Etape() {
+            @Override
+            public void executer(Connection cnx) throws SQLException {
+                try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+                    lier(ps, valeurs);
+                    ps.executeUpdate();
+                }
+            }
+        });
+        return this;
+    }
+
+    /** La même requête pour chaque ligne de valeurs, en un lot. */
+    public Enregistrement_Document lot(final String sql, final List<Object[]> lignes) {
+        etapes.add(new Etape() {
+            @Override
+            public void executer(Connection cnx) throws SQLException {
+                if (lignes.isEmpty()) {
+                    return;
+                }
+                try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+                    for (Object[] valeurs : lignes) {
+                        lier(ps, valeurs);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+        });
+        return this;
+    }
+
+    /** Mouvements de stock du document. */
+    public Enregistrement_Document stock(final Mouvement_Stock mouvements) {
+        etapes.add(new Etape() {
+            @Override
+            public void executer(Connection cnx) throws SQLException {
+                mouvements.appliquer(cnx);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Ajoute montant au chiffre d'affaires (colonne c_affaire_...) du client
+     * ou du fournisseur, sans relire la valeur.
+     */
+    public Enregistrement_Document chiffre_affaires(String table, String colonne, String cle, String code, double montant) {
+        return maj("update " + table + " set " + colonne + " = coalesce(" + colonne + ", 0) + ? where "
+                + cle + " = ?", montant, code);
+    }
+
+    /** Passe toutes les étapes dans une transaction ; annule tout à la première erreur. */
+    public void executer() throws SQLException {
+        long debut = System.nanoTime();
+        boolean valide = false;
+        try (Connection cnx = javaconnect.cnx_activite(base)) {
+            cnx.setAutoCommit(false);
+            try {
+                for (Etape e : etapes) {
+                    e.executer(cnx);
+                }
+                cnx.commit();
+                valide = true;
+            } finally {
+                if (!valide) {
+                    cnx.rollback();
+                }
+                cnx.setAutoCommit(true);
+            }
+        } finally {
+            Mesures_Sql.transaction(libelle, System.nanoTime() - debut, valide);
+        }
+    }
+
+    private static void lier(PreparedStatement ps, Object[] valeurs) throws SQLException {
+        for (int i = 0; i < valeurs.length; i++) {
+            ps.setObject(i + 1, valeurs[i]);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * En-tête des documents imprimés (table activite), gardé en mémoire.
+ */
+package Stock;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * La ligne de activite d'un schéma, lue une fois et mise sous forme de
+ * paramètres d'état (domaine_activite_p, raison_sociale_p, ...). Chaque
+ * impression part d'une copie de ces paramètres et y ajoute les siens :
+ * elle ne relit plus la table.
+ *
+ * Une ligne lue n'est jamais modifiée. invalider() l'oublie après une
+ * écriture dans activite ; Param_Activite.invalider() oublie celle de
+ * l'ancien exercice. activite étant aussi modifiée hors de l'application,
+ * la ligne est relue en tâche de fond au-delà de Index_Codes.RECHARGER_APRES.
+ *
+ * @author IT
+ */
+public class Entete_Activite {
+
+    /** {colonne de activite, paramètre des états}. */
+    static final String[][] PARAMETRES = {
+        {"domaine_activite", "domaine_activite_p"},
+        {"sous_domaine", "sous_domaine_p"},
+        {"raison_sociale", "raison_sociale_p"},
+        {"adresse", "adress_p"},
+        {"commune", "commune_p"},
+        {"wilaya", "wilaya_p"},
+        {"tel_fixe", "tel_fixe_p"},
+        {"tel_port", "tel_port_p"},
+        {"e_mail", "e_mail_p"},
+        {"nrc", "nrc_p"},
+        {"nis", "nis_p"},
+        {"nart", "art_p"},
+        {"ident_fiscal", "ident_fiscal_p"},
+        {"banq", "banq_p"},
+        {"entete_bon", "entete_p"}
+    };
+
+    private static final ConcurrentHashMap<String, Entete_Activite> entetes = new ConcurrentHashMap<>();
+
+    private final Map<String, Object> parametres;
+    private final long charge_le;
+    private final AtomicBoolean relecture = new AtomicBoolean();
+
+    private Entete_Activite(Map<String, Object> lus) {
+        parametres = Collections.unmodifiableMap(lus);
+        charge_le = System.currentTimeMillis();
+    }
+
+    /** Copie des paramètres d'en-tête, à compléter par l'écran qui imprime. */
+    public static HashMap<String, Object> parametres(String base) throws SQLException {
+        return new HashMap<>(get(Param_Activite.schema(base)).parametres);
+    }
+
+    /** Lit l'en-tête de l'activité s'il ne l'est pas encore (hors EDT). */
+    public static void charger(String base) throws SQLException {
+        get(Param_Activite.schema(base));
+    }
+
+    /** A appeler après une écriture dans activite. */
+    public static void invalider(String base) {
+        try {
+            entetes.remove(Param_Activite.schema(base));
+        } catch (SQLException e) {
+            // pas de schéma, rien à oublier
+        }
+    }
+
+    /** Oublie l'en-tête du schéma (changement d'exercice). */
+    public static void oublier(String schema) {
+        entetes.remove(schema);
+    }
+
+    private static Entete_Activite get(final String schema) throws SQLException {
+        Entete_Activite e = entetes.get(schema);
+        if (e == null) {
+            e = lire(schema);
+            Entete_Activite deja = entetes.putIfAbsent(schema, e);
+            return deja != null ? deja : e;
+        }
+        if (System.currentTimeMillis() - e.charge_le > Index_Codes.RECHARGER_APRES
+                && e.relecture.compareAndSet(false, true)) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        entetes.put(schema, lire(schema));
+                    } catch (SQLException ex) {
+                        entetes.remove(schema);
+                    }
+                }
+            }, "Entete_Activite-" + schema);
+            t.setDaemon(true);
+            t.start();
+        }
+        return e;
+    }
+
+    private static Entete_Activite lire(String schema) throws SQLException {
+        Map<String, Object> lus = new HashMap<>();
+        try (Connection cnx = javaconnect.cnx_schema(schema);
+             Statement St = cnx.createStatement()) {
+            ResultSet Rs = St.executeQuery("select * from activite");
+            if (Rs.next()) {
+                ResultSetMetaData md = Rs.getMetaData();
+                for (String[] p : PARAMETRES) {
+                    for (int i = 1; i <= md.getColumnCount(); i++) {
+                        if (md.getColumnLabel(i).equalsIgnoreCase(p[0])) {
+                            lus.put(p[1], Rs.getString(i));
+                        }
+                    }
+                }
+            }
+        }
+        return new Entete_Activite(lus);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Etats Jasper compilés une fois et gardés en mémoire.
+ */
+package Stock;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import net.sf.jasperreports.components.table.TableComponent;
+import net.sf.jasperreports.engine.JRBand;
+import net.sf.jasperreports.engine.JRComponentElement;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRDatasetRun;
+import net.sf.jasperreports.engine.JRElement;
+import net.sf.jasperreports.engine.JRElementGroup;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.design.JRDesignDatasetRun;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.engine.design.JRDesignParameter;
+import net.sf.jasperreports.engine.design.JRDesignQuery;
+import net.sf.jasperreports.engine.design.JasperDesign;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+import net.sf.jasperreports.engine.xml.JRXmlLoader;
+
+/**
+ * Chaque état (.jrxml du dossier DOSSIER) est compilé une fois et le
+ * JasperReport gardé en mémoire, avec la date du source : un source
+ * modifié est recompilé à l'impression suivante. Le résultat est aussi
+ * écrit en .jasper à côté du source et relu au démarrage suivant tant que
+ * le source n'a pas changé (un dossier en lecture seule ne fait que
+ * perdre cette économie).
+ *
+ * La requête d'un état n'est plus remplacée dans le JasperDesign : à la
+ * compilation, elle devient "$P!{REQUETE}", REQUETE ayant pour valeur par
+ * défaut la requête du .jrxml. L'écran passe sa requête dans les
+ * paramètres (hm.put(Etats.REQUETE, sql)) et la forme compilée sert à
+ * toutes les impressions.
+ *
+ * prechauffer() compile les états connus en tâche de fond au démarrage ;
+ * une impression demandée pendant ce temps attend la compilation en cours
+ * au lieu d'en lancer une seconde.
+ *
+ * etat_memoire() rend une seconde forme de l'état, pour un document encore
+ * en mémoire (Impression_Document) : le tableau des lignes, qui relisait
+ * facture_temp sur REPORT_CONNECTION, lit la source passée sous LIGNES.
+ * Cette forme est écrite en nom_memoire.jasper.
+ *
+ * @author IT
+ */
+public class Etats {
+
+    public static final String REQUETE = "REQUETE";
+
+    /** Source des lignes (JRDataSource) de la forme etat_memoire(). */
+    public static final String LIGNES = "LIGNES";
+
+    static final String DOSSIER = System.getProperty("stock.etats", "C:\\outil_dev");
+
+    /** Les états imprimés par les écrans, compilés au démarrage. */
+    static final String[] CONNUS = {
+        "report_fact", "report_bl", "report_prof", "report_ticket", "report_smal_bl",
+        "report_art_stock", "report_art_seuil", "report_art_publ", "report_ventes", "Report_annexe01"
+    };
+
+    /** Un état compilé et la date du source compilé. */
+    private static class Compile {
+        final long date_source;
+        final JasperReport jr;
+
+        Compile(long xdate_source, JasperReport xjr) {
+            date_source = xdate_source;
+            jr = xjr;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Future<Compile>> etats = new ConcurrentHashMap<>();
+
+    /** L'état compilé ; nom : nom du .jrxml sans extension (report_fact, ...). */
+    public static JasperReport etat(String nom) throws JRException {
+        return etat(nom, false);
+    }
+
+    /**
+     * L'état dont le tableau des lignes lit le paramètre LIGNES ; un état
+     * sans tableau (report_ticket) n'a pas ce paramètre et lit ses lignes
+     * dans sa source principale.
+     */
+    public static JasperReport etat_memoire(String nom) throws JRException {
+        return etat(nom, true);
+    }
+
+    private static JasperReport etat(String nom, final boolean memoire) throws JRException {
+        final File source = new File(DOSSIER, nom + ".jrxml");
+        String cle = source.getPath() + (memoire ? "#" + LIGNES : "");
+        while (true) {
+            final long date_source = source.lastModified();
+            Future<Compile> f = etats.get(cle);
+            if (f == null) {
+                FutureTask<Compile> t = new FutureTask<>(new Callable<Compile>() {
+                    @Override
+                    public Compile call() throws JRException {
+                        return new Compile(date_source, compiler(source, date_source, memoire));
+                    }
+                });
+                f = etats.putIfAbsent(cle, t);
+                if (f == null) {
+                    t.run();
+                    f = t;
+                }
+            }
+            Compile c;
+            try {
+                c = f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JRException(e);
+            } catch (ExecutionException e) {
+                etats.remove(cle, f);
+                Throwable cause = e.getCause();
+                throw cause instanceof JRException ? (JRException) cause : new JRException(cause);
+            }
+            if (c.date_source == date_source) {
+                return c.jr;
+            }
+            // source modifié depuis la compilation
+            etats.remove(cle, f);
+        }
+    }
+
+    /** Compile les états connus en tâche de fond. */
+    public static void prechauffer() {
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (String nom : CONNUS) {
+                    try {
+                        etat(nom);
+                    } catch (JRException e) {
+                        // compilé, et l'erreur affichée, à l'impression
+                    }
+                }
+            }
+        }, "Etats");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    private static JasperReport compiler(File source, long date_source, boolean memoire) throws JRException {
+        String chemin = source.getPath();
+        File compile = new File(chemin.substring(0, chemin.length() - ".jrxml".length())
+                + (memoire ? "_memoire" : "") + ".jasper");
+        if (compile.lastModified() > date_source) {
+            try {
+                JasperReport jr = (JasperReport) JRLoader.loadObject(compile);
+                if (avec_requete(jr)) {
+                    return jr;
+                }
+                // .jasper compilé par iReport : sa requête est figée
+            } catch (JRException | ClassCastException e) {
+                // illisible : recompilé
+            }
+        }
+        JasperDesign jd = JRXmlLoader.load(chemin);
+        parametrer(jd);
+        if (memoire) {
+            lignes_en_parametre(jd);
+        }
+        JasperReport jr = JasperCompileManager.compileReport(jd);
+        try {
+            JRSaver.saveObject(jr, compile);
+        } catch (JRException e) {
+            System.out.println("Etat non enregistré : " + compile + " " + e.getMessage());
+        }
+        return jr;
+    }
+
+    /** Remplace la requête du design par $P!{REQUETE}, l'ancienne requête par défaut. */
+    private static void parametrer(JasperDesign jd) throws JRException {
+        if (!jd.getParametersMap().containsKey(REQUETE)) {
+            String ancienne = jd.getQuery() == null || jd.getQuery().getText() == null ? "select 1" : jd.getQuery().getText();
+            JRDesignParameter p = new JRDesignParameter();
+            p.setName(REQUETE);
+            p.setValueClass(String.class);
+            p.setForPrompting(false);
+            p.setDefaultValueExpression(new JRDesignExpression(litteral(ancienne)));
+            jd.addParameter(p);
+        }
+        JRDesignQuery requete = new JRDesignQuery();
+        requete.setLanguage("sql");
+        requete.setText("$P!{" + REQUETE + "}");
+        jd.setQuery(requete);
+    }
+
+    /** Fait lire LIGNES, au lieu de REPORT_CONNECTION, aux tableaux de l'état. */
+    private static void lignes_en_parametre(JasperDesign jd) throws JRException {
+        List<JRDesignDatasetRun> tableaux = new ArrayList<>();
+        for (JRBand b : new JRBand[]{jd.getBackground(), jd.getTitle(), jd.getPageHeader(), jd.getColumnHeader(),
+            jd.getColumnFooter(), jd.getPageFooter(), jd.getLastPageFooter(), jd.getSummary(), jd.getNoData()}) {
+            tableaux(b, tableaux);
+        }
+        if (jd.getDetailSection() != null && jd.getDetailSection().getBands() != null) {
+            for (JRBand b : jd.getDetailSection().getBands()) {
+                tableaux(b, tableaux);
+            }
+        }
+        if (tableaux.isEmpty()) {
+            return;
+        }
+        for (JRDesignDatasetRun run : tableaux) {
+            run.setConnectionExpression(null);
+            run.setDataSourceExpression(new JRDesignExpression("$P{" + LIGNES + "}"));
+        }
+        if (!jd.getParametersMap().containsKey(LIGNES)) {
+            JRDesignParameter p = new JRDesignParameter();
+            p.setName(LIGNES);
+            p.setValueClass(JRDataSource.class);
+            p.setForPrompting(false);
+            jd.addParameter(p);
+        }
+    }
+
+    private static void tableaux(JRElementGroup groupe, List<JRDesignDatasetRun> tableaux) {
+        if (groupe == null || groupe.getElements() == null) {
+            return;
+        }
+        for (JRElement e : groupe.getElements()) {
+            if (e instanceof JRElementGroup) {
+                tableaux((JRElementGroup) e, tableaux);
+            } else if (e instanceof JRComponentElement
+                    && ((JRComponentElement) e).getComponent() instanceof TableComponent) {
+                JRDatasetRun run = ((TableComponent) ((JRComponentElement) e).getComponent()).getDatasetRun();
+                if (run instanceof JRDesignDatasetRun) {
+                    tableaux.add((JRDesignDatasetRun) run);
+                }
+            }
+        }
+    }
+
+    private static boolean avec_requete(JasperReport jr) {
+        return parametre(jr, REQUETE);
+    }
+
+    /** Vrai si l'état compilé déclare ce paramètre. */
+    static boolean parametre(JasperReport jr, String nom) {
+        if (jr.getParameters() != null) {
+            for (JRParameter p : jr.getParameters()) {
+                if (nom.equals(p.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Le texte en littéral Java, pour une expression de l'état. */
+    static String litteral(String texte) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < texte.length(); i++) {
+            char c = texte.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
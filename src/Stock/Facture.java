@@ -13,23 +13,17 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Random;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.*;
-import net.sf.jasperreports.engine.JasperCompileManager;
-import net.sf.jasperreports.engine.JasperFillManager;
-import net.sf.jasperreports.engine.JasperPrint;
-import net.sf.jasperreports.engine.JasperReport;
-import net.sf.jasperreports.engine.design.JRDesignQuery;
-import net.sf.jasperreports.engine.design.JasperDesign;
-import net.sf.jasperreports.engine.xml.JRXmlLoader;
 import org.jdesktop.swingx.autocomplete.AutoCompleteDecorator;
-import net.sf.jasperreports.view.JasperViewer;
 //import net.proteanit.sql.DbUtils;
 
 /**
@@ -71,23 +65,66 @@ public class Facture extends javax.swing.JFrame {
         KeyboardFocusManager.getCurrentKeyboardFocusManager()
                 .setDefaultFocusTraversalKeys(
                 KeyboardFocusManager.FORWARD_TRAVERSAL_KEYS, ftk);
-         AutoCompleteDecorator.decorate(jComboBox2);
+         Recherche_Article.installer(jComboBox2, base);
          AutoCompleteDecorator.decorate(jComboBox1);
+         Table_Factures.setModel(lignes);
+         Table_Factures.setDefaultRenderer(Double.class, new TKMntRenderer());
           jPanel_impression.setVisible(false);
           //txt_patienter.setVisible(false);
     }
     
-    private void Update_Table_Factures() {
-        
-        try {            
-            String sql = "select F.id as \"Seq.\", F.Narticle as \"Code Article\", A.Designation as \"Designation\", F.prix as \"Prix Unitaire\", A.tva as \"Taux TVA\", A.tva*F.qte*F.prix/100 as \"montant TVA\", F.qte as \"Quantité\", F.total_ligne as \"Prix Total\"  from "+tab_facture+ " AS F, article AS A where F.narticle=A.narticle order by F.id";            
-            // JOptionPane.showMessageDialog(null, sql);
-            tm = new MyTableModel(sql,base);
-            Table_Factures.setModel(tm);
-            Table_Factures.setDefaultRenderer(Double.class, new TKMntRenderer());
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "avec la table tab_facture\n" + e.getMessage());
+    /**
+     * Reprend les lignes d'une saisie interrompue du même type de document,
+     * ou rend leur stock si l'utilisateur n'en veut pas ; puis ouvre le
+     * brouillon de cet écran.
+     */
+    private void reprendre_brouillon() {
+        Brouillon b = Brouillon.reprendre(base, fichier_master);
+        if (b != null) {
+            try {
+                List<String[]> anciennes = b.lire();
+                int r = JOptionPane.showConfirmDialog(null, "Une saisie interrompue de " + anciennes.size()
+                        + " ligne(s) a été retrouvée.\nVoulez vous la reprendre ?", "Brouillon", JOptionPane.YES_NO_OPTION);
+                if (r == 0) {
+                    lignes.charger(anciennes);
+                    calcul_des_montant();
+                } else {
+                    List<String[]> articles_qte = new ArrayList<>();
+                    for (String[] c : anciennes) {
+                        articles_qte.add(new String[]{c[0], c[2]});
+                    }
+                    restituer_stock(articles_qte);
+                }
+            } catch (Exception e) {
+                JOptionPane.showMessageDialog(null, "Erreur dans le brouillon\n" + e.getMessage());
+            }
+        }
+        lignes.journaliser(b != null ? b : Brouillon.nouveau(base, fichier_master));
+    }
+
+    /** Saisie abandonnée : le stock des lignes est rendu. */
+    private void abandonner() {
+        List<String[]> articles_qte = new ArrayList<>();
+        for (Lignes_Facture.Ligne l : lignes.lignes()) {
+            articles_qte.add(new String[]{l.narticle, String.valueOf(l.qte)});
+        }
+        restituer_stock(articles_qte);
+        lignes.vider();
+    }
+
+    /** Lignes du document dans la table détail, et dans facture_temp pour l'impression du bon. */
+    private void enregistrer_lignes(Enregistrement_Document doc) {
+        List<Object[]> detail = new ArrayList<>();
+        List<Object[]> temp = new ArrayList<>();
+        for (Lignes_Facture.Ligne l : lignes.lignes()) {
+            detail.add(new Object[]{txt_nfact.getText(), l.narticle, l.qte, l.tva, l.pr_achat, l.prix, l.total_ligne});
+            temp.add(new Object[]{txt_nfact.getText(), l.narticle, l.qte, l.tva, l.pr_achat, l.prix, l.total_ligne, parametre});
         }
+        doc.lot("insert into " + fichier_detail
+                + " (nfact, narticle, qte,tva,pr_achat,prix, total_ligne) values (?,?,?,?,?,?,?)", detail);
+        doc.maj("delete from facture_temp");
+        doc.lot("insert into facture_temp"
+                + " (nfact, narticle, qte,tva,pr_achat,prix, total_ligne, type_fact) values (?,?,?,?,?,?,?,?)", temp);
     }
     
     @SuppressWarnings("unchecked")
@@ -826,104 +863,32 @@ public class Facture extends javax.swing.JFrame {
             txt_titre.setBackground(Color.BLUE);
             txt_titre.setForeground(Color.WHITE);
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-            String sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;
-            String user_bd="root";
-            String passwd_bd="";
-            //JOptionPane.showMessageDialog(null, var_cnx);
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            cnx = javaconnect.cnx_activite(base);
             St = cnx.createStatement();
-            }
-            
-            Random rand = new Random();
-            int pickedNumber = rand.nextInt(100) + 1;
-            tab_facture="facture"+String.valueOf(pickedNumber);
-            //JOptionPane.showMessageDialog(null, tab_facture);
-            sql="create table "+tab_facture+"  as select * from facture where 0";           
-           // JOptionPane.showMessageDialog(null, sql);
+            dao = new Dao_Stock(cnx);
             
-            St.executeUpdate(sql);
-            sql="ALTER TABLE "+tab_facture+" ADD PRIMARY KEY (`id`) ";
-            St.executeUpdate(sql);
-            sql="ALTER TABLE "+tab_facture+" CHANGE `id` `id` MEDIUMINT( 9 ) NOT NULL AUTO_INCREMENT ";
-            St.executeUpdate(sql);
-            //query = "truncate table facture";
-            //St.execute(query);
-            query = "select count(*) as nbre_enr FROM " + fichier_master + ";";
-            St.execute(query);
-            switch (parametre) {
-                case "stock_f":
-                    
-                    titre = "n_fact";
-                    
-                    break;
-                case "stock_bl" :   
-                    
-                    titre = "n_bl";
-                    
-                    break;
-                case "" :   
-                    titre = "n_prof";
-                   
-                    break;
-            }
-            query = "select "+titre+"  as nbre_enr FROM mysql.stock_table_parameter  where code_activite='"+base+"'";;
-            St.execute(query);
-            Rs = St.executeQuery(query);
-            if (Rs.next()) {
-                String add1 = Rs.getString("nbre_enr");
-                if (Integer.parseInt(add1) > 0) {
-                    
-                        int_nfact = Integer.parseInt(add1);                                                        
-                } 
-                
-                txt_nfact.setText(Integer.toString(int_nfact));
-                int_nfact = Integer.parseInt(add1) + 1;
-                //sql = "update mysql.stock_table_parameter set n_bl="+int_nbl+", n_fact="+int_nfact+", n_prof="+int_nprof+ "  where code_activite='"+base+"'";
-                sql = "update mysql.stock_table_parameter set "+titre+ "="+int_nfact+ "  where code_activite='"+base+"'";
-               // JOptionPane.showMessageDialog(null,sql);
-                St.executeUpdate(sql);
-                Date dt = new Date();
-                // SimpleDateFormat df = new SimpleDateFormat( "yyyy-MM-dd");
-                //JOptionPane.showMessageDialog(null,df.format(dt));
-                date_fact.setDate(dt);
-                date_fact.setDateFormatString("yyyy-MM-dd");
-                //JOptionPane.showMessageDialog(null, txt_nfact.getText());
-                fillCombo1();
-                fillCombo2();
-            }
+            txt_nfact.setText(Integer.toString(Numerotation.prendre(base, Numerotation.compteur(parametre))));
+            Date dt = new Date();
+            // SimpleDateFormat df = new SimpleDateFormat( "yyyy-MM-dd");
+            //JOptionPane.showMessageDialog(null,df.format(dt));
+            date_fact.setDate(dt);
+            date_fact.setDateFormatString("yyyy-MM-dd");
+            //JOptionPane.showMessageDialog(null, txt_nfact.getText());
+            fillCombo1();
+            charger_articles();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur de connexcion\n" + e.getMessage());
         }
-        Update_Table_Factures();        
+        reprendre_brouillon();
         
     }//GEN-LAST:event_formWindowOpened
     
     
     private void mettre_jour_stock(String xcode_art, String oper, String qte) {
-        int x_resultat = 0;        
         try {
-            if (!parametre.equals("")) {                
-                String sql = "select stock_f,stock_bl from article where narticle = '" + xcode_art + "'";                
-                Rs = St.executeQuery(sql);                
-                if (Rs.next()) {
-                    //String xstock_f = Rs.getString("stock_f");
-                    String xstock_f = Rs.getString(parametre);
-                    int v_xstock_f = Integer.parseInt(xstock_f);
-                    int xqte = Integer.parseInt(qte);
-                    if (!"ajouter".equals(oper)) {
-                        x_resultat = v_xstock_f + xqte;
-                    } else {
-                        x_resultat = v_xstock_f - xqte;                        
-                    }
-                    String query = "update article set " + parametre + " = '" + x_resultat + "' where narticle = '" + xcode_art + "'";                    
-                    St3.executeUpdate(query);                    
-                }                
+            if (!parametre.equals("")) {
+                int xqte = Integer.parseInt(qte);
+                new Mouvement_Stock().ajouter(parametre, xcode_art, "ajouter".equals(oper) ? -xqte : xqte).appliquer(cnx);
             }
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans la mise à jour dans la table Article\n" + e.getMessage());
@@ -931,37 +896,61 @@ public class Facture extends javax.swing.JFrame {
         }
     }
 
+    /**
+     * Prend au stock la quantité d'une ligne saisie. Si l'activité contrôle
+     * le stock : false, sans rien prendre, quand le stock ne la couvre pas
+     * (vendu entre-temps par un autre poste) et que l'utilisateur ne veut pas
+     * réessayer (un autre poste peut abandonner sa saisie et rendre le stock).
+     */
+    private boolean reserver_stock(String xcode_art, int qte) {
+        if (parametre.equals("")) {
+            return true;
+        }
+        while (true) {
+            try {
+                Mouvement_Stock.reserver(cnx, parametre, xcode_art, qte, Param_Activite.get(base).controle_stock);
+                return true;
+            } catch (Mouvement_Stock.Stock_Insuffisant e) {
+                int r = JOptionPane.showConfirmDialog(null, e.getMessage() + "\nRéessayer ?", "Stock", JOptionPane.YES_NO_OPTION);
+                if (r != 0) {
+                    return false;
+                }
+            } catch (Exception e) {
+                JOptionPane.showMessageDialog(null, "Erreur dans la mise à jour dans la table Article\n" + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /** Rend en un seul lot le stock des lignes (narticle, qte). */
+    private void restituer_stock(List<String[]> articles_qte) {
+        try {
+            if (!parametre.equals("")) {
+                Mouvement_Stock m = new Mouvement_Stock();
+                for (String[] a : articles_qte) {
+                    m.ajouter(parametre, a[0], Integer.parseInt(a[1]));
+                }
+                m.appliquer(cnx);
+            }
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "Erreur dans la mise à jour dans la table Article\n" + e.getMessage());
+        }
+    }
+
     private void calcul_des_montant() {
         
         try {            
-            String sql = "select sum(qte*prix) as \"s_total\",sum(qte*prix*tva/100) as \"s_tva\" from "+tab_facture+"";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-                String add1 = Rs.getString("s_total") + "0";
-                String add2 = Rs.getString("s_tva") + "0";
-                if ("null0".equals(add1)) {
-                    add1 = "0.0";
-                    add2 = "0.0";
-                } else {
-                    add1 = Rs.getString("s_total");
-                    add2 = Rs.getString("s_tva");
-                }                
-                double add1_d = Double.parseDouble(add1);
-                double add2_d = Double.parseDouble(add2);
-                xtot_ht = add1_d;
-                xtot_tva = add2_d;
-                add1 = mntFmt.mntFmt(add1_d);
-                add2 = mntFmt.mntFmt(add2_d);
-                txt_s_total.setText(add1);
-                txt_total_tva.setText(add2);
-                timbre = (add1_d+ add2_d) * 1 / 100;
-                if (timbre > 2500.00) {
-                    timbre = 2500.00;
-                }
-                String add3 = mntFmt.mntFmt(timbre);
-                txt_timbre.setText(add3);
-                
-            }
+            double add1_d = lignes.total_ht();
+            double add2_d = lignes.total_tva();
+            xtot_ht = add1_d;
+            xtot_tva = add2_d;
+            String add1 = mntFmt.mntFmt(add1_d);
+            String add2 = mntFmt.mntFmt(add2_d);
+            txt_s_total.setText(add1);
+            txt_total_tva.setText(add2);
+            timbre = Totaux_Document.timbre(add1_d + add2_d);
+            String add3 = mntFmt.mntFmt(timbre);
+            txt_timbre.setText(add3);
             double ttc = xtot_ht + xtot_tva + timbre;
             String add_ttc = mntFmt.mntFmt(ttc);
             txt_TTC.setText(add_ttc);
@@ -979,7 +968,7 @@ public class Facture extends javax.swing.JFrame {
 
     private void champs_vide() {        
         txt_code_art.setText("");        
-        jComboBox2.setSelectedIndex(0);        
+        jComboBox2.setSelectedItem("");        
         txt_prix_unit.setText("");
         txt_tva.setText("");        
         txt_stock_f.setText("");        
@@ -988,39 +977,17 @@ public class Facture extends javax.swing.JFrame {
         txt_prix_tot.setText("");        
     }
     
-    private void affiche_champs() {
+    private void affiche_champs(Lignes_Facture.Ligne l) {
         try {
-            // String add1 = Rs.getString("nfact");
-            // txt_nfact.setText(add1);
-            //String add2 = Rs.getString("raison_sociale");
-            //txt_raison_sociale.setText(add2);
-            
-            
-            String add3 = Rs.getString("Code Article");
-            txt_code_art.setText(add3);
-            String add4 = Rs.getString("Designation");
-            
-            for (j = 0; j < jComboBox2.getItemCount(); j++) {
-                
-                if (add4.equals(jComboBox2.getItemAt(j).toString())) {
-                    
-                    break;                    
-                }
-            }
+            txt_code_art.setText(l.narticle);
+            String add4 = l.designation;
             
-            jComboBox2.setSelectedIndex(j);            
-            String add5 = Rs.getString("Prix Unitaire");
-            txt_prix_unit.setText(mntFmt.mntFmt(Double.parseDouble(add5)));
-            String add6 = Rs.getString("TVA");
-            txt_tva.setText(add6);
-            String add7 = Rs.getString("Quantité");
-            txt_qte.setText(add7);
-            String add9 = Rs.getString("Prix Total");            
-            txt_prix_tot.setText(mntFmt.mntFmt(Double.parseDouble(add9)));
-            //String txt_spell="";
-            //String X=Numb_to_Spell.spell(Double.parseDouble(add9), txt_spell);
-            exp_spell = Numb_to_Spell.spell(Double.parseDouble(add9), "");
-            //JOptionPane.showMessageDialog(null, X);
+            jComboBox2.setSelectedItem(add4);
+            txt_prix_unit.setText(mntFmt.mntFmt(l.prix));
+            txt_tva.setText(l.tva == Math.rint(l.tva) ? String.valueOf((long) l.tva) : String.valueOf(l.tva));
+            txt_qte.setText(String.valueOf(l.qte));
+            txt_prix_tot.setText(mntFmt.mntFmt(l.total_ligne));
+            exp_spell = Numb_to_Spell.spell(l.total_ligne, "");
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans la table\n" + e.getMessage());
         }
@@ -1035,14 +1002,7 @@ public class Facture extends javax.swing.JFrame {
             n_id=Table_click;
             mod_ok=true;
             Enregistrer.setEnabled(false);
-            String sql = "select F.id as \"Seq.\", F.Narticle as \"Code Article\", A.Designation as \"Designation\", F.prix as \"Prix Unitaire\", A.tva as \"TVA\", F.qte as \"Quantité\", F.total_ligne as \"Prix Total\"  from "+tab_facture +" AS F, article AS A where F.narticle=A.narticle and F.id ='" + Table_click + "'";
-           // Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test?useUnicode=yes&amp;characterEncoding=UTF-8", "root", "");
-            //St = cnx.createStatement();
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-                affiche_champs();                
-               // art_active();
-            }
+            affiche_champs(lignes.ligne(row));
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans la table\n" + e.getMessage());
         }
@@ -1059,14 +1019,7 @@ public class Facture extends javax.swing.JFrame {
                 mod_ok=true;
                 Enregistrer.setEnabled(false);
                // JOptionPane.showMessageDialog(null, Table_click);
-                String sql = "select F.id as \"Seq.\", F.Narticle as \"Code Article\", A.Designation as \"Designation\", F.prix as \"Prix Unitaire\", A.tva as \"TVA\", F.qte as \"Quantité\", F.total_ligne as \"Prix Total\"  from "+tab_facture +" AS F, article AS A where F.narticle=A.narticle and F.id ='" + Table_click + "'";
-                
-             //   Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test", "root", "");
-              //  St = cnx.createStatement();
-                Rs = St.executeQuery(sql);
-                if (Rs.next()) {
-                    affiche_champs();
-                }
+                affiche_champs(lignes.ligne(row));
             } catch (Exception e) {
                 JOptionPane.showMessageDialog(null, "Erreur dans la table\n" + e.getMessage());
             }
@@ -1076,49 +1029,15 @@ public class Facture extends javax.swing.JFrame {
     private void ajout_ligne() {
         try {
             //date_rc.setDateFormatString("yyyy-MM-dd");
-            if (!mod_ok) {
-            String sql = "select * from article where narticle='" + txt_code_art.getText() + "'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {                
-                sql = "select id, Narticle , prix, tva,tva*qte*prix/100 as TVA, qte , total_ligne from "+tab_facture+" where narticle='" + txt_code_art.getText() + "'";
-                //Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test", "root", "");
-                // JOptionPane.showMessageDialog(null,sql);
-                St1 = cnx.createStatement();
-                St3 = cnx.createStatement();                
-                St = cnx.createStatement();
-                Rs = St.executeQuery(sql);
-               /* le 23-11-18 if (Rs.next()) {                    
-                    String add7 = Rs.getString("qte");
-                    // JOptionPane.showMessageDialog(null,add7);
-                    mettre_jour_stock(txt_code_art.getText(), "restituer", add7);
-                    String query = "update facture set qte ='"
-                            + txt_qte.getText() + "', prix ='"
-                            + prix_unitaire.toString() + "', total_ligne ='"
-                            + stot_ligne.toString() + "' where narticle = '" + txt_code_art.getText() + "'";                    
-                    St.executeUpdate(query);
-                    mettre_jour_stock(txt_code_art.getText(), "ajouter", txt_qte.getText());
-                    Update_Table_Factures();
-                    // JOptionPane.showMessageDialog(null,"ligne moodifiée !");                        
-                } else { */
-                    String query = "insert into "+tab_facture +" (nfact,narticle, qte,tva,prix, total_ligne,type_fact) values ('"
-                            + txt_nfact.getText() + "','"
-                            + txt_code_art.getText() + "','"
-                            + txt_qte.getText() + "','"
-                            + txt_tva.getText() + "','"
-                            + prix_unitaire.toString() + "','"                            
-                            + stot_ligne.toString() + "','"
-                            + parametre + "')";
-                    St.executeUpdate(query);
-                    mettre_jour_stock(txt_code_art.getText(), "ajouter", txt_qte.getText());
-                    Update_Table_Factures();                    
+            if (!mod_ok && !sauvegarde) {
+            Rs = dao.article(txt_code_art.getText());
+            if (Rs.next() && reserver_stock(txt_code_art.getText(), Integer.parseInt(txt_qte.getText()))) {                
+                    lignes.ajouter(txt_code_art.getText(), Rs.getString("designation"), Integer.parseInt(txt_qte.getText()),
+                            Double.parseDouble(txt_tva.getText()), prix_unitaire, stot_ligne);
                     
                     int lastRow = Table_Factures.getRowCount() - 1;
-                    //JOptionPane.showMessageDialog(null,lastRow);
                     //Table_Factures.setRowSelectionInterval(lastRow, lastRow);
                     Table_Factures.changeSelection(lastRow, lastRow, rootPaneCheckingEnabled, rootPaneCheckingEnabled);
-
-                    // JOptionPane.showMessageDialog(null,"ligne ajoutée !");
-                    // }
                 calcul_des_montant();
             }
             }
@@ -1128,7 +1047,6 @@ public class Facture extends javax.swing.JFrame {
         }
         //date_rc.setDateFormatString("yyyy-MM-dd");    
         champs_vide();
-        Update_Table_Factures();
         //txt_code_art.setText("");
         txt_code_art.requestFocus();
         
@@ -1166,31 +1084,14 @@ public class Facture extends javax.swing.JFrame {
         }
          //JOptionPane.showMessageDialog(null, "Salam" );
         try {
-            String query ="select count(*) as nbre_enr FROM article";
-            St.execute(query);
-            Rs = St.executeQuery(query);
-            if (Rs.next()) {
-                
-                String add1 = Rs.getString("nbre_enr");
-                
-                if (Integer.parseInt(add1) != jComboBox2.getItemCount()-1){               
-                    jPanel4.setVisible(true);
-                    JOptionPane.showMessageDialog(null, "Taper Ok pour la Mise à jour " );
-                    fillCombo2();
-                    jPanel4.setVisible(false);
-                }}
-            String sql = "select * from article where narticle = '" + txt_code_art.getText() + "'";
-            Rs = St.executeQuery(sql);            
-            if (Rs.next()) {
-                //JOpHAtionPane.showMessageDialog(null, "trouvé");
+            boolean trouve = Index_Codes.existe(base, Index_Codes.ARTICLE, txt_code_art.getText());
+            if (trouve) {
+                Rs = dao.article(txt_code_art.getText());
+                trouve = Rs.next();
+            }
+            if (trouve) {
                 String add4 = Rs.getString("Designation");                
-                for (j = 0; j < jComboBox2.getItemCount(); j++) {                    
-                    if (add4.equals(jComboBox2.getItemAt(j).toString())) {                        
-                        break;                        
-                    }
-                   
-                }
-                jComboBox2.setSelectedIndex(j);                
+                jComboBox2.setSelectedItem(add4);
                 String add5 = Rs.getString("Prix_vente");
                 txt_prix_unit.setText(mntFmt.mntFmt(Double.parseDouble(add5)));                
                 String add6 = Rs.getString("TVA");
@@ -1202,7 +1103,7 @@ public class Facture extends javax.swing.JFrame {
                 txt_qte.setText("");
                 txt_prix_tot.setText("");                
             } else {
-                jComboBox2.setSelectedIndex(0);                
+                jComboBox2.setSelectedItem("");                
                 txt_prix_unit.setText("");
                 txt_tva.setText("");                
                 txt_stock_f.setText("");                
@@ -1225,51 +1126,29 @@ public class Facture extends javax.swing.JFrame {
         
     }//GEN-LAST:event_txt_qteActionPerformed
     private void fillCombo1() {
-        String sql = "select * from client order by raison_sociale";
         try {
-            jComboBox1.addItem("          ");            
-            Rs = St.executeQuery(sql);
-            while (Rs.next()) {
-                String nme = Rs.getString("raison_sociale");
-                //String nme1 = Rs.getString("nclient");
-                //jComboBox1.addItem(nme1 + " " + nme);
-                jComboBox1.addItem(nme);
-            }
-            
+            jComboBox1.setModel(Listes_Reference.modele(base, Listes_Reference.CLIENTS, true, false));
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
         }
     }
 
-    private void fillCombo2() {
-        String sql = "select * from article order by designation";
-        //
-        //box2++;
-       // jPanel4.setVisible(true);
-       // JOptionPane.showMessageDialog(null, "Taper Ok pour la Mise à jour " );
-        try {
-           
-            jComboBox2.removeAllItems();
-            jComboBox2.addItem("          ");            
-            Rs = St.executeQuery(sql);
-            while (Rs.next()) {
-                String nme = Rs.getString("designation");
-                //String nme1 = Rs.getString("narticle");
-                jComboBox2.addItem(nme);
+    /** Charge l'index des articles pour la recherche à la frappe (Recherche_Article). */
+    private void charger_articles() {
+        new Tache_Bd<Void>(this) {
+            @Override
+            protected Void executer() throws Exception {
+                Index_Articles.charger(base);
+                return null;
             }
-           
-           // jPanel4.setVisible(false);
-            // JOptionPane.showMessageDialog(null,jComboBox2.getItemCount() );
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
-        }       
+        }.lancer();
     }
     
     private void txt_code_cliKeyReleased(java.awt.event.KeyEvent evt) {//GEN-FIRST:event_txt_code_cliKeyReleased
         try {
-            String sql = "select * from client where nclient = '" + txt_code_cli.getText() + "'";
-            Rs = St.executeQuery(sql);            
+            Rs = dao.client(txt_code_cli.getText());
             if (Rs.next()) {
+                retenir_client(Rs);
                 //JOptionPane.showMessageDialog(null, "trouvé");
                 String add4 = Rs.getString("Raison_sociale");
                 //String add5 = txt_code_cli.getText() + " " + add4;
@@ -1435,27 +1314,11 @@ public class Facture extends javax.swing.JFrame {
                 }
                 
                 
-                String sql = "select id, Narticle , prix,  tva, qte , total_ligne from "+tab_facture+" where narticle='" + txt_code_art.getText() + "'";
-                // Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test", "root", "");
-                St1 = cnx.createStatement();
-                St3 = cnx.createStatement();                
-                St = cnx.createStatement();
-                Rs = St.executeQuery(sql);
-                if (Rs.next()) {                    
-                                        
-                } else {                    
-                    if (!"".equals(txt_code_art.getText())) {
-                        
-                        String query = "insert into "+tab_facture +" (nfact,narticle, qte,tva,prix, total_ligne,type_fact) values ('"
-                                + txt_nfact.getText() + "','"
-                                + txt_code_art.getText() + "','"
-                                + txt_qte.getText() + "','"
-                                + txt_tva.getText() + "','"                                
-                                + stot_ligne.toString() + "','"
-                                + parametre + "')";
-                        St.executeUpdate(query);
-                        Update_Table_Factures();                        
-                        mettre_jour_stock(txt_code_art.getText(), "ajouter", txt_qte.getText());
+                if (!"".equals(txt_code_art.getText()) && !lignes.contient(txt_code_art.getText())) {
+                    Rs = dao.article(txt_code_art.getText());
+                    if (Rs.next() && reserver_stock(txt_code_art.getText(), Integer.parseInt(txt_qte.getText()))) {
+                        lignes.ajouter(txt_code_art.getText(), Rs.getString("designation"), Integer.parseInt(txt_qte.getText()),
+                                Double.parseDouble(txt_tva.getText()), prix_unitaire, stot_ligne);
                         int lastRow = Table_Factures.getRowCount() - 1;
                         Table_Factures.changeSelection(lastRow, lastRow, rootPaneCheckingEnabled, rootPaneCheckingEnabled);
                     }
@@ -1471,58 +1334,39 @@ public class Facture extends javax.swing.JFrame {
                  // remplir le champ prix_achat par la valeur de la table article 
                 fill_prix_achat();
                 date_fact.setDateFormatString("yyyy-MM-dd");                
-                String query = "insert into " + fichier_master + "(nfact,nclient,date_fact,montant_ht,timbre,tva,autre_taxe,marge,banq,ncheque,nbc,date_bc,nom_preneur) values ('"
-                        + txt_nfact.getText() + "','"
-                        + txt_code_cli.getText() + "','"
-                        + ((JTextField) date_fact.getDateEditor().getUiComponent()).getText() + "','"
-                        + xtot_ht.toString() + "','"
-                        + timbre.toString() + "','"
-                        + xtot_tva.toString() + "','"
-                        + stot_ligne.toString() + "','"
-                        + marge.toString() + "','"
-                        + txt_dom_bnq + "','"
-                        + txt_ncheque + "','"
-                        + txt_bc + "','"
-                        + txt_dt_bc + "','"
-                        + txt_nom_preneur.replace( "'",  "\\'") + "')";
-                St.executeUpdate(query);
+                Enregistrement_Document doc = new Enregistrement_Document(base, fichier_master);
+                doc.maj("insert into " + fichier_master + "(nfact,nclient,date_fact,montant_ht,timbre,tva,autre_taxe,marge,banq,ncheque,nbc,date_bc,nom_preneur)"
+                        + " values (?,?,?,?,?,?,?,?,?,?,?,?,?)",
+                        txt_nfact.getText(), txt_code_cli.getText(),
+                        ((JTextField) date_fact.getDateEditor().getUiComponent()).getText(),
+                        xtot_ht, timbre, xtot_tva, stot_ligne, marge,
+                        txt_dom_bnq, txt_ncheque, txt_bc, txt_dt_bc, txt_nom_preneur);
                 if (!parametre.equals("")) {
-                    query = "select c_affaire_" + fichier_master + " as ca from client where nclient= '" + txt_code_cli.getText() + "'";
-                    St.execute(query);
-                    Rs = St.executeQuery(query);
-                    if (Rs.next()) {
-                        String add1 = Rs.getString("ca");                        
-                        double xtot_ttc = xtot_ht + timbre + xtot_tva + Double.parseDouble(add1);                        
-                        query = "update client set c_affaire_" + fichier_master + "=" + xtot_ttc + " where nclient= '" + txt_code_cli.getText() + "'";
-                        //JOptionPane.showMessageDialog(null,query);
-                        exp_spell = Numb_to_Spell.spell((xtot_ht + timbre + xtot_tva), "");;
-                        St.executeUpdate(query);
-                        
-                    } 
-                    } else {
-                         exp_spell = Numb_to_Spell.spell((xtot_ht + timbre + xtot_tva), "");
-                        
+                    doc.chiffre_affaires("client", "c_affaire_" + fichier_master, "nclient", txt_code_cli.getText(),
+                            xtot_ht + timbre + xtot_tva);
                 }
-               
-                query = "insert into " + fichier_detail + " (nfact, narticle, qte,tva,pr_achat,prix, total_ligne) select nfact, narticle, qte,tva, pr_achat, prix,total_ligne from "+tab_facture+" ";                
-                St.executeUpdate(query);                
-                Update_Table_Factures();
-                query = "truncate table facture_temp";
-                St.execute(query);
-                query = "insert into facture_temp select *  from "+tab_facture+" ";
-                St.execute(query);
-                calcul_des_montant();
-                query = "truncate table "+tab_facture+" ";
-                St.execute(query);
-                //JOptionPane.showMessageDialog(null,"ligne ajoutée !");            
-                //JOptionPane.showMessageDialog(null,"Vous avez dit Yes !");            
-                
-                
-                btn_nouvelle_facture.setEnabled(true);
-                btn_imprimer.setEnabled(true);
-                btn_imprimer_bon.setEnabled(true);
-                btn_imprimer_small.setEnabled(true);
-                sauvegarde=true;
+                enregistrer_lignes(doc);
+                final double ttc = xtot_ht + timbre + xtot_tva;
+                retenir_document();
+                new Tache_Enregistrement(this, doc) {
+                    @Override
+                    protected void enregistre() {
+                        exp_spell = Numb_to_Spell.spell(ttc, "");
+                        calcul_des_montant();
+                        lignes.enregistrees();
+                        btn_nouvelle_facture.setEnabled(true);
+                        btn_imprimer.setEnabled(true);
+                        btn_imprimer_bon.setEnabled(true);
+                        btn_imprimer_small.setEnabled(true);
+                        sauvegarde = true;
+                    }
+
+                    @Override
+                    protected void refuse(Exception e) {
+                        super.refuse(e);
+                        sauvegarder.setEnabled(true);
+                    }
+                }.lancer();
             }
             
         } catch (Exception e) {
@@ -1531,63 +1375,36 @@ public class Facture extends javax.swing.JFrame {
     }//GEN-LAST:event_sauvegarderActionPerformed
     
 private void fill_prix_achat() {
-        String sql = "select * from "+tab_facture+" ";
         try {            
-            Rs = St.executeQuery(sql);
-            while (Rs.next()) {
-                String xcod_art = Rs.getString("narticle");                
-                String sql1= "select * from article where narticle = '" +xcod_art+"' ";                 
-                Rs1 = St1.executeQuery(sql1);
-                while (Rs1.next()){
-                String xpr_achat = Rs1.getString("prix_unitaire");
-                sql1 = "update "+tab_facture+" set pr_achat ='" +xpr_achat+"' where narticle ='"+xcod_art+"'";
-                St3.executeUpdate(sql1);
+            List<String> codes = new ArrayList<>();
+            for (Lignes_Facture.Ligne l : lignes.lignes()) {
+                codes.add(l.narticle);
+            }
+            Map<String, Double> prix = dao.prix_achat(codes);
+            for (Lignes_Facture.Ligne l : lignes.lignes()) {
+                Double pr_achat = prix.get(l.narticle);
+                if (pr_achat != null) {
+                    lignes.prix_achat(l, pr_achat);
                 }
             }
-            sql ="select sum(qte*prix)-sum(qte*pr_achat) as marge FROM "+tab_facture+" ";
-            Rs = St.executeQuery(sql);
-            while (Rs.next()) {
-                marge = Rs.getString("marge");                
-            }
+            marge = String.valueOf(lignes.marge());
         } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "Erreur dans la table tab_facture\n" + e.getMessage());
+            JOptionPane.showMessageDialog(null, "Erreur dans les prix d'achat\n" + e.getMessage());
         }
     }    
     private void btn_supprimerActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btn_supprimerActionPerformed
         
         try {
             
-            String sql = "delete from "+tab_facture+" where id='" + n_id + "'";
             int r = JOptionPane.showConfirmDialog(null, "Voulez vous confirmer la suppression ? ", "Suppression", JOptionPane.YES_NO_OPTION);            
             if (r == 0) {                
-                //Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test", "root", "");
-                
-               // St = cnx.createStatement();
-                St.executeUpdate(sql);
-                String tmp_tab_facture="tmp_"+tab_facture;
-             //   JOptionPane.showMessageDialog(null, tmp_tab_facture);
-                sql="create table "+tmp_tab_facture+"  as select * from facture where 0";           
-           // JOptionPane.showMessageDialog(null, sql);
-            
-            St.executeUpdate(sql);
-            sql="ALTER TABLE "+tmp_tab_facture+" ADD PRIMARY KEY (`id`) ";
-            St.executeUpdate(sql);
-            sql="ALTER TABLE "+tmp_tab_facture+" CHANGE `id` `id` MEDIUMINT( 9 ) NOT NULL AUTO_INCREMENT ";
-            St.executeUpdate(sql);
-                
-            sql="insert into "+tmp_tab_facture+" (NFact, Narticle, Qte, tva, prix, total_ligne, type_fact) select NFact, Narticle, Qte, tva, prix, total_ligne, type_fact from "+tab_facture;                                      
-             St.executeUpdate(sql);
-             sql ="truncate table "+tab_facture;   
-             St.executeUpdate(sql);            
-             sql="insert into "+tab_facture+"  select * from "+tmp_tab_facture;                                   
-             St.executeUpdate(sql);
-             sql="drop TABLE "+tmp_tab_facture;             
-             St.executeUpdate(sql);   
-                
-                Update_Table_Factures();
-                calcul_des_montant();
-                JOptionPane.showMessageDialog(null, " Ligne supprimée !");
-                mettre_jour_stock(txt_code_art.getText(), "restituer", txt_qte.getText());
+                Lignes_Facture.Ligne l = n_id == null ? null : lignes.sequence(n_id);
+                if (l != null) {
+                    lignes.supprimer(l);
+                    calcul_des_montant();
+                    JOptionPane.showMessageDialog(null, " Ligne supprimée !");
+                    mettre_jour_stock(l.narticle, "restituer", String.valueOf(l.qte));
+                }
                 champs_vide();
                 
             }
@@ -1607,10 +1424,10 @@ private void fill_prix_achat() {
         
         if (!art_ok) {            
             txt_code_cli.setInputVerifier(new Pass_Verifier_Client(base));
-            String sql = "select * from client where nclient = '" + txt_code_cli.getText() + "'";            
             try {
-                Rs = St.executeQuery(sql);                
+                Rs = dao.client(txt_code_cli.getText());
                 if (Rs.next()) {
+                    retenir_client(Rs);
                     String add = Rs.getString("raison_sociale");
                     String comment = Rs.getString("commentaire");
                     
@@ -1666,10 +1483,10 @@ private void fill_prix_achat() {
     
     private void jComboBox1PopupMenuWillBecomeInvisible(javax.swing.event.PopupMenuEvent evt) {//GEN-FIRST:event_jComboBox1PopupMenuWillBecomeInvisible
         String tmp = (String) jComboBox1.getSelectedItem();        
-        String sql = "select * from client where raison_sociale = '" + tmp + "'";        
         try {
-            Rs = St.executeQuery(sql);            
+            Rs = dao.client_raison_sociale(tmp);
             if (Rs.next()) {
+                retenir_client(Rs);
                 String add = Rs.getString("nclient");                
                 txt_code_cli.setText(add);                
             } else {
@@ -1696,21 +1513,12 @@ private void fill_prix_achat() {
                // }}
                         
         txt_code_art.setInputVerifier(new Pass_Verifier_Art(base));
-        sql = "select * from article where narticle = '" + txt_code_art.getText() + "'"; 
-        
-        
-            Rs = St.executeQuery(sql);            
+            Rs = dao.article(txt_code_art.getText());
             if (Rs.next()) {
                 String add = Rs.getString("designation");
                 String add1 = Rs.getString("narticle");
                 txt_code_art.setText(add1);                
                 
-                for (j = 0; j < jComboBox2.getItemCount(); j++) {
-                    
-                    if (add.equals(jComboBox2.getItemAt(j).toString())) {                        
-                        break;                        
-                    }
-                }
                 
                           
             } else {
@@ -1731,9 +1539,8 @@ private void fill_prix_achat() {
     
     private void jComboBox2PopupMenuWillBecomeInvisible(javax.swing.event.PopupMenuEvent evt) {//GEN-FIRST:event_jComboBox2PopupMenuWillBecomeInvisible
         String tmp = (String) jComboBox2.getSelectedItem();        
-        String sql = "select * from article where designation = '" + tmp + "'";        
         try {
-            Rs = St.executeQuery(sql);            
+            Rs = dao.article_designation(tmp);
             if (Rs.next()) {
                 String add = Rs.getString("narticle");                
                 txt_code_art.setText(add);                
@@ -1756,6 +1563,7 @@ private void fill_prix_achat() {
     }//GEN-LAST:event_jComboBox2PopupMenuWillBecomeInvisible
     
     private void btn_nouvelle_factureActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btn_nouvelle_factureActionPerformed
+        boolean precedente_enregistree = sauvegarde;
         sauvegarde=false;
         art_ok = false;
         ind_timbre = false;
@@ -1767,29 +1575,12 @@ private void fill_prix_achat() {
         calcul_des_montant();
         
         jComboBox1.setSelectedIndex(0);        
-        query = "truncate table "+tab_facture+"";
         try {
             
-            St.execute(query);            
-            query = "select count(*) as nbre_enr FROM " + fichier_master + ";";
-            St.execute(query);
-            Rs = St.executeQuery(query);
-            if (Rs.next()) {
-                String add1 = Rs.getString("nbre_enr");
-                if (Integer.parseInt(add1) > 0) {
-                    query = "select max(nfact) as nfact_max FROM " + fichier_master + ";";
-                    // JOptionPane.showMessageDialog(null, query);
-                    Rs = St.executeQuery(query);
-                    if (Rs.next()) {
-                        String add2 = Rs.getString("nfact_max");
-                        // JOptionPane.showMessageDialog(null, add1);
-                        int_nfact = Integer.parseInt(add2) + 1;
-                    }                    
-                } else {
-                    int_nfact = 1;
-                }                
-                txt_nfact.setText(Integer.toString(int_nfact));
-            }            
+            lignes.vider();
+            if (precedente_enregistree) {
+                txt_nfact.setText(Integer.toString(Numerotation.prendre(base, Numerotation.compteur(parametre))));
+            }
             stot_ligne = 0.00;            
             prix_unitaire = 0.00;            
             add1_d = .00;
@@ -1797,7 +1588,6 @@ private void fill_prix_achat() {
             tva = 0.00;
             xtot_ht = 0.00;            
             xtot_tva = 0.00;
-            Update_Table_Factures();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur  \n" + e.getMessage());            
         }
@@ -1822,20 +1612,20 @@ private void fill_prix_achat() {
                      
             switch (parametre) {
                 case "stock_f":
-                    jd = JRXmlLoader.load("C:\\outil_dev\\report_fact.jrxml");
+                    etat = "report_fact";
                     //jd = JRXmlLoader.load("report_fact.jrxml");
                     sql = "SELECT fact.`NFact` AS fact_NFact,      fact.`Nclient` AS fact_Nclient,      fact.`date_fact` AS fact_date_fact,      fact.`montant_ht` AS fact_montant_ht,      fact.`timbre` AS fact_timbre,      fact.`TVA` AS fact_TVA,      fact.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article       FROM      `client` client INNER JOIN `fact` fact ON client.`Nclient` = fact.`Nclient` WHERE fact.nfact ='" + txt_nfact.getText() + "'";
                     break;
                 
                 case "stock_bl":              
-                    jd = JRXmlLoader.load("C:\\outil_dev\\report_bl.jrxml");
+                    etat = "report_bl";
                     //jd = JRXmlLoader.load("C:\\outil_dev\\report_smal_bl.jrxml");
                     //jd = JRXmlLoader.load("report_smal_bl.jrxml");
                     sql = "SELECT bl.`NFact` AS fact_NFact,      bl.`Nclient` AS fact_Nclient,      bl.`date_fact` AS fact_date_fact,      bl.`montant_ht` AS fact_montant_ht,      bl.`timbre` AS fact_timbre,      bl.`TVA` AS fact_TVA,      bl.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article,  bl.`nbc` AS fact_nbc, bl.`date_bc` AS fact_date_bc, bl.`nom_preneur` AS fact_nom_preneur        FROM      `client` client INNER JOIN `bl` bl ON client.`Nclient` = bl.`Nclient` WHERE bl.nfact ='" + txt_nfact.getText() + "'";                    
                     break;
                 
                 case "":
-                    jd = JRXmlLoader.load("C:\\outil_dev\\report_prof.jrxml");
+                    etat = "report_prof";
                     //jd = JRXmlLoader.load("report_prof.jrxml");
                     sql = "SELECT fprof.`NFact` AS fact_NFact,      fprof.`Nclient` AS fact_Nclient,      fprof.`date_fact` AS fact_date_fact,      fprof.`montant_ht` AS fact_montant_ht,      fprof.`timbre` AS fact_timbre,      fprof.`TVA` AS fact_TVA,      fprof.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article       FROM      `client` client INNER JOIN `fprof` fprof ON client.`Nclient` = fprof.`Nclient` WHERE fprof.nfact ='" + txt_nfact.getText() + "'";
                     break;
@@ -1852,49 +1642,15 @@ private void fill_prix_achat() {
     }//GEN-LAST:event_btn_imprimerActionPerformed
 private void imprime(){
     try{
-        String query_a ="select * from activite";
-            Rs=St.executeQuery(query_a);
-             if (Rs.next()) { 
-                txt_domaine_actvite = Rs.getString("domaine_activite");                
-                txt_sous_domaine= Rs.getString("sous_domaine");
-                txt_raison_sociale_v=Rs.getString("raison_sociale");
-                txt_adresse = Rs.getString("adresse");
-                txt_commune = Rs.getString("commune");
-                txt_wilaya = Rs.getString("wilaya");
-                txt_tel_fixe = Rs.getString("tel_fixe");
-                txt_tel_port = Rs.getString("tel_port");
-                txt_email = Rs.getString("e_mail");
-                txt_nrcv = Rs.getString("nrc");
-                txt_nis = Rs.getString("nis");
-                txt_nart = Rs.getString("nart");
-                txt_ident_fiscal = Rs.getString("ident_fiscal");
-                txt_banq = Rs.getString("banq"); 
-                txt_entete_bon = Rs.getString("entete_bon");
-             }
-            JRDesignQuery newquery = new JRDesignQuery();
-            newquery.setText(sql);
-            jd.setQuery(newquery);
             //JOptionPane.showMessageDialog(null, exp_spell);
-            HashMap hm = new HashMap();
+            HashMap hm = Entete_Activite.parametres(base);
             hm.put("fact_spell", exp_spell);        
-            hm.put("domaine_activite_p",txt_domaine_actvite);
-            hm.put("sous_domaine_p",txt_sous_domaine);
-            hm.put("raison_sociale_p",txt_raison_sociale_v);
-            hm.put("adress_p",txt_adresse);
-            hm.put("commune_p",txt_commune);
-            hm.put("wilaya_p",txt_wilaya);
-            hm.put("tel_fixe_p",txt_tel_fixe);
-            hm.put("tel_port_p",txt_tel_port);
-            hm.put("e_mail_p",txt_email);
-            hm.put("nrc_p",txt_nrcv);
-            hm.put("nis_p",txt_nis);
-            hm.put("art_p",txt_nart);
-            hm.put("ident_fiscal_p",txt_ident_fiscal);
-            hm.put("banq_p",txt_banq);
-            hm.put("entete_p",txt_entete_bon);
-            JasperReport jr = JasperCompileManager.compileReport(jd);
-            JasperPrint jp = JasperFillManager.fillReport(jr,hm,cnx);               
-            JasperViewer.viewReport(jp, false); 
+            if (sauvegarde && document_imprime != null) {
+                new Impression_Document(this, etat, hm, Param_Activite.schema(base), document_imprime, lignes_imprimees).lancer();
+                return;
+            }
+            hm.put(Etats.REQUETE, sql);
+            new Tache_Impression(this, etat, hm, Param_Activite.schema(base)).lancer();
             //JasperExportManager.exportReportToPdfFile(jp, "E:\\habib\\sample_report.pdf");
     } catch (Exception e) {
                 JOptionPane.showMessageDialog(null, "Erreur impression " + e.getMessage());
@@ -1902,54 +1658,59 @@ private void imprime(){
 }
     
     
+    /** Colonnes de client lues par les états (champs client_*). */
+    private static final String[] CLIENT_IMPRIME = {"Nclient", "Raison_sociale", "adresse", "NRC", "Date_RC",
+        "Lieu_RC", "I_Fiscal", "N_article"};
+
+    /** Garde la ligne client lue pendant la saisie, pour l'impression après sauvegarde. */
+    private void retenir_client(ResultSet r) throws SQLException {
+        Map<String, Object> c = new HashMap<>();
+        for (String colonne : CLIENT_IMPRIME) {
+            c.put("client_" + colonne, r.getObject(colonne));
+        }
+        client_imprime = c;
+    }
+
+    /**
+     * En-tête du document sauvegardé (champs fact_* et client_* des états)
+     * et ses lignes ; null si le client affiché n'est pas celui lu pendant
+     * la saisie : l'impression relit alors le document.
+     */
+    private void retenir_document() {
+        document_imprime = null;
+        lignes_imprimees = new ArrayList<>(lignes.lignes());
+        if (client_imprime == null || !txt_code_cli.getText().equals(String.valueOf(client_imprime.get("client_Nclient")))) {
+            return;
+        }
+        Map<String, Object> d = new HashMap<>(client_imprime);
+        d.put("fact_NFact", txt_nfact.getText());
+        d.put("fact_Nclient", txt_code_cli.getText());
+        d.put("fact_date_fact", ((JTextField) date_fact.getDateEditor().getUiComponent()).getText());
+        d.put("fact_montant_ht", xtot_ht);
+        d.put("fact_timbre", timbre);
+        d.put("fact_TVA", xtot_tva);
+        d.put("fact_autre_taxe", stot_ligne);
+        d.put("fact_nbc", txt_bc);
+        d.put("fact_date_bc", txt_dt_bc);
+        d.put("fact_nom_preneur", txt_nom_preneur);
+        document_imprime = d;
+    }
+    
     private void btn_quitterActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btn_quitterActionPerformed
         try {        
             
-            if (!sauvegarde) {
-            query = "select "+titre+"  as nbre_enr FROM mysql.stock_table_parameter  where code_activite='"+base+"'";;
-            St.execute(query);
-            Rs = St.executeQuery(query);
-            if (Rs.next()) {
-               String add1 = Rs.getString("nbre_enr");
-               // JOptionPane.showMessageDialog(null,Integer.parseInt(add1));
-                //JOptionPane.showMessageDialog(null,Integer.parseInt(txt_nfact.getText()));
-                if (Integer.parseInt(add1)-1 == Integer.parseInt(txt_nfact.getText())) {
-                    
-                        int_nfact = Integer.parseInt(add1);                                                        
-                        txt_nfact.setText(Integer.toString(int_nfact));
-                        int_nfact = Integer.parseInt(add1) - 1;
-                        sql = "update mysql.stock_table_parameter set "+titre+ "="+int_nfact+ "  where code_activite='"+base+"'";
-                  //      JOptionPane.showMessageDialog(null,sql);
-                        St.executeUpdate(sql);
-                } 
-            
-                
-            }
-                
-            }
-            String query = "select count(*) as nbre_enr FROM "+tab_facture+"";
-            Rs = St.executeQuery(query);            
-            if (Rs.next()) {
-                String add1 = Rs.getString("nbre_enr");
-                if (Integer.parseInt(add1) > 0) {                    
+            if (!sauvegarde && lignes.getRowCount() > 0) {                    
                     int r = JOptionPane.showConfirmDialog(null, "Vous voulez abandoner la facturation ?", "Confirmation", JOptionPane.YES_NO_OPTION);                    
                     if (r == 0) {
-                        //JOptionPane.showMessageDialog(null,"salam1");
-                        nettoyer_facture.nettoyer_facture(base, tab_facture);
-                        sql="drop TABLE "+tab_facture+" ";
-                        St.executeUpdate(sql);
+                        abandonner();
                         table_exist=false;
                         
                         this.dispose();
                     }                    
                     
-                } else {
-                   // JOptionPane.showMessageDialog(null,"Salam2");
-                    sql="drop TABLE "+tab_facture+" ";
-                    St.executeUpdate(sql);
+            } else {
                     table_exist=false;
                     this.dispose();                    
-                }
             }
             
         } catch (Exception e) {
@@ -2004,7 +1765,7 @@ private void imprime(){
 
     private void btn_imprimer_bonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btn_imprimer_bonActionPerformed
      try {
-            jd = JRXmlLoader.load("C:\\outil_dev\\report_ticket.jrxml");
+            etat = "report_ticket";
             //jd = JRXmlLoader.load("C:\\outil_dev\\report_bon.jrxml");
             //jd = JRXmlLoader.load("C:\\outil_dev\\report_ext_smal_bl.jrxml");
             sql="SELECT bl.`NFact` AS fact_NFact, bl.`Nclient` AS fact_Nclient,bl.`date_fact` AS fact_date_fact, bl.`montant_ht` AS fact_montant_ht,bl.`timbre` AS fact_timbre,     bl.`TVA` AS fact_TVA,     bl.`autre_taxe` AS fact_autre_taxe, client.`Nclient` AS client_Nclient,client.`Raison_sociale` AS client_Raison_sociale, client.`adresse` AS client_adresse, client.`NRC` AS client_NRC, client.`Date_RC` AS client_Date_RC,     client.`Lieu_RC` AS client_Lieu_RC, client.`I_Fiscal` AS client_I_Fiscal,client.`N_article` AS client_N_article,bl.`nbc` AS fact_nbc, bl.`date_bc` AS fact_date_bc, bl.`nom_preneur` AS fact_nom_preneur, article.`designation` AS designation, detail_bl.`Narticle` AS detail_bl_Narticle, detail_bl.`Qte` AS detail_bl_Qte, detail_bl.`tva` AS detail_bl_tva, detail_bl.`prix` AS detail_bl_prix, detail_bl.`total_ligne` AS detail_bl_total_ligne FROM     `client` client INNER JOIN `bl` bl ON client.`Nclient` = bl.`Nclient`,`article` article,     `detail_bl` detail_bl WHERE detail_bl.`Narticle`=article.`Narticle` AND detail_bl.`NFact`=bl.`NFact` and bl.nfact ='" + txt_nfact.getText() + "'";
@@ -2017,7 +1778,7 @@ private void imprime(){
 
     private void btn_imprimer_smallActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btn_imprimer_smallActionPerformed
       try {
-            jd = JRXmlLoader.load("C:\\outil_dev\\report_smal_bl.jrxml");
+            etat = "report_smal_bl";
            // jd = JRXmlLoader.load("report_smal_bl.jrxml");
             sql = "SELECT bl.`NFact` AS fact_NFact,      bl.`Nclient` AS fact_Nclient,      bl.`date_fact` AS fact_date_fact,      bl.`montant_ht` AS fact_montant_ht,      bl.`timbre` AS fact_timbre,      bl.`TVA` AS fact_TVA,      bl.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article,  bl.`nbc` AS fact_nbc, bl.`date_bc` AS fact_date_bc, bl.`nom_preneur` AS fact_nom_preneur        FROM      `client` client INNER JOIN `bl` bl ON client.`Nclient` = bl.`Nclient` WHERE bl.nfact ='" + txt_nfact.getText() + "'";                    
              imprime();
@@ -2027,76 +1788,45 @@ private void imprime(){
     }//GEN-LAST:event_btn_imprimer_smallActionPerformed
 
     private void formWindowClosed(java.awt.event.WindowEvent evt) {//GEN-FIRST:event_formWindowClosed
-         try {            
-            if (table_exist) {
-            String query = "select count(*) as nbre_enr FROM "+tab_facture+"";
-            Rs = St.executeQuery(query);            
-           // JOptionPane.showMessageDialog(null,"Salam4");
-            if (Rs.next()) {
-                String add1 = Rs.getString("nbre_enr");
-                if (Integer.parseInt(add1) > 0) {                    
-                    //int r = JOptionPane.showConfirmDialog(null, "Vous voulez abandoner la facturation ?", "Confirmation", JOptionPane.YES_NO_OPTION);                    
-                   
-                        
-                        nettoyer_facture.nettoyer_facture(base, tab_facture);                        
-                        sql="drop TABLE "+tab_facture+" ";
-                        St.executeUpdate(sql);                      
-                        this.dispose();
-                                        
-                    
-                } else {                    
-                    sql="drop TABLE "+tab_facture+" ";
-                    St.executeUpdate(sql);                    
-                    this.dispose();                     
-                }
-            }
-            }
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "Erreur impression " + e.getMessage());
-        }      
+         if (table_exist && !sauvegarde && lignes.getRowCount() > 0) {
+             abandonner();
+         }
+         if (!sauvegarde && !txt_nfact.getText().isEmpty()) {
+             try {
+                 Numerotation.rendre(base, Numerotation.compteur(parametre), Integer.parseInt(txt_nfact.getText()));
+             } catch (Exception e) {
+                 System.out.println("Numéro non rendu : " + e.getMessage());
+             }
+         }
+         lignes.fermer();
+         javaconnect.liberer(cnx);
     }//GEN-LAST:event_formWindowClosed
 
     private void modifier_ligne()
     {
     try {
-            //date_rc.setDateFormatString("yyyy-MM-dd");  
-             // sql = "select * from article where narticle='" + txt_code_art.getText() + "'";
-           // Rs = St.executeQuery(sql);
-             // if (Rs.next()) {                
-             //   sql = "select id, Narticle , prix, tva,tva*qte*prix/100 as TVA, qte , total_ligne from "+tab_facture+" where narticle='" + txt_code_art.getText() + "'";
-              sql = "select F.id , F.Narticle , A.Designation designation, F.prix as prix, A.tva as tva, F.qte as qte, F.total_ligne as \"Prix Total\"  from "+tab_facture +" AS F, article AS A where F.narticle=A.narticle and F.id ='" + n_id + "'";   
-                //Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test", "root", "");
-              //JOptionPane.showMessageDialog(null,sql);
-              //Rs = St.executeQuery(sql);
-                St1 = cnx.createStatement();
-                St3 = cnx.createStatement();                
-                St = cnx.createStatement();
-                Rs = St.executeQuery(sql);
-               if (Rs.next()) {                    
-                    String add7 = Rs.getString("qte");
-                    // JOptionPane.showMessageDialog(null,add7);
-                    mettre_jour_stock(txt_code_art.getText(), "restituer", add7);
-                    String query = "update "+tab_facture +" set qte ='"
-                            + txt_qte.getText() + "', prix ='"
-                            + prix_unitaire.toString() + "', total_ligne ='"
-                            + stot_ligne.toString() + "' where narticle = '" + txt_code_art.getText() + "' and id ='" + n_id + "'";                       
-                    //JOptionPane.showMessageDialog(null,query);
-                    St.executeUpdate(query);
-                    mettre_jour_stock(txt_code_art.getText(), "ajouter", txt_qte.getText());
-                    Update_Table_Factures();
-                    calcul_des_montant();
+               Lignes_Facture.Ligne l = n_id == null ? null : lignes.sequence(n_id);
+               if (l != null) {                    
+                    int ancienne_qte = l.qte;
+                    int nouvelle_qte = Integer.parseInt(txt_qte.getText());
+                    // ligne inchangée si le stock supplémentaire est refusé
+                    if (nouvelle_qte <= ancienne_qte || reserver_stock(l.narticle, nouvelle_qte - ancienne_qte)) {
+                        lignes.modifier(l, nouvelle_qte, prix_unitaire, stot_ligne);
+                        if (nouvelle_qte < ancienne_qte) {
+                            mettre_jour_stock(l.narticle, "restituer", String.valueOf(ancienne_qte - nouvelle_qte));
+                        }
+                        calcul_des_montant();
+                    }
                     mod_ok=false;
                     Enregistrer.setEnabled(true);
                     
                }
-                    // JOptionPane.showMessageDialog(null,"ligne moodifiée !");
             }        catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans la modification table\n" + e.getMessage());
             
         }
         //date_rc.setDateFormatString("yyyy-MM-dd");    
         champs_vide();
-        Update_Table_Factures();
         art_active();
         //txt_code_art.setText("");
         txt_code_art.requestFocus();
@@ -2114,6 +1844,12 @@ private void imprime(){
         modifier_ligne();
     }//GEN-LAST:event_btn_modifierFocusLost
          
+    @Override
+    public void dispose() {
+        Tache_Bd.annuler(this);
+        super.dispose();
+    }
+
     /**
      * 6
      *
@@ -2153,20 +1889,22 @@ private void imprime(){
         });
     }
     // Déclaration des variables
-    private Statement St, St1, St3;
+    private Statement St;
     private ResultSet Rs, Rs1;
     public Connection cnx;
-    public String txt_domaine_actvite, txt_sous_domaine, txt_raison_sociale_v, txt_adresse, txt_commune, txt_email, txt_wilaya;
-    public String txt_tel_fixe, txt_tel_port, txt_nrcv, txt_nis, txt_nart, txt_ident_fiscal, txt_banq, txt_query, exp_spell;
-    public String parametre, fichier_detail, fichier_master,base,tab_facture,titre,txt_entete_bon;
+    private Dao_Stock dao;
+    public String txt_query, exp_spell;
+    public String parametre, fichier_detail, fichier_master,base,titre;
     String query;
     public String txt_nom_preneur, txt_dt_bc, txt_bc, marge;
     public boolean art_ok = false, mod_ok = false, ind_timbre = false, escape = true, table_exist = true,sauvegarde =false;
     public String sql, txt_dom_bnq, txt_ncheque, n_id;
     public Object[] message;
-    public JasperDesign jd;
+    public String etat;
+    private Map<String, Object> client_imprime, document_imprime;
+    private List<Lignes_Facture.Ligne> lignes_imprimees;
     int j,box2=0, int_nfact;
-    MyTableModel tm;
+    final Lignes_Facture lignes = new Lignes_Facture();
     Double stot_ligne = 0.00, prix_unitaire = 0.00, add1_d = .00, mnt = 0.00, timbre = 0.00, tva = 0.00, xtot_ht = 0.00, xtot_tva = 0.00, pr_achat = 0.00;
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton Enregistrer;
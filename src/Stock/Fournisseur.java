@@ -49,9 +49,7 @@ private void Update_Table_Fournisseur() {
             String sql = "select Nfournisseur as \"Code Fourni.\", Nom_Fournisseur as \"Nom\",Resp_fournisseur as \"Responsable\", adresse_fourni as \"Adresse\", Tel as \"Tél \", email as \"Email\", tel1 as \"Portable 1 \", tel2 as \"Portable2 \", caf as \"C.A.F\", cabl as \"C.A.BL\", commentaire as \"Commentaire\"  from fournisseur order by nom_fournisseur";
            // Rs = St.executeQuery(sql);
            // Table_Fournisseur.setModel(DbUtils.resultSetToTableModel(Rs));
-            tm = new MyTableModel(sql, base);
-            Table_Fournisseur.setModel(tm);
-            Table_Fournisseur.setDefaultRenderer(Double.class, new TKMntRenderer());
+            new Chargement_Table(this, Table_Fournisseur, sql, base).lancer();
             
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "avec la table fournisseurs\n" + e.getMessage());
@@ -383,19 +381,8 @@ private void Update_Table_Fournisseur() {
         try {
             // connexion avec la base de donnée 
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-            String sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;    
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
-            //Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test?useUnicode=yes&amp;characterEncoding=UTF-8", "root", "");
+            cnx = javaconnect.cnx_activite(base);
             St = cnx.createStatement();
-            }
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur de connexcion\n" + e.getMessage());
         }
@@ -478,9 +465,21 @@ try {
                  +txt_commentaire.getText().replace( "'",  "\\'")+"')";
                  
          
-          St.executeUpdate(query);
-          Update_Table_Fournisseur();
-          JOptionPane.showMessageDialog(null,"Fournisseur ajouté !");  
+          final String code = txt_code_fourn.getText();
+          new Tache_Maj(this, base, query) {
+              @Override
+              protected void terminer(Integer n) {
+                  Index_Codes.ajouter(base, Index_Codes.FOURNISSEUR, code);
+                  Listes_Reference.enregistre(base, Listes_Reference.FOURNISSEURS, code);
+                  Update_Table_Fournisseur();
+                  JOptionPane.showMessageDialog(null,"Fournisseur ajouté !");
+              }
+
+              @Override
+              protected void echouer(Exception e) {
+                  JOptionPane.showMessageDialog(null, "Erreur dans l'insertion table\n" + e.getMessage());
+              }
+          }.lancer();
             
           } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans l'insertion table\n" + e.getMessage());
@@ -552,6 +551,7 @@ try {
                  +txt_email.getText()+"',commentaire='"
                  +txt_commentaire.getText().replace( "'",  "\\'")+"' where nfournisseur= '" + txt_code_fourn.getText() + "'";  
               St.executeUpdate(query);
+              Listes_Reference.enregistre(base, Listes_Reference.FOURNISSEURS, txt_code_fourn.getText());
               Update_Table_Fournisseur();
       }catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans la modification de la table\n" + e.getMessage());
@@ -602,6 +602,8 @@ try {
        
        if (JOptionPane.showConfirmDialog(null,"Confimer la suppression", " Effacer", JOptionPane.YES_NO_OPTION) == JOptionPane.OK_OPTION )  {
             St.executeUpdate(sql);
+            Index_Codes.retirer(base, Index_Codes.FOURNISSEUR, txt_code_fourn.getText());
+            Listes_Reference.supprime(base, Listes_Reference.FOURNISSEURS, txt_code_fourn.getText());
             Update_Table_Fournisseur();    
             effacer_champ();
         }
@@ -628,6 +630,13 @@ try {
         }
     }//GEN-LAST:event_txt_code_fournKeyReleased
 
+    @Override
+    public void dispose() {
+        Tache_Bd.annuler(this);
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -306,17 +306,8 @@ private void Update_Table_Fournisseur() {
         try {
             // connexion avec la base de donnée 
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-            String sql = "select db_name from stock_table_parameter";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            cnx = javaconnect.ConnecrDb();
             St = cnx.createStatement();
-            }
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur de connexcion\n" + e.getMessage());
         }
@@ -449,6 +440,12 @@ try {
 // TODO add your handling code here:
     }//GEN-LAST:event_Table_FournisseurKeyReleased
 
+    @Override
+    public void dispose() {
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -8,7 +8,6 @@ import java.awt.Toolkit;
 import java.awt.event.WindowEvent;
 import static java.lang.System.exit;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -40,103 +39,28 @@ public class Gestion_Stock extends javax.swing.JFrame {
         pilote = "com.mysql.jdbc.Driver";
         //String affiche = fill_tableau();
         connect_db();
+        Listes_Reference.precharger(base);
+        Etats.prechauffer();
         txt_context.setText(fill_tableau());
        // xind =fill_tableau().substring(0, 4);
         //JOptionPane.showMessageDialog(null,xind);
        //connect_db();
-       remplir_stock_table_parameter();
                         
             } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur de connexcion\n" + e.getMessage());
         }
     }
     
+/**
+ * Recale les compteurs de documents sur l'exercice choisi. Pas au
+ * démarrage : Numerotation les tient à jour.
+ */
 private void remplir_stock_table_parameter() {
-try {
-       
-            //JOptionPane.showMessageDialog(null, base);
-            String sql = "select db_name from mysql.stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);            
-            // try {
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;
-            String user_bd="root";
-            String passwd_bd="";
-           // JOptionPane.showMessageDialog(null, var_cnx);
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
-            St = cnx.createStatement();
-            
-            String query = "select count(*) as nbre_enr FROM fact";
-            St.execute(query);
-            Rs = St.executeQuery(query);
-            
-            
-            if (Rs.next()) {
-                String add1 = Rs.getString("nbre_enr");
-                if (Integer.parseInt(add1) > 0) {
-                    query = "select max(nfact) as nfact_max FROM fact";
-                    // JOptionPane.showMessageDialog(null, query);
-                    Rs = St.executeQuery(query);
-                    if (Rs.next()) {
-                        String add2 = Rs.getString("nfact_max");
-                        //JOptionPane.showMessageDialog(null, add2);
-                        int_nfact = Integer.parseInt(add2) + 1;
-                    }                    
-                } else {
-                    int_nfact = 1;
-                }        
-            //    JOptionPane.showMessageDialog(null, int_nfact);
-            }
-            query = "select count(*) as nbre_enr FROM bl";
-            St.execute(query);
-            Rs = St.executeQuery(query);
-                        
-            if (Rs.next()) {
-                String add1 = Rs.getString("nbre_enr");
-                if (Integer.parseInt(add1) > 0) {
-                    query = "select max(nfact) as nfact_max FROM bl";
-              //       JOptionPane.showMessageDialog(null, query);
-                    Rs = St.executeQuery(query);
-                    if (Rs.next()) {
-                        String add2 = Rs.getString("nfact_max");
-                //        JOptionPane.showMessageDialog(null, add2);
-                        int_nbl = Integer.parseInt(add2) + 1;
-                    }                    
-                } else {
-                    int_nbl = 1;
-                }           
-               // JOptionPane.showMessageDialog(null, int_nbl);
-            }
-            query = "select count(*) as nbre_enr FROM fprof";
-            St.execute(query);
-            Rs = St.executeQuery(query);
-            
-            
-            if (Rs.next()) {
-                String add1 = Rs.getString("nbre_enr");
-                if (Integer.parseInt(add1) > 0) {
-                    query = "select max(nfact) as nfact_max FROM fprof";
-                 //    JOptionPane.showMessageDialog(null, query);
-                    Rs = St.executeQuery(query);
-                    if (Rs.next()) {
-                        String add2 = Rs.getString("nfact_max");
-                   //     JOptionPane.showMessageDialog(null, add2);
-                        int_nprof = Integer.parseInt(add2) + 1;
-                    }                    
-                } else {
-                    int_nprof = 1;
-                } 
-                
-            }
-            //JOptionPane.showMessageDialog(null, );
+        try {
+            if (!Param_Activite.db_name(base).isEmpty()) {
+                Numerotation.recaler(base);
             }
-             //JOptionPane.showMessageDialog(null, base);
-            sql = "update mysql.stock_table_parameter set n_bl="+int_nbl+", n_fact="+int_nfact+", n_prof="+int_nprof+ "  where code_activite='"+base+"'";
-            //update stock_table_parameter set n_bl=3, n_fact=7, n_prof = 9 where code_activite="BU01";
-            // JOptionPane.showMessageDialog(null, sql);
-            St.executeUpdate(sql);            
-            } catch (Exception e) {
+        } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur de connexcion\n" + e.getMessage());
         }
     }
@@ -198,11 +122,13 @@ private String fill_tableau() {
 public void connect_db() {
 try {
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/information_schema", "root", "");
+            javaconnect.liberer(cnx);
+            cnx = javaconnect.cnx_schema("information_schema");
             St = cnx.createStatement();             
             //JOptionPane.showMessageDialog(null, cnx);      
             fillCombo1_an();
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
+            javaconnect.liberer(cnx);
+            cnx = javaconnect.cnx_mysql();
             St = cnx.createStatement();
             
 Thread Envirment = new Thread() {
@@ -282,6 +208,8 @@ catch (Exception e) {
         facture_prof = new javax.swing.JMenuItem();
         jSeparator12 = new javax.swing.JPopupMenu.Separator();
         rappel_fprof = new javax.swing.JMenuItem();
+        jSeparator35 = new javax.swing.JPopupMenu.Separator();
+        impression_lot = new javax.swing.JMenuItem();
         jMenu4 = new javax.swing.JMenu();
         list_facture = new javax.swing.JMenuItem();
         jSeparator20 = new javax.swing.JPopupMenu.Separator();
@@ -315,6 +243,8 @@ catch (Exception e) {
         jSeparator19 = new javax.swing.JPopupMenu.Separator();
         menu_exporter = new javax.swing.JMenuItem();
         jSeparator30 = new javax.swing.JPopupMenu.Separator();
+        recalcul_ca = new javax.swing.JMenuItem();
+        jSeparator34 = new javax.swing.JPopupMenu.Separator();
         annexe01 = new javax.swing.JMenuItem();
 
         jMenu1.setText("jMenu1");
@@ -576,6 +506,16 @@ catch (Exception e) {
             }
         });
         jMenu3.add(rappel_fprof);
+        jMenu3.add(jSeparator35);
+
+        impression_lot.setFont(new java.awt.Font("Segoe UI", 0, 18)); // NOI18N
+        impression_lot.setText("Réimpression par lot");
+        impression_lot.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                impression_lotActionPerformed(evt);
+            }
+        });
+        jMenu3.add(impression_lot);
 
         jMenuBar1.add(jMenu3);
 
@@ -722,6 +662,16 @@ catch (Exception e) {
         nouvelle_an.add(menu_exporter);
         nouvelle_an.add(jSeparator30);
 
+        recalcul_ca.setFont(new java.awt.Font("Segoe UI", 0, 18)); // NOI18N
+        recalcul_ca.setText("Contrôle du chiffre d'affaires");
+        recalcul_ca.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                recalcul_caActionPerformed(evt);
+            }
+        });
+        nouvelle_an.add(recalcul_ca);
+        nouvelle_an.add(jSeparator34);
+
         annexe01.setFont(new java.awt.Font("Segoe UI", 0, 18)); // NOI18N
         annexe01.setText("Annexe");
         annexe01.addActionListener(new java.awt.event.ActionListener() {
@@ -861,6 +811,48 @@ catch (Exception e) {
         
     }//GEN-LAST:event_rappel_fprofActionPerformed
 
+    private void impression_lotActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_impression_lotActionPerformed
+        String[] libelles = new String[Impression_Lot.DOCUMENTS.length];
+        for (int i = 0; i < libelles.length; i++) {
+            libelles[i] = Impression_Lot.DOCUMENTS[i][4];
+        }
+        Object choix = JOptionPane.showInputDialog(null, "Documents à réimprimer :", "Réimpression par lot",
+                JOptionPane.QUESTION_MESSAGE, null, libelles, libelles[0]);
+        if (choix == null) {
+            return;
+        }
+        String[] document = Impression_Lot.DOCUMENTS[java.util.Arrays.asList(libelles).indexOf(choix)];
+        String jour = new SimpleDateFormat("yyyy-MM-dd").format(new Date());
+        String[] x = MultiInputPane.showMultiInputDialog(null, new String[]{"Du (aaaa-mm-jj ou N°) :", "Au (aaaa-mm-jj ou N°) :"},
+                new String[]{jour, jour}, "Réimpression par lot");
+        if (x == null) {
+            return;
+        }
+        Object du, au;
+        try {
+            try {
+                du = Integer.valueOf(x[0].trim());
+                au = Integer.valueOf(x[1].trim());
+            } catch (NumberFormatException e) {
+                du = java.sql.Date.valueOf(x[0].trim());
+                au = java.sql.Date.valueOf(x[1].trim());
+            }
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(null, "Saisir deux dates (aaaa-mm-jj) ou deux numéros");
+            return;
+        }
+        javax.swing.JFileChooser choix_pdf = new javax.swing.JFileChooser();
+        choix_pdf.setSelectedFile(new java.io.File(document[2] + "_" + x[0].trim() + "_" + x[1].trim() + ".pdf"));
+        if (choix_pdf.showSaveDialog(this) != javax.swing.JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            new Impression_Lot(this, base, document, du, au).pdf(choix_pdf.getSelectedFile().getPath()).lancer();
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "Erreur impression " + e.getMessage());
+        }
+    }//GEN-LAST:event_impression_lotActionPerformed
+
     private void rappel_bachatActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_rappel_bachatActionPerformed
         par = "stock_bl";
         detail="bachat_detail";
@@ -895,7 +887,8 @@ catch (Exception e) {
          String sql = "SELECT SCHEMA_NAME FROM SCHEMATA where schema_name like '2%' and schema_name like '%" +base +"' order by schema_name desc";       
          //JOptionPane.showMessageDialog(null, sql);
          try {
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/information_schema", "root", "");
+            javaconnect.liberer(cnx);
+            cnx = javaconnect.cnx_schema("information_schema");
             St = cnx.createStatement();                        
             Rs = St.executeQuery(sql);
             if (Rs.next()) {
@@ -912,16 +905,20 @@ catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Passage à "+nme+" Très bonne année "+nme);
             String nouveau_base=nme+"_"+base;
              //création de la base de données
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/", "root", "");
+            javaconnect.liberer(cnx);
+            cnx = javaconnect.cnx_schema("");
             St = cnx.createStatement();                        
             sql="create database `"+nouveau_base+"`" ;
             
             St.executeUpdate(sql);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
+            javaconnect.liberer(cnx);
+            cnx = javaconnect.cnx_mysql();
             St = cnx.createStatement();
             sql =" update stock_table_parameter set db_name ='"+nme+"' where code_activite= '"+base+"'";
             St.executeUpdate(sql);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/"+nouveau_base, "root", "");
+            Param_Activite.invalider(base);
+            javaconnect.liberer(cnx);
+            cnx = javaconnect.cnx_schema(nouveau_base);
             St = cnx.createStatement();
             sql="create table fournisseur as select * from `"+nme_old+"`.fournisseur" ;                        
             St.executeUpdate(sql);
@@ -990,10 +987,7 @@ catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Passage à "+nme+" terminé avec succès, très bonne année "+nme);
             txt_context.setText(activite+":"+nme);            
             //base=nme;
-             sql = "update mysql.stock_table_parameter set n_bl=1, n_fact=1, n_prof=1  where code_activite='"+base+"'";
-            //update stock_table_parameter set n_bl=3, n_fact=7, n_prof = 9 where code_activite="BU01";
-            // JOptionPane.showMessageDialog(null, sql);
-            St.executeUpdate(sql);  
+            Numerotation.recaler(base);
             jComboBox1_an1.addItem(nme);
             
          }
@@ -1005,18 +999,13 @@ catch (Exception e) {
     private void menu_exporterActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menu_exporterActionPerformed
             try { 
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-            String sql = "select * from stock_table_parameter where code_activite = '"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-             chemin_backup= Rs.getString("lieu_backup");
-             db_name= Rs.getString("db_name")+"_"+base+"_"+(f.format(dt));   
-             String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-             var_cnx=var_cnx+"_"+base;   
+            Param_Activite param = Param_Activite.get(base);
+            if (!param.db_name.isEmpty()) {
+             chemin_backup= param.lieu_backup;
+             db_name= param.db_name+"_"+base+"_"+(f.format(dt));   
              user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            javaconnect.liberer(cnx);
+            cnx = javaconnect.cnx_activite(base);
             St = cnx.createStatement();
             }
             jPanel1.setVisible(true);
@@ -1332,10 +1321,12 @@ catch (Exception e) {
         tmp = (String) jComboBox1_an1.getSelectedItem();
         try {
 
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
+            javaconnect.liberer(cnx);
+            cnx = javaconnect.cnx_mysql();
             St = cnx.createStatement();
             String sql =" update stock_table_parameter set db_name ="+tmp+" where code_activite= '"+base+"'";
             St.executeUpdate(sql);
+            Param_Activite.invalider(base);
             remplir_stock_table_parameter();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans le comboBox \n" + e.getMessage());
@@ -1374,6 +1365,31 @@ catch (Exception e) {
        annexe1.setVisible(true);
     }//GEN-LAST:event_annexe01ActionPerformed
 
+    private void recalcul_caActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_recalcul_caActionPerformed
+        Object[] options = {"Oui", "Non"};
+        int r = JOptionPane.showOptionDialog(null, " Recalculer le chiffre d'affaires des clients et fournisseurs ?", "Confirmation", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[1]);
+        if (r != 0) {
+            return;
+        }
+        new Tache_Bd<java.util.List<Chiffre_Affaires.Ecart>>(this) {
+            @Override
+            protected java.util.List<Chiffre_Affaires.Ecart> executer() throws Exception {
+                return Chiffre_Affaires.recalculer(base);
+            }
+
+            @Override
+            protected void terminer(java.util.List<Chiffre_Affaires.Ecart> ecarts) {
+                StringBuilder msg = new StringBuilder("Chiffre d'affaires recalculé : " + ecarts.size() + " compte(s) corrigé(s)");
+                for (int i = 0; i < ecarts.size() && i < 20; i++) {
+                    Chiffre_Affaires.Ecart e = ecarts.get(i);
+                    msg.append("\n").append(e.colonne).append(" ").append(e.code).append(" : ")
+                            .append(e.retenu).append(" -> ").append(e.calcule);
+                }
+                JOptionPane.showMessageDialog(null, msg.toString());
+            }
+        }.lancer();
+    }//GEN-LAST:event_recalcul_caActionPerformed
+
     private void achat_periiodeActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_achat_periiodeActionPerformed
         par = "periode";
         //par = "stock_f";
@@ -1391,6 +1407,12 @@ catch (Exception e) {
         WindowEvent winClosingEvent = new WindowEvent(this,WindowEvent.WINDOW_CLOSING);
         Toolkit.getDefaultToolkit().getSystemEventQueue().postEvent(winClosingEvent);
     }
+    @Override
+    public void dispose() {
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -1448,6 +1470,7 @@ catch (Exception e) {
     private javax.swing.JMenuItem annexe01;
     private javax.swing.JMenuItem change_exercice;
     private javax.swing.JMenuItem facture_prof;
+    private javax.swing.JMenuItem impression_lot;
     private javax.swing.JButton jButton2;
     private javax.swing.JComboBox jComboBox1_an1;
     private javax.swing.JLabel jLabel1;
@@ -1488,6 +1511,8 @@ catch (Exception e) {
     private javax.swing.JPopupMenu.Separator jSeparator31;
     private javax.swing.JPopupMenu.Separator jSeparator32;
     private javax.swing.JPopupMenu.Separator jSeparator33;
+    private javax.swing.JPopupMenu.Separator jSeparator34;
+    private javax.swing.JPopupMenu.Separator jSeparator35;
     private javax.swing.JPopupMenu.Separator jSeparator4;
     private javax.swing.JPopupMenu.Separator jSeparator5;
     private javax.swing.JPopupMenu.Separator jSeparator6;
@@ -1511,6 +1536,7 @@ catch (Exception e) {
     private javax.swing.JMenuItem rappel_fachat;
     private javax.swing.JMenuItem rappel_facture;
     private javax.swing.JMenuItem rappel_fprof;
+    private javax.swing.JMenuItem recalcul_ca;
     public javax.swing.JTextField txt_context;
     private javax.swing.JMenuItem vente_periode;
     // End of variables declaration//GEN-END:variables
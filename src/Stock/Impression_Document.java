@@ -0,0 +1,159 @@
+/*
+ * Impression d'un document encore en mémoire dans l'écran de saisie.
+ */
+package Stock;
+
+import java.awt.Window;
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.AsynchronousFillHandle;
+
+/**
+ * La facture, le BL ou la proforma qui vient d'être sauvegardé, imprimé à
+ * partir de ce que l'écran a en mémoire : l'en-tête du document et le client
+ * (champs fact_* et client_* de l'état), les lignes, le montant en lettres
+ * et l'en-tête de l'activité (Entete_Activite). Le remplissage ne demande
+ * rien à MySQL ; il ne prend pas de connexion au pool.
+ *
+ * L'état est la forme Etats.etat_memoire() : le tableau des lignes lit
+ * LIGNES. Un état sans tableau (report_ticket) reçoit une ligne de source
+ * par ligne du document, en-tête compris.
+ *
+ * Les réimpressions de rappel_facture restent sur la requête ; Impression_Lot
+ * lit l'en-tête par la requête et passe les lignes comme ici.
+ *
+ * @author IT
+ */
+public class Impression_Document extends Tache_Impression {
+
+    private final Map<String, Object> entete, parametres;
+    private final List<Map<String, Object>> lignes = new ArrayList<>();
+
+    /**
+     * entete : valeurs des champs fact_* et client_* ; parametres : ceux de
+     * l'état (en-tête de l'activité, fact_spell).
+     */
+    public Impression_Document(Window fenetre, String xetat, Map<String, Object> xparametres, String xschema,
+            Map<String, Object> xentete, List<Lignes_Facture.Ligne> xlignes) {
+        super(fenetre, xetat, null, xschema);
+        parametres = xparametres;
+        entete = xentete;
+        for (Lignes_Facture.Ligne l : xlignes) {
+            lignes.add(champs(l));
+        }
+    }
+
+    @Override
+    protected JasperPrint produire() throws Exception {
+        JasperReport jr = Etats.etat_memoire(etat);
+        Map<String, Object> hm = new HashMap<>(parametres);
+        List<Map<String, Object>> principale = new ArrayList<>();
+        if (Etats.parametre(jr, Etats.LIGNES)) {
+            principale.add(entete);
+            hm.put(Etats.LIGNES, new Source(lignes));
+        } else {
+            for (Map<String, Object> l : lignes) {
+                Map<String, Object> ligne = new HashMap<>(entete);
+                ligne.putAll(l);
+                principale.add(ligne);
+            }
+        }
+        return remplir(AsynchronousFillHandle.createHandle(jr, hm, new Source(principale)));
+    }
+
+    /** Une ligne sous les noms des champs des états (tableau facture_data et report_ticket). */
+    static Map<String, Object> champs(Lignes_Facture.Ligne l) {
+        Map<String, Object> c = new HashMap<>();
+        c.put("Code Art.", l.narticle);
+        c.put("Designation", l.designation);
+        c.put("Qté", l.qte);
+        c.put("TVA", l.tva);
+        c.put("Prix Unit.", l.prix);
+        c.put("Total", l.total_ligne);
+        c.put("designation", l.designation);
+        c.put("detail_bl_Narticle", l.narticle);
+        c.put("detail_bl_Qte", l.qte);
+        c.put("detail_bl_tva", l.tva);
+        c.put("detail_bl_prix", l.prix);
+        c.put("detail_bl_total_ligne", l.total_ligne);
+        return c;
+    }
+
+    /**
+     * Lignes en mémoire ; chaque valeur est rendue dans la classe du champ
+     * (fact_Nclient est Integer dans un état, String dans un autre).
+     */
+    static class Source implements JRDataSource {
+        private final Iterator<Map<String, Object>> suivantes;
+        private Map<String, Object> courante;
+
+        Source(List<Map<String, Object>> lignes) {
+            suivantes = lignes.iterator();
+        }
+
+        @Override
+        public boolean next() {
+            courante = suivantes.hasNext() ? suivantes.next() : null;
+            return courante != null;
+        }
+
+        @Override
+        public Object getFieldValue(JRField champ) throws JRException {
+            return convertir(courante.get(champ.getName()), champ.getValueClass());
+        }
+    }
+
+    static Object convertir(Object v, Class<?> classe) throws JRException {
+        if (v == null || classe == null || classe.isInstance(v)) {
+            return v;
+        }
+        String texte = v.toString().trim();
+        try {
+            if (classe == String.class) {
+                return v.toString();
+            } else if (classe == Integer.class) {
+                return v instanceof Number ? ((Number) v).intValue() : Integer.valueOf(texte);
+            } else if (classe == Long.class) {
+                return v instanceof Number ? ((Number) v).longValue() : Long.valueOf(texte);
+            } else if (classe == Double.class) {
+                return v instanceof Number ? ((Number) v).doubleValue() : Double.valueOf(texte);
+            } else if (classe == Float.class) {
+                return v instanceof Number ? ((Number) v).floatValue() : Float.valueOf(texte);
+            } else if (classe == BigDecimal.class) {
+                return new BigDecimal(texte);
+            } else if (classe == java.sql.Date.class || classe == java.util.Date.class) {
+                if (v instanceof java.util.Date) {
+                    return new java.sql.Date(((java.util.Date) v).getTime());
+                }
+                return texte.isEmpty() ? null : date(texte);
+            } else if (classe == java.sql.Timestamp.class && v instanceof java.util.Date) {
+                return new java.sql.Timestamp(((java.util.Date) v).getTime());
+            }
+        } catch (NumberFormatException | ParseException e) {
+            if (texte.isEmpty()) {
+                return null;
+            }
+            throw new JRException("Valeur " + texte + " illisible en " + classe.getSimpleName());
+        }
+        throw new JRException("Valeur " + texte + " illisible en " + classe.getSimpleName());
+    }
+
+    private static java.sql.Date date(String texte) throws ParseException {
+        try {
+            return java.sql.Date.valueOf(texte);
+        } catch (IllegalArgumentException e) {
+            return new java.sql.Date(new SimpleDateFormat("dd/MM/yyyy").parse(texte).getTime());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Réimpression d'une série de documents en un seul état.
+ */
+package Stock;
+
+import java.awt.Window;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.AsynchronousFillHandle;
+
+/**
+ * Les factures, BL ou proformas d'une période (ou d'une plage de numéros)
+ * réimprimés en un seul JasperPrint : chaque document commence sur une
+ * nouvelle page et le tout part dans un seul PDF.
+ *
+ * Les TTC (pour le montant en lettres) et les lignes de tous les documents
+ * sont lus en deux requêtes. L'état est pris une fois chez Etats, sous sa
+ * forme etat_memoire() : chaque document est rempli avec sa requête
+ * d'en-tête et ses lignes déjà lues, passées sous Etats.LIGNES. Rien n'est
+ * écrit dans la base, facture_temp n'est pas touchée.
+ *
+ * @author IT
+ */
+public class Impression_Lot extends Tache_Impression {
+
+    /** {parametre, état, table maître, table détail, libellé}. */
+    static final String[][] DOCUMENTS = {
+        {"stock_f", "report_fact", "fact", "detail_fact", "Factures"},
+        {"stock_bl", "report_bl", "bl", "detail_bl", "Bons de livraison"},
+        {"", "report_prof", "fprof", "detail_fprof", "Factures proforma"}
+    };
+
+    private final String base;
+    private final String[] document;
+    private final Object du, au;
+
+    /**
+     * document : une ligne de DOCUMENTS ; du, au : deux java.sql.Date
+     * (date_fact) ou deux Integer (nfact), bornes comprises.
+     */
+    public Impression_Lot(Window fenetre, String xbase, String[] xdocument, Object xdu, Object xau) throws SQLException {
+        super(fenetre, xdocument[1], null, Param_Activite.schema(xbase));
+        base = xbase;
+        document = xdocument;
+        du = xdu;
+        au = xau;
+    }
+
+    @Override
+    protected JasperPrint produire() throws Exception {
+        JasperReport jr = Etats.etat_memoire(etat);
+        if (!Etats.parametre(jr, Etats.LIGNES)) {
+            throw new JRException("L'état " + etat + " n'a pas de tableau de lignes");
+        }
+        Map<String, Object> entete = Entete_Activite.parametres(base);
+        String master = document[2], detail = document[3];
+        String critere = du instanceof Integer ? "m.nfact between ? and ?" : "m.date_fact between ? and ?";
+        try (Connection cnx = javaconnect.cnx_schema(schema)) {
+            Map<Integer, Double> ttc = new LinkedHashMap<>();
+            try (PreparedStatement ps = cnx.prepareStatement("select m.nfact, m.montant_ht + m.timbre + m.tva from "
+                    + master + " m where " + critere + " order by m.nfact")) {
+                ps.setObject(1, du);
+                ps.setObject(2, au);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    ttc.put(rs.getInt(1), rs.getDouble(2));
+                }
+            }
+            if (ttc.isEmpty()) {
+                throw new Exception("Aucun document entre " + du + " et " + au);
+            }
+            Map<Integer, List<Map<String, Object>>> lignes = new LinkedHashMap<>();
+            try (PreparedStatement ps = cnx.prepareStatement("select d.nfact, d.narticle, a.designation, d.qte, d.tva, d.prix, d.total_ligne from "
+                    + detail + " d inner join " + master + " m on m.nfact = d.nfact inner join article a on a.narticle = d.narticle"
+                    + " where " + critere + " order by d.nfact")) {
+                ps.setObject(1, du);
+                ps.setObject(2, au);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    List<Map<String, Object>> l = lignes.get(rs.getInt(1));
+                    if (l == null) {
+                        l = new ArrayList<>();
+                        lignes.put(rs.getInt(1), l);
+                    }
+                    Lignes_Facture.Ligne ligne = new Lignes_Facture.Ligne(rs.getString(2), rs.getString(3));
+                    ligne.qte = rs.getInt(4);
+                    ligne.tva = rs.getDouble(5);
+                    ligne.prix = rs.getDouble(6);
+                    ligne.total_ligne = rs.getDouble(7);
+                    l.add(Impression_Document.champs(ligne));
+                }
+            }
+            JasperPrint lot = null;
+            for (Map.Entry<Integer, Double> doc : ttc.entrySet()) {
+                if (isCancelled()) {
+                    throw new InterruptedException("Impression annulée");
+                }
+                List<Map<String, Object>> l = lignes.get(doc.getKey());
+                Map<String, Object> hm = new LinkedHashMap<>(entete);
+                hm.put(Etats.REQUETE, requete(document[0], doc.getKey()));
+                hm.put(Etats.LIGNES, new Impression_Document.Source(l == null ? new ArrayList<Map<String, Object>>() : l));
+                hm.put("fact_spell", Numb_to_Spell.spell(doc.getValue(), ""));
+                JasperPrint jp = remplir(AsynchronousFillHandle.createHandle(jr, hm, cnx));
+                if (lot == null) {
+                    lot = jp;
+                } else {
+                    for (JRPrintPage page : jp.getPages()) {
+                        lot.addPage(page);
+                    }
+                }
+            }
+            return lot;
+        }
+    }
+
+    /** La requête d'en-tête de l'état, comme à l'impression depuis rappel_facture. */
+    static String requete(String parametre, int nfact) {
+        switch (parametre) {
+            case "stock_f":
+                return "SELECT fact.`NFact` AS fact_NFact,      fact.`Nclient` AS fact_Nclient,      fact.`date_fact` AS fact_date_fact,      fact.`montant_ht` AS fact_montant_ht,      fact.`timbre` AS fact_timbre,      fact.`TVA` AS fact_TVA,      fact.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article       FROM      `client` client INNER JOIN `fact` fact ON client.`Nclient` = fact.`Nclient` WHERE fact.nfact ='" + nfact + "'";
+            case "stock_bl":
+                return "SELECT bl.`NFact` AS fact_NFact,      bl.`Nclient` AS fact_Nclient,      bl.`date_fact` AS fact_date_fact,      bl.`montant_ht` AS fact_montant_ht,      bl.`timbre` AS fact_timbre,      bl.`TVA` AS fact_TVA,      bl.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article,  bl.`nbc` AS fact_nbc, bl.`date_bc` AS fact_date_bc, bl.`nom_preneur` AS fact_nom_preneur       FROM      `client` client INNER JOIN `bl` bl ON client.`Nclient` = bl.`Nclient` WHERE bl.nfact ='" + nfact + "'";
+            default:
+                return "SELECT fprof.`NFact` AS fact_NFact,      fprof.`Nclient` AS fact_Nclient,      fprof.`date_fact` AS fact_date_fact,      fprof.`montant_ht` AS fact_montant_ht,      fprof.`timbre` AS fact_timbre,      fprof.`TVA` AS fact_TVA,      fprof.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article       FROM      `client` client INNER JOIN `fprof` fprof ON client.`Nclient` = fprof.`Nclient` WHERE fprof.nfact ='" + nfact + "'";
+        }
+    }
+}
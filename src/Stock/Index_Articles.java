@@ -0,0 +1,267 @@
+/*
+ * Index en mémoire pour la recherche d'articles par préfixe.
+ */
+package Stock;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Codes et désignations des articles d'un schéma, mis sous une forme
+ * normalisée (majuscules, sans accents, espaces réduits) et triés : une
+ * saisie est cherchée par dichotomie parmi le code, le début de la
+ * désignation et le début de chacun de ses mots, puis les N premiers
+ * articles qui commencent par la saisie sont lus à la suite. Le coût ne
+ * dépend que de N, pas de la taille du catalogue.
+ *
+ * Les positions (texte, début de mot) sont triées une fois au chargement ;
+ * aucune sous-chaîne n'est recopiée. Un index chargé n'est jamais modifié :
+ * Articles l'oublie après chaque écriture et le suivant est rechargé à la
+ * demande ; au-delà de Index_Codes.RECHARGER_APRES il est relu en tâche de
+ * fond et l'ancien sert en attendant.
+ *
+ * @author IT
+ */
+public class Index_Articles {
+
+    /** Un article proposé : code et désignation telle qu'en base. */
+    public static class Article {
+        public final String narticle, designation;
+
+        Article(String xnarticle, String xdesignation) {
+            narticle = xnarticle;
+            designation = xdesignation;
+        }
+
+        @Override
+        public String toString() {
+            return designation;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Index_Articles> index = new ConcurrentHashMap<>();
+
+    private final Article[] articles;
+    /** Textes normalisés : code puis désignation de chaque article. */
+    private final String[] textes;
+    /** Pour chaque position triée : texte (poids fort) et début (poids faible). */
+    private final long[] positions;
+    private final long charge_le;
+    private final AtomicBoolean relecture = new AtomicBoolean();
+
+    private Index_Articles(List<Article> lus) {
+        articles = lus.toArray(new Article[lus.size()]);
+        textes = new String[articles.length * 2];
+        long[] debuts = new long[articles.length * 4];
+        int n = 0;
+        for (int i = 0; i < articles.length; i++) {
+            textes[2 * i] = normaliser(articles[i].narticle);
+            textes[2 * i + 1] = normaliser(articles[i].designation);
+            String d = textes[2 * i + 1];
+            for (int k = -1; k < d.length(); k++) {
+                if (k == -1 || Character.isLetterOrDigit(d.charAt(k)) && (k == 0 || !Character.isLetterOrDigit(d.charAt(k - 1)))) {
+                    if (n == debuts.length) {
+                        debuts = Arrays.copyOf(debuts, n * 2);
+                    }
+                    debuts[n++] = k == -1 ? position(2 * i, 0) : position(2 * i + 1, k);
+                }
+            }
+        }
+        positions = Arrays.copyOf(debuts, n);
+        trier(positions, new long[n], 0, n);
+        charge_le = System.currentTimeMillis();
+    }
+
+    /**
+     * Au plus max articles dont le code, la désignation ou un mot de la
+     * désignation commence par saisie, sans distinction de casse ni
+     * d'accents.
+     */
+    public static List<Article> chercher(String base, String saisie, int max) throws SQLException {
+        return get(Param_Activite.schema(base)).chercher(normaliser(saisie), max);
+    }
+
+    /** Charge l'index de l'activité s'il ne l'est pas encore (hors EDT). */
+    public static void charger(String base) throws SQLException {
+        get(Param_Activite.schema(base));
+    }
+
+    /** A appeler après un insert, update ou delete dans article. */
+    public static void invalider(String base) {
+        try {
+            index.remove(Param_Activite.schema(base));
+        } catch (SQLException e) {
+            // pas de schéma, rien à oublier
+        }
+    }
+
+    /** Oublie l'index du schéma (changement d'exercice). */
+    public static void oublier(String schema) {
+        index.remove(schema);
+    }
+
+    private static Index_Articles get(final String schema) throws SQLException {
+        Index_Articles i = index.get(schema);
+        if (i == null) {
+            synchronized (index) {
+                i = index.get(schema);
+                if (i == null) {
+                    i = lire(schema);
+                    index.put(schema, i);
+                }
+            }
+        } else if (System.currentTimeMillis() - i.charge_le > Index_Codes.RECHARGER_APRES
+                && i.relecture.compareAndSet(false, true)) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        index.put(schema, lire(schema));
+                    } catch (SQLException e) {
+                        index.remove(schema);
+                    }
+                }
+            }, "Index_Articles-" + schema);
+            t.setDaemon(true);
+            t.start();
+        }
+        return i;
+    }
+
+    private static Index_Articles lire(String schema) throws SQLException {
+        List<Article> lus = new ArrayList<>();
+        try (Connection cnx = javaconnect.cnx_schema(schema);
+             Statement St = cnx.createStatement()) {
+            ResultSet Rs = St.executeQuery("select narticle, designation from article");
+            while (Rs.next()) {
+                lus.add(new Article(Rs.getString(1), Rs.getString(2) == null ? "" : Rs.getString(2)));
+            }
+        }
+        return new Index_Articles(lus);
+    }
+
+    private List<Article> chercher(String cle, int max) {
+        List<Article> trouves = new ArrayList<>();
+        if (cle.isEmpty()) {
+            return trouves;
+        }
+        int bas = 0, haut = positions.length;
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+            if (comparer(positions[milieu], cle) < 0) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        Set<Integer> vus = new LinkedHashSet<>();
+        for (int p = bas; p < positions.length && vus.size() < max; p++) {
+            String t = textes[texte(positions[p])];
+            if (!t.startsWith(cle, debut(positions[p]))) {
+                break;
+            }
+            vus.add(texte(positions[p]) / 2);
+        }
+        for (int a : vus) {
+            trouves.add(articles[a]);
+        }
+        return trouves;
+    }
+
+    /** Tri fusion des positions [debut, fin[ par ordre de leurs suffixes, sans objets intermédiaires. */
+    private void trier(long[] t, long[] tampon, int debut, int fin) {
+        if (fin - debut < 2) {
+            return;
+        }
+        int milieu = (debut + fin) >>> 1;
+        trier(t, tampon, debut, milieu);
+        trier(t, tampon, milieu, fin);
+        if (comparer(t[milieu - 1], t[milieu]) <= 0) {
+            return;
+        }
+        System.arraycopy(t, debut, tampon, debut, fin - debut);
+        int i = debut, j = milieu;
+        for (int k = debut; k < fin; k++) {
+            if (j >= fin || i < milieu && comparer(tampon[i], tampon[j]) <= 0) {
+                t[k] = tampon[i++];
+            } else {
+                t[k] = tampon[j++];
+            }
+        }
+    }
+
+    private static long position(int texte, int debut) {
+        return ((long) texte << 32) | debut;
+    }
+
+    private static int texte(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int debut(long position) {
+        return (int) position;
+    }
+
+    /** Compare les suffixes désignés par deux positions. */
+    private int comparer(long a, long b) {
+        String s = textes[texte(a)], t = textes[texte(b)];
+        int i = debut(a), j = debut(b);
+        while (i < s.length() && j < t.length()) {
+            int c = s.charAt(i++) - t.charAt(j++);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return (s.length() - i) - (t.length() - j);
+    }
+
+    /** Compare le suffixe désigné par a à la clé cherchée. */
+    private int comparer(long a, String cle) {
+        String s = textes[texte(a)];
+        int i = debut(a), j = 0;
+        while (i < s.length() && j < cle.length()) {
+            int c = s.charAt(i++) - cle.charAt(j++);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return (s.length() - i) - (cle.length() - j);
+    }
+
+    /** Majuscules, sans accents ni espaces superflus : "Éclairage  LED" donne "ECLAIRAGE LED". */
+    static String normaliser(String texte) {
+        if (texte == null) {
+            return "";
+        }
+        String d = Normalizer.normalize(texte, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(d.length());
+        boolean blanc = false;
+        for (int i = 0; i < d.length(); i++) {
+            char c = d.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                blanc = sb.length() > 0;
+                continue;
+            }
+            if (blanc) {
+                sb.append(' ');
+                blanc = false;
+            }
+            sb.append(c);
+        }
+        return sb.toString().toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Index en mémoire des codes client, fournisseur et article.
+ */
+package Stock;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ensemble complet des codes d'une table (client, fournisseur, article) pour
+ * un schéma, chargé une seule fois puis tenu à jour par les écrans de saisie.
+ * Comme l'ensemble est complet, un code absent est refusé sans interroger
+ * MySQL. L'index est rechargé en entier au-delà de RECHARGER_APRES pour
+ * voir les codes créés depuis un autre poste.
+ *
+ * @author IT
+ */
+public class Index_Codes {
+
+    public static final String CLIENT = "client";
+    public static final String FOURNISSEUR = "fournisseur";
+    public static final String ARTICLE = "article";
+
+    static final long RECHARGER_APRES = 10 * 60 * 1000L;
+
+    private static final ConcurrentHashMap<String, Index_Codes> index = new ConcurrentHashMap<>();
+
+    private final String schema;
+    private final String table;
+    private volatile Set<String> codes;
+    private volatile long charge_le;
+
+    private Index_Codes(String xschema, String xtable) {
+        schema = xschema;
+        table = xtable;
+    }
+
+    /** Le code existe-t-il dans la table de l'exercice en cours de l'activité ? */
+    public static boolean existe(String base, String table, String code) throws SQLException {
+        return existe_schema(Param_Activite.schema(base), table, code);
+    }
+
+    public static boolean existe_schema(String schema, String table, String code) throws SQLException {
+        return get(schema, table).contient(code);
+    }
+
+    /** A appeler après un insert réussi dans la table. */
+    public static void ajouter(String base, String table, String code) {
+        Index_Codes i = deja_charge(base, table);
+        if (i != null) {
+            i.modifier(code, true);
+        }
+    }
+
+    /** A appeler après un delete réussi dans la table. */
+    public static void retirer(String base, String table, String code) {
+        Index_Codes i = deja_charge(base, table);
+        if (i != null) {
+            i.modifier(code, false);
+        }
+    }
+
+    /** Oublie les index du schéma (changement d'exercice). */
+    public static void oublier(String schema) {
+        for (String k : index.keySet()) {
+            if (k.startsWith(schema + ".")) {
+                index.remove(k);
+            }
+        }
+    }
+
+    private static Index_Codes get(String schema, String table) {
+        String k = schema + "." + table;
+        Index_Codes i = index.get(k);
+        if (i == null) {
+            Index_Codes nouveau = new Index_Codes(schema, table);
+            i = index.putIfAbsent(k, nouveau);
+            if (i == null) {
+                i = nouveau;
+            }
+        }
+        return i;
+    }
+
+    private static Index_Codes deja_charge(String base, String table) {
+        try {
+            return index.get(Param_Activite.schema(base) + "." + table);
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /** Synchronisé avec charger() pour ne pas perdre la mise à jour. */
+    private synchronized void modifier(String code, boolean ajout) {
+        if (codes == null) {
+            return;
+        }
+        if (ajout) {
+            codes.add(cle(code));
+        } else {
+            codes.remove(cle(code));
+        }
+    }
+
+    private boolean contient(String code) throws SQLException {
+        if (codes == null || System.currentTimeMillis() - charge_le > RECHARGER_APRES) {
+            charger();
+        }
+        return codes.contains(cle(code));
+    }
+
+    private synchronized void charger() throws SQLException {
+        if (codes != null && System.currentTimeMillis() - charge_le <= RECHARGER_APRES) {
+            return;
+        }
+        Set<String> lus = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        String sql = "select n" + table + " from " + table;
+        try (Connection cnx = javaconnect.cnx_schema(schema);
+             Statement St = cnx.createStatement()) {
+            ResultSet Rs = St.executeQuery(sql);
+            while (Rs.next()) {
+                lus.add(cle(Rs.getString(1)));
+            }
+        }
+        codes = lus;
+        charge_le = System.currentTimeMillis();
+    }
+
+    /**
+     * Même égalité que MySQL avec la collation par défaut : sans distinction
+     * de casse et sans les espaces de fin.
+     */
+    private static String cle(String code) {
+        if (code == null) {
+            return "";
+        }
+        int fin = code.length();
+        while (fin > 0 && code.charAt(fin - 1) == ' ') {
+            fin--;
+        }
+        return code.substring(0, fin).toUpperCase(Locale.ROOT);
+    }
+}
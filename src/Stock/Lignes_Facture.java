@@ -0,0 +1,235 @@
+/*
+ * Lignes du document en cours de saisie dans Facture.
+ */
+package Stock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Les lignes de la facture, du BL ou de la proforma en cours, gardées en
+ * mémoire dans l'écran et écrites dans la table détail seulement à la
+ * sauvegarde. Sert aussi de modèle à la JTable. Le numéro de séquence est la
+ * position de la ligne (1, 2, ...), renuméroté après une suppression.
+ *
+ * Chaque changement est recopié dans le Brouillon de l'écran, s'il y en a un.
+ *
+ * @author IT
+ */
+public class Lignes_Facture extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLONNES = {"Seq.", "Code Article", "Designation", "Prix Unitaire",
+        "Taux TVA", "montant TVA", "Quantité", "Prix Total"};
+    private static final Class<?>[] CLASSES = {Integer.class, String.class, String.class, Double.class,
+        Double.class, Double.class, Integer.class, Double.class};
+
+    public static class Ligne {
+        public final String narticle, designation;
+        public int qte;
+        public double tva, prix, total_ligne, pr_achat;
+
+        Ligne(String xnarticle, String xdesignation) {
+            narticle = xnarticle;
+            designation = xdesignation;
+        }
+    }
+
+    private final List<Ligne> lignes = new ArrayList<>();
+    private final Totaux_Document totaux = new Totaux_Document();
+    private Brouillon brouillon;
+    private boolean enregistrees = false;
+
+    /** Journal de l'écran ; son contenu est remplacé par les lignes actuelles. */
+    public void journaliser(Brouillon b) {
+        brouillon = b;
+        journal();
+    }
+
+    /** Ferme le journal, à la fermeture de l'écran. */
+    public void fermer() {
+        if (brouillon != null) {
+            brouillon.supprimer();
+            brouillon = null;
+        }
+    }
+
+    /** Lignes lues dans un brouillon repris. */
+    public void charger(List<String[]> champs) {
+        for (String[] c : champs) {
+            Ligne l = new Ligne(c[0], c[1]);
+            l.qte = Integer.parseInt(c[2]);
+            l.tva = Double.parseDouble(c[3]);
+            l.prix = Double.parseDouble(c[4]);
+            l.total_ligne = Double.parseDouble(c[5]);
+            lignes.add(l);
+            totaux.ligne(l, l.qte, l.prix, l.tva);
+        }
+        fireTableDataChanged();
+        journal();
+    }
+
+    public Ligne ajouter(String narticle, String designation, int qte, double tva, double prix, double total_ligne) {
+        Ligne l = new Ligne(narticle, designation);
+        l.qte = qte;
+        l.tva = tva;
+        l.prix = prix;
+        l.total_ligne = total_ligne;
+        lignes.add(l);
+        totaux.ligne(l, qte, prix, tva);
+        fireTableRowsInserted(lignes.size() - 1, lignes.size() - 1);
+        journal();
+        return l;
+    }
+
+    public void modifier(Ligne l, int qte, double prix, double total_ligne) {
+        l.qte = qte;
+        l.prix = prix;
+        l.total_ligne = total_ligne;
+        totaux.ligne(l, qte, prix, l.tva);
+        int i = lignes.indexOf(l);
+        fireTableRowsUpdated(i, i);
+        journal();
+    }
+
+    public void supprimer(Ligne l) {
+        int i = lignes.indexOf(l);
+        if (i < 0) {
+            return;
+        }
+        lignes.remove(i);
+        totaux.retirer(l);
+        fireTableRowsDeleted(i, i);
+        if (i < lignes.size()) {
+            fireTableRowsUpdated(i, lignes.size() - 1);
+        }
+        journal();
+    }
+
+    public void vider() {
+        int n = lignes.size();
+        lignes.clear();
+        totaux.vider();
+        enregistrees = false;
+        if (n > 0) {
+            fireTableRowsDeleted(0, n - 1);
+        }
+        journal();
+    }
+
+    /** Les lignes sont en base : elles restent affichées, le brouillon est vidé. */
+    public void enregistrees() {
+        enregistrees = true;
+        journal();
+    }
+
+    /** Ligne de numéro de séquence seq ("1", "2", ...) ; null si absente. */
+    public Ligne sequence(String seq) {
+        int i = Integer.parseInt(seq.trim()) - 1;
+        return i >= 0 && i < lignes.size() ? lignes.get(i) : null;
+    }
+
+    public Ligne ligne(int i) {
+        return lignes.get(i);
+    }
+
+    public boolean contient(String narticle) {
+        for (Ligne l : lignes) {
+            if (l.narticle.equals(narticle)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<Ligne> lignes() {
+        return Collections.unmodifiableList(lignes);
+    }
+
+    /** Prix d'achat unitaire de la ligne, pour la marge. */
+    public void prix_achat(Ligne l, double pr_achat) {
+        l.pr_achat = pr_achat;
+        totaux.prix_achat(l, pr_achat);
+    }
+
+    /** sum(qte*prix). */
+    public double total_ht() {
+        return totaux.ht();
+    }
+
+    /** sum(qte*prix*tva/100). */
+    public double total_tva() {
+        return totaux.tva();
+    }
+
+    /** total_ht() - sum(qte*pr_achat). */
+    public double marge() {
+        return totaux.marge();
+    }
+
+    private void journal() {
+        if (brouillon == null) {
+            return;
+        }
+        List<String[]> champs = new ArrayList<>();
+        if (!enregistrees) {
+            for (Ligne l : lignes) {
+                champs.add(new String[]{l.narticle, l.designation, String.valueOf(l.qte),
+                    String.valueOf(l.tva), String.valueOf(l.prix), String.valueOf(l.total_ligne)});
+            }
+        }
+        try {
+            brouillon.ecrire(champs);
+        } catch (IOException e) {
+            System.out.println("Brouillon abandonné : " + e.getMessage());
+            brouillon.supprimer();
+            brouillon = null;
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return lignes.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLONNES.length;
+    }
+
+    @Override
+    public String getColumnName(int col) {
+        return COLONNES[col];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int col) {
+        return CLASSES[col];
+    }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        Ligne l = lignes.get(row);
+        switch (col) {
+            case 0:
+                return row + 1;
+            case 1:
+                return l.narticle;
+            case 2:
+                return l.designation;
+            case 3:
+                return l.prix;
+            case 4:
+                return l.tva;
+            case 5:
+                return l.tva * l.qte * l.prix / 100;
+            case 6:
+                return l.qte;
+            default:
+                return l.total_ligne;
+        }
+    }
+}
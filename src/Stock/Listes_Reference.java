@@ -0,0 +1,360 @@
+/*
+ * Listes de référence (clients, fournisseurs, familles) partagées par les écrans.
+ */
+package Stock;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+import javax.swing.SwingUtilities;
+
+/**
+ * Chaque liste est lue une fois par exercice, à la connexion (toutes en
+ * parallèle, avec l'index des articles), et partagée par les listes
+ * déroulantes de tous les écrans : un écran ne relit plus la table à
+ * chaque ouverture. modele() rend un ComboBoxModel propre à la liste
+ * déroulante (sa sélection lui appartient) qui lit la liste partagée.
+ *
+ * Les écrans de saisie préviennent après une écriture : enregistre() relit
+ * la seule ligne du code, supprime() la retire ; les listes déroulantes
+ * ouvertes sont mises à jour sur l'EDT. Les modèles sont tenus par
+ * référence faible : une fenêtre fermée n'est pas retenue.
+ *
+ * @author IT
+ */
+public class Listes_Reference {
+
+    /** {table, code, libellé}. */
+    public static final String[] CLIENTS = {"client", "nclient", "raison_sociale"};
+    public static final String[] FOURNISSEURS = {"fournisseur", "nfournisseur", "nom_fournisseur"};
+    public static final String[] FAMILLES = {"famille_art", "famille", "famille"};
+
+    static final String VIDE = "          ";
+
+    private static final ConcurrentHashMap<String, Future<Liste>> listes = new ConcurrentHashMap<>();
+
+    private static final ExecutorService chargement = Executors.newFixedThreadPool(4, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Listes_Reference");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /** Une ligne : code et libellé. */
+    private static class Entree {
+        final String code, libelle;
+
+        Entree(String xcode, String xlibelle) {
+            code = xcode;
+            libelle = xlibelle == null ? "" : xlibelle;
+        }
+    }
+
+    /** Liste triée d'une table ; modifiée sur l'EDT seulement, une fois publiée. */
+    private static class Liste {
+        final List<Entree> entrees;
+        final Map<String, Entree> par_code = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        final List<WeakReference<Modele>> modeles = new ArrayList<>();
+
+        Liste(List<Entree> lues) {
+            Collections.sort(lues, ORDRE);
+            entrees = lues;
+            for (Entree e : lues) {
+                par_code.put(e.code, e);
+            }
+        }
+
+        void retirer(String code) {
+            Entree e = par_code.remove(code);
+            if (e != null) {
+                int i = Collections.binarySearch(entrees, e, ORDRE);
+                entrees.remove(i);
+                for (Modele m : modeles()) {
+                    m.retiree(i);
+                }
+            }
+        }
+
+        void placer(Entree e) {
+            retirer(e.code);
+            int i = Collections.binarySearch(entrees, e, ORDRE);
+            i = i < 0 ? -i - 1 : i;
+            entrees.add(i, e);
+            par_code.put(e.code, e);
+            for (Modele m : modeles()) {
+                m.ajoutee(i);
+            }
+        }
+
+        private List<Modele> modeles() {
+            List<Modele> vivants = new ArrayList<>();
+            for (Iterator<WeakReference<Modele>> it = modeles.iterator(); it.hasNext();) {
+                Modele m = it.next().get();
+                if (m == null) {
+                    it.remove();
+                } else {
+                    vivants.add(m);
+                }
+            }
+            return vivants;
+        }
+    }
+
+    private static final Comparator<Entree> ORDRE = new Comparator<Entree>() {
+        private final Collator collator = Collator.getInstance(Locale.FRENCH);
+
+        @Override
+        public int compare(Entree a, Entree b) {
+            int c = collator.compare(a.libelle, b.libelle);
+            return c != 0 ? c : a.code.compareToIgnoreCase(b.code);
+        }
+    };
+
+    /** Modèle d'une liste déroulante : éventuellement une ligne vide en tête, puis la liste. */
+    public static class Modele extends AbstractListModel<Object> implements ComboBoxModel<Object> {
+        private static final long serialVersionUID = 1L;
+        private final Liste liste;
+        private final boolean avec_vide, avec_code;
+        private Object choisi;
+
+        Modele(Liste xliste, boolean xavec_vide, boolean xavec_code) {
+            liste = xliste;
+            avec_vide = xavec_vide;
+            avec_code = xavec_code;
+            choisi = getSize() > 0 ? getElementAt(0) : null;
+        }
+
+        void ajoutee(int i) {
+            int k = i + (avec_vide ? 1 : 0);
+            fireIntervalAdded(this, k, k);
+        }
+
+        void retiree(int i) {
+            int k = i + (avec_vide ? 1 : 0);
+            fireIntervalRemoved(this, k, k);
+        }
+
+        @Override
+        public int getSize() {
+            return liste.entrees.size() + (avec_vide ? 1 : 0);
+        }
+
+        @Override
+        public Object getElementAt(int i) {
+            if (avec_vide) {
+                if (i == 0) {
+                    return VIDE;
+                }
+                i--;
+            }
+            Entree e = liste.entrees.get(i);
+            return avec_code ? e.code + " " + e.libelle : e.libelle;
+        }
+
+        @Override
+        public void setSelectedItem(Object o) {
+            if (o == null ? choisi != null : !o.equals(choisi)) {
+                choisi = o;
+                fireContentsChanged(this, -1, -1);
+            }
+        }
+
+        @Override
+        public Object getSelectedItem() {
+            return choisi;
+        }
+    }
+
+    /**
+     * Lance la lecture de toutes les listes de l'activité, de l'index des
+     * articles et de l'en-tête d'impression, en parallèle et hors EDT (à la
+     * connexion).
+     */
+    public static void precharger(final String base) {
+        try {
+            String schema = Param_Activite.schema(base);
+            for (String[] l : new String[][]{CLIENTS, FOURNISSEURS, FAMILLES}) {
+                FutureTask<Liste> f = nouvelle(schema, l);
+                if (f != null) {
+                    chargement.execute(f);
+                }
+            }
+            chargement.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Index_Articles.charger(base);
+                    } catch (SQLException e) {
+                        // relu à la première recherche
+                    }
+                }
+            });
+            chargement.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Entete_Activite.charger(base);
+                    } catch (SQLException e) {
+                        // lu à la première impression
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            // pas d'exercice : les listes seront lues à la demande
+        }
+    }
+
+    /** Modèle pour une liste déroulante ; sur l'EDT. */
+    public static Modele modele(String base, String[] table, boolean avec_vide, boolean avec_code) throws SQLException {
+        Liste l = liste(Param_Activite.schema(base), table, true);
+        Modele m = new Modele(l, avec_vide, avec_code);
+        l.modeles.add(new WeakReference<>(m));
+        return m;
+    }
+
+    /** A appeler après un insert ou un update de la ligne du code. */
+    public static void enregistre(String base, final String[] table, final String code) {
+        final String schema;
+        try {
+            schema = Param_Activite.schema(base);
+        } catch (SQLException e) {
+            return;
+        }
+        chargement.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Liste l;
+                final Entree e;
+                try {
+                    l = liste(schema, table, false);
+                    if (l == null) {
+                        return;
+                    }
+                    e = lire(schema, table, code);
+                } catch (SQLException ex) {
+                    listes.remove(schema + "." + table[0]);
+                    return;
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (e == null) {
+                            l.retirer(code);
+                        } else {
+                            l.placer(e);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /** A appeler après un delete de la ligne du code. */
+    public static void supprime(String base, String[] table, final String code) {
+        try {
+            Future<Liste> f = listes.get(Param_Activite.schema(base) + "." + table[0]);
+            if (f != null && f.isDone()) {
+                final Liste l = f.get();
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        l.retirer(code);
+                    }
+                });
+            }
+        } catch (SQLException | InterruptedException | ExecutionException e) {
+            // liste pas encore lue : elle le sera à jour
+        }
+    }
+
+    /** Oublie les listes du schéma (changement d'exercice). */
+    public static void oublier(String schema) {
+        for (String k : listes.keySet()) {
+            if (k.startsWith(schema + ".")) {
+                listes.remove(k);
+            }
+        }
+    }
+
+    /** La liste, lue ici si personne ne l'a encore fait ; null si absente et !lire. */
+    private static Liste liste(String schema, String[] table, boolean lire) throws SQLException {
+        Future<Liste> f = listes.get(schema + "." + table[0]);
+        if (f == null) {
+            if (!lire) {
+                return null;
+            }
+            FutureTask<Liste> nouvelle = nouvelle(schema, table);
+            if (nouvelle != null) {
+                nouvelle.run();
+            }
+            f = listes.get(schema + "." + table[0]);
+        }
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        } catch (ExecutionException e) {
+            listes.remove(schema + "." + table[0], f);
+            Throwable cause = e.getCause();
+            throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+        }
+    }
+
+    /** Réserve la lecture de la liste ; null si elle est déjà lue ou en cours. */
+    private static FutureTask<Liste> nouvelle(final String schema, final String[] table) {
+        FutureTask<Liste> f = new FutureTask<>(new Callable<Liste>() {
+            @Override
+            public Liste call() throws SQLException {
+                return tout_lire(schema, table);
+            }
+        });
+        return listes.putIfAbsent(schema + "." + table[0], f) == null ? f : null;
+    }
+
+    private static Liste tout_lire(String schema, String[] table) throws SQLException {
+        List<Entree> lues = new ArrayList<>();
+        try (Connection cnx = javaconnect.cnx_schema(schema);
+             Statement St = cnx.createStatement()) {
+            ResultSet Rs = St.executeQuery("select " + table[1] + ", " + table[2] + " from " + table[0]);
+            while (Rs.next()) {
+                lues.add(new Entree(Rs.getString(1), Rs.getString(2)));
+            }
+        }
+        return new Liste(lues);
+    }
+
+    private static Entree lire(String schema, String[] table, String code) throws SQLException {
+        try (Connection cnx = javaconnect.cnx_schema(schema);
+             PreparedStatement St = cnx.prepareStatement("select " + table[1] + ", " + table[2] + " from "
+                     + table[0] + " where " + table[1] + " = ?")) {
+            St.setString(1, code);
+            ResultSet Rs = St.executeQuery();
+            return Rs.next() ? new Entree(Rs.getString(1), Rs.getString(2)) : null;
+        }
+    }
+}
@@ -241,7 +241,7 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
          Class.forName(pilote);
           
          //Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test", "root", "");
-         Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
+         Connection cnx = javaconnect.cnx_mysql();
           // St = cnx.createStatement();
           St = cnx.prepareStatement(sql);
           St.setString(1,txt_username.getText());
@@ -266,11 +266,8 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
           while (Rs.next()) {
                 base = Rs.getString("code_activite");
             }  
-           sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            year= Rs.getString("db_name");
-            }
+            year= Param_Activite.db_name(base);
+          cnx.close();
           //JOptionPane.showMessageDialog(null, base);
           close();
           Gestion_Stock gest = new Gestion_Stock(base, var_connection,year);
@@ -282,6 +279,7 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
              txt_username.setText("");
              txt_password.setText("");
              txt_username.requestFocus();
+             cnx.close();
           }
           
           
@@ -297,7 +295,7 @@ private void fillCombo1_activite() {
         String sql = "SELECT distinct activite FROM user_info where username = '" +txt_username.getText() +"'";
         String nme="";
         try {
-            Connection var_cnx1= DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
+            Connection var_cnx1= javaconnect.cnx_mysql();
             //String user_bd1="root";
             //String passwd_bd1="";
             St1 = var_cnx1.createStatement();  
@@ -310,6 +308,7 @@ private void fillCombo1_activite() {
                 jComboBox1_activite.addItem(nme);
             }            
             var_connection=nme;
+            var_cnx1.close();
     
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
@@ -0,0 +1,341 @@
+/*
+ * Mesure des requêtes SQL par écran.
+ */
+package Stock;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.regex.Pattern;
+import javax.management.ObjectName;
+
+/**
+ * Compteurs par écran appelant ("Facture.ajout_ligne") et par forme de
+ * requête (littéraux et nombres remplacés par ?) : nombre, temps total,
+ * moyen et 99e centile, lignes lues ou modifiées. Les Statement et
+ * ResultSet des connexions de Pool_Cnx passent par envelopper().
+ *
+ * Les requêtes plus lentes que le seuil (stock.sql.lent_ms, 500 ms par
+ * défaut) vont dans stock_sql_lent.N.log du dossier utilisateur, 3 fichiers
+ * de 1 Mo en rotation. Les compteurs sont publiés en JMX sous
+ * Stock:type=Mesures_Sql.
+ *
+ * @author IT
+ */
+public class Mesures_Sql implements Mesures_SqlMBean {
+
+    static final int TAILLE_LOG = 1024 * 1024;
+    static final int NOMBRE_LOG = 3;
+    /** Quarts d'octave de microsecondes, jusqu'à 2^26 µs (67 s). */
+    static final int TRANCHES = 26 * 4 + 1;
+
+    private static final ConcurrentHashMap<String, Stat> stats = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AtomicLong> connexions = new ConcurrentHashMap<>();
+    private static final ThreadLocal<String> contexte = new ThreadLocal<>();
+    private static volatile long seuil_lent_ms = Long.getLong("stock.sql.lent_ms", 500L);
+    private static final Logger lent = Logger.getLogger("Stock.sql.lent");
+
+    private static final Pattern CHAINE = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NOMBRE = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern TABLE_NUMEROTEE = Pattern.compile("\\b([a-z_]+)\\d{2,}\\b");
+    private static final Pattern LISTE = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern BLANCS = Pattern.compile("\\s+");
+
+    private static final List<String> INFRA = Arrays.asList(
+            "Stock.Pool_Cnx", "Stock.Mesures_Sql", "Stock.javaconnect", "Stock.Dao_Stock",
+            "Stock.MyTableModel", "Stock.Tache_Bd", "Stock.Tache_Maj", "Stock.Tache_Impression",
+            "Stock.Chargement_Table", "Stock.Mouvement_Stock", "Stock.Enregistrement_Document");
+
+    static {
+        try {
+            FileHandler fichier = new FileHandler(System.getProperty("user.home") + File.separator
+                    + "stock_sql_lent.%g.log", TAILLE_LOG, NOMBRE_LOG, true);
+            fichier.setFormatter(new SimpleFormatter());
+            lent.addHandler(fichier);
+            lent.setUseParentHandlers(false);
+        } catch (Exception e) {
+            System.out.println("Journal des requêtes lentes indisponible : " + e.getMessage());
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Mesures_Sql(),
+                    new ObjectName("Stock:type=Mesures_Sql"));
+        } catch (Exception e) {
+            System.out.println("Mesures SQL non publiées en JMX : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ecran et méthode à l'origine de l'appel : le contexte posé par une
+     * Tache_Bd, sinon le premier appelant du paquet Stock hors
+     * infrastructure.
+     */
+    public static String appelant() {
+        String c = contexte.get();
+        if (c != null) {
+            return c;
+        }
+        for (StackTraceElement e : new Throwable().getStackTrace()) {
+            String classe = e.getClassName();
+            if (!classe.startsWith("Stock.")) {
+                continue;
+            }
+            int dollar = classe.indexOf('$');
+            String externe = dollar < 0 ? classe : classe.substring(0, dollar);
+            if (INFRA.contains(externe) || (dollar >= 0 && "<init>".equals(e.getMethodName()))) {
+                continue;
+            }
+            return externe.substring("Stock.".length()) + "." + e.getMethodName();
+        }
+        return "?";
+    }
+
+    /** Attribue les requêtes du thread courant à l'appelant donné (null pour effacer). */
+    static void contexte(String appelant) {
+        if (appelant == null) {
+            contexte.remove();
+        } else {
+            contexte.set(appelant);
+        }
+    }
+
+    static void connexion_empruntee() {
+        compter(appelant());
+    }
+
+    /** Connexion physique ouverte par le pool sur le schéma. */
+    static void connexion_ouverte(String schema) {
+        compter("(ouverture) " + schema);
+    }
+
+    private static void compter(String cle) {
+        AtomicLong n = connexions.get(cle);
+        if (n == null) {
+            connexions.putIfAbsent(cle, new AtomicLong());
+            n = connexions.get(cle);
+        }
+        n.incrementAndGet();
+    }
+
+    /** Durée d'une transaction d'Enregistrement_Document, de l'emprunt de la connexion au commit. */
+    static void transaction(String libelle, long duree_ns, boolean validee) {
+        String cle = "commit " + libelle + (validee ? "" : " (annulé)");
+        stat(appelant(), cle).ajouter(duree_ns, cle);
+    }
+
+    static String forme(String sql) {
+        String f = CHAINE.matcher(sql).replaceAll("?");
+        f = BLANCS.matcher(f.toLowerCase()).replaceAll(" ").trim();
+        f = TABLE_NUMEROTEE.matcher(f).replaceAll("$1#");
+        f = NOMBRE.matcher(f).replaceAll("?");
+        return LISTE.matcher(f).replaceAll("(?)");
+    }
+
+    /**
+     * Enveloppe un Statement ; sql_prepare est la requête d'un
+     * PreparedStatement, fermeture (ou null) est prévenu quand l'appelant
+     * le ferme.
+     */
+    static Statement envelopper(final Statement st, final String sql_prepare, final Runnable fermeture) {
+        Class<?> type = st instanceof CallableStatement ? CallableStatement.class
+                : st instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(Mesures_Sql.class.getClassLoader(),
+                new Class<?>[]{type}, new InvocationHandler() {
+            private Stat derniere;
+
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                String nom = m.getName();
+                if (nom.startsWith("execute")) {
+                    String sql = args != null && args.length > 0 && args[0] instanceof String
+                            ? (String) args[0] : sql_prepare;
+                    derniere = stat(appelant(), sql == null ? nom : sql);
+                    long debut = System.nanoTime();
+                    Object resultat;
+                    try {
+                        resultat = appeler(st, m, args);
+                    } finally {
+                        derniere.ajouter(System.nanoTime() - debut, sql);
+                    }
+                    if (resultat instanceof Integer) {
+                        derniere.lignes.addAndGet((Integer) resultat);
+                    } else if (resultat instanceof int[]) {
+                        for (int n : (int[]) resultat) {
+                            derniere.lignes.addAndGet(Math.max(n, 0));
+                        }
+                    }
+                    return envelopper_resultat(resultat, derniere);
+                }
+                if ("close".equals(nom)) {
+                    try {
+                        return appeler(st, m, args);
+                    } finally {
+                        if (fermeture != null) {
+                            fermeture.run();
+                        }
+                    }
+                }
+                if ("getResultSet".equals(nom)) {
+                    return envelopper_resultat(appeler(st, m, args), derniere);
+                }
+                if ("equals".equals(nom)) {
+                    return proxy == args[0];
+                }
+                if ("hashCode".equals(nom)) {
+                    return System.identityHashCode(proxy);
+                }
+                return appeler(st, m, args);
+            }
+        });
+    }
+
+    private static Object envelopper_resultat(Object resultat, final Stat stat) {
+        if (!(resultat instanceof ResultSet) || stat == null) {
+            return resultat;
+        }
+        final ResultSet rs = (ResultSet) resultat;
+        return Proxy.newProxyInstance(Mesures_Sql.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                Object r = appeler(rs, m, args);
+                if ("next".equals(m.getName()) && Boolean.TRUE.equals(r)) {
+                    stat.lignes.incrementAndGet();
+                }
+                return r;
+            }
+        });
+    }
+
+    private static Object appeler(Object cible, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(cible, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Stat stat(String appelant, String sql) {
+        String cle = appelant + " | " + forme(sql);
+        Stat s = stats.get(cle);
+        if (s == null) {
+            s = new Stat(cle);
+            Stat deja = stats.putIfAbsent(cle, s);
+            if (deja != null) {
+                s = deja;
+            }
+        }
+        return s;
+    }
+
+    @Override
+    public String[] getRequetes() {
+        List<Stat> liste = new ArrayList<>(stats.values());
+        Collections.sort(liste, new Comparator<Stat>() {
+            @Override
+            public int compare(Stat a, Stat b) {
+                return Long.compare(b.total_ns(), a.total_ns());
+            }
+        });
+        String[] lignes = new String[liste.size()];
+        for (int i = 0; i < lignes.length; i++) {
+            lignes[i] = liste.get(i).toString();
+        }
+        return lignes;
+    }
+
+    @Override
+    public String[] getConnexions() {
+        List<String> lignes = new ArrayList<>();
+        for (Map.Entry<String, AtomicLong> e : connexions.entrySet()) {
+            lignes.add(e.getKey() + " : " + e.getValue().get());
+        }
+        Collections.sort(lignes);
+        return lignes.toArray(new String[lignes.size()]);
+    }
+
+    @Override
+    public long getSeuilLentMs() {
+        return seuil_lent_ms;
+    }
+
+    @Override
+    public void setSeuilLentMs(long seuil) {
+        seuil_lent_ms = seuil;
+    }
+
+    @Override
+    public void reinitialiser() {
+        stats.clear();
+        connexions.clear();
+    }
+
+    /** Compteurs d'une forme de requête pour un appelant. */
+    private static class Stat {
+        final String cle;
+        final AtomicLong lignes = new AtomicLong();
+        private long nombre;
+        private long total_ns;
+        private final long[] tranches = new long[TRANCHES];
+
+        Stat(String xcle) {
+            cle = xcle;
+        }
+
+        void ajouter(long duree_ns, String sql) {
+            long us = Math.max(duree_ns / 1000, 1);
+            int t = (int) Math.min(TRANCHES - 1, Math.floor(Math.log(us) / Math.log(2) * 4));
+            synchronized (this) {
+                nombre++;
+                total_ns += duree_ns;
+                tranches[t]++;
+            }
+            if (duree_ns / 1000000 >= seuil_lent_ms) {
+                lent.log(Level.WARNING, "{0} ms [{1}] {2}",
+                        new Object[]{duree_ns / 1000000, cle.substring(0, cle.indexOf(" | ")), sql});
+            }
+        }
+
+        synchronized long total_ns() {
+            return total_ns;
+        }
+
+        /** Borne haute de la tranche qui contient le 99e centile, en ms. */
+        synchronized double p99_ms() {
+            long rang = (long) Math.ceil(nombre * 0.99);
+            long cumul = 0;
+            for (int t = 0; t < TRANCHES; t++) {
+                cumul += tranches[t];
+                if (cumul >= rang) {
+                    return Math.pow(2, (t + 1) / 4.0) / 1000;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%s | n=%d total=%.1f ms moy=%.2f ms p99<=%.2f ms lignes=%d",
+                    cle, nombre, total_ns / 1e6, nombre == 0 ? 0 : total_ns / 1e6 / nombre,
+                    p99_ms(), lignes.get());
+        }
+    }
+}
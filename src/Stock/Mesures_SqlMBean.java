@@ -0,0 +1,24 @@
+/*
+ * Interface JMX de Mesures_Sql.
+ */
+package Stock;
+
+/**
+ * Vue JConsole / VisualVM des mesures SQL (Stock:type=Mesures_Sql).
+ *
+ * @author IT
+ */
+public interface Mesures_SqlMBean {
+
+    /** Une ligne par écran et forme de requête, les plus coûteuses d'abord. */
+    String[] getRequetes();
+
+    /** Connexions empruntées par écran. */
+    String[] getConnexions();
+
+    long getSeuilLentMs();
+
+    void setSeuilLentMs(long seuil);
+
+    void reinitialiser();
+}
@@ -0,0 +1,206 @@
+/*
+ * Mouvements de stock d'un document, appliqués en une fois.
+ */
+package Stock;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Les lignes d'un document (ou une seule ligne) ajoutent ou retirent une
+ * quantité de stock_f ou stock_bl. appliquer() envoie un seul lot
+ * "update article set stock_x = coalesce(stock_x, 0) + ?" (une ligne par
+ * article, les quantités du même article cumulées ; un stock NULL part de
+ * 0) puis relit le stock obtenu : pas de lecture préalable, donc pas de
+ * mise à jour perdue entre deux postes.
+ *
+ * Sur une connexion en autoCommit=false, les mouvements font partie de la
+ * transaction de l'appelant.
+ *
+ * reserver() prend le stock d'une ligne au moment où elle est saisie, par
+ * la même mise à jour relative ; le stock peut devenir négatif, comme
+ * avant. Un interblocage ou une attente de verrou dépassée est rejoué,
+ * ESSAIS fois au plus, hors transaction. Avec controle (colonne
+ * controle_stock de l'activité, Param_Activite), la sortie n'est faite que
+ * si le stock la couvre encore, dans la même requête : si un autre poste a
+ * vendu l'article entre-temps, elle est refusée (Stock_Insuffisant) sans
+ * verrou de table ni relecture préalable. Un stock NULL compte pour 0.
+ *
+ * @author IT
+ */
+public class Mouvement_Stock {
+
+    /** Une ligne du document et son résultat après appliquer(). */
+    public static class Ligne {
+        public final String colonne, narticle;
+        public final int quantite;
+        /** Article trouvé dans la table article. */
+        public boolean applique;
+        /** Stock de l'article après tous les mouvements du document. */
+        public int stock;
+
+        Ligne(String xcolonne, String xnarticle, int xquantite) {
+            colonne = xcolonne;
+            narticle = xnarticle;
+            quantite = xquantite;
+        }
+    }
+
+    /** Sortie refusée : le stock ne couvre plus la quantité demandée. */
+    public static class Stock_Insuffisant extends SQLException {
+        private static final long serialVersionUID = 1L;
+        public final String narticle;
+        public final int disponible;
+
+        Stock_Insuffisant(String xnarticle, int xdisponible) {
+            super("Stock insuffisant pour " + xnarticle + " : " + xdisponible + " disponible(s)");
+            narticle = xnarticle;
+            disponible = xdisponible;
+        }
+    }
+
+    static final int ESSAIS = 3;
+
+    private final List<Ligne> lignes = new ArrayList<>();
+
+    /** colonne : "stock_f" ou "stock_bl" ; quantite positive pour une entrée. */
+    public Mouvement_Stock ajouter(String colonne, String narticle, int quantite) throws SQLException {
+        verifier(colonne);
+        lignes.add(new Ligne(colonne, narticle, quantite));
+        return this;
+    }
+
+    private static void verifier(String colonne) throws SQLException {
+        if (!"stock_f".equals(colonne) && !"stock_bl".equals(colonne)) {
+            throw new SQLException("Colonne de stock inconnue : " + colonne);
+        }
+    }
+
+    /**
+     * Retire quantite du stock de l'article pour une ligne en cours de
+     * saisie, rendue si la saisie est abandonnée ; rend le stock restant.
+     * controle : refuser la sortie que le stock ne couvre pas.
+     */
+    public static int reserver(Connection cnx, String colonne, String narticle, int quantite, boolean controle)
+            throws SQLException {
+        verifier(colonne);
+        boolean limite = controle && quantite > 0;
+        String sql = "update article set " + colonne + " = coalesce(" + colonne + ", 0) - ? where narticle = ?"
+                + (limite ? " and coalesce(" + colonne + ", 0) >= ?" : "");
+        int n;
+        for (int essai = 1;; essai++) {
+            try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+                ps.setInt(1, quantite);
+                ps.setString(2, narticle);
+                if (limite) {
+                    ps.setInt(3, quantite);
+                }
+                n = ps.executeUpdate();
+                break;
+            } catch (SQLException e) {
+                if (essai >= ESSAIS || !rejouable(cnx, e)) {
+                    throw e;
+                }
+            }
+        }
+        int stock;
+        try (PreparedStatement ps = cnx.prepareStatement("select " + colonne + " from article where narticle = ?")) {
+            ps.setString(1, narticle);
+            ResultSet rs = ps.executeQuery();
+            if (!rs.next()) {
+                return 0;
+            }
+            stock = rs.getInt(1);
+        }
+        if (limite && n == 0) {
+            throw new Stock_Insuffisant(narticle, stock);
+        }
+        return stock;
+    }
+
+    /**
+     * Interblocage (1213) ou attente de verrou dépassée (1205), hors
+     * transaction : MySQL a annulé la requête seule, elle peut être rejouée.
+     * Dans une transaction, c'est à l'appelant de tout reprendre.
+     */
+    static boolean rejouable(Connection cnx, SQLException e) throws SQLException {
+        if (!cnx.getAutoCommit()) {
+            return false;
+        }
+        return e.getErrorCode() == 1213 || e.getErrorCode() == 1205 || "40001".equals(e.getSQLState());
+    }
+
+    public boolean vide() {
+        return lignes.isEmpty();
+    }
+
+    /** Applique les mouvements, dans l'ordre où ils ont été ajoutés. */
+    public List<Ligne> appliquer(Connection cnx) throws SQLException {
+        if (lignes.isEmpty()) {
+            return lignes;
+        }
+        Map<String, Map<String, Integer>> cumuls = new LinkedHashMap<>();
+        for (Ligne l : lignes) {
+            Map<String, Integer> c = cumuls.get(l.colonne);
+            if (c == null) {
+                c = new LinkedHashMap<>();
+                cumuls.put(l.colonne, c);
+            }
+            Integer q = c.get(l.narticle);
+            c.put(l.narticle, (q == null ? 0 : q) + l.quantite);
+        }
+        for (Map.Entry<String, Map<String, Integer>> e : cumuls.entrySet()) {
+            String colonne = e.getKey();
+            try (PreparedStatement ps = cnx.prepareStatement("update article set " + colonne + " = coalesce("
+                    + colonne + ", 0) + ? where narticle = ?")) {
+                for (Map.Entry<String, Integer> q : e.getValue().entrySet()) {
+                    if (q.getValue() != 0) {
+                        ps.setInt(1, q.getValue());
+                        ps.setString(2, q.getKey());
+                        ps.addBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+        }
+        relire(cnx);
+        return lignes;
+    }
+
+    private void relire(Connection cnx) throws SQLException {
+        Set<String> articles = new LinkedHashSet<>();
+        for (Ligne l : lignes) {
+            articles.add(l.narticle);
+        }
+        StringBuilder sql = new StringBuilder("select narticle, stock_f, stock_bl from article where narticle in (");
+        for (int i = 0; i < articles.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+        Map<String, int[]> stocks = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        try (PreparedStatement ps = cnx.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (String narticle : articles) {
+                ps.setString(i++, narticle);
+            }
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                stocks.put(rs.getString(1), new int[]{rs.getInt(2), rs.getInt(3)});
+            }
+        }
+        for (Ligne l : lignes) {
+            int[] s = stocks.get(l.narticle);
+            l.applique = s != null;
+            l.stock = s == null ? 0 : "stock_f".equals(l.colonne) ? s[0] : s[1];
+        }
+    }
+}
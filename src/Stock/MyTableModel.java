@@ -8,7 +8,18 @@ package Stock;
 import javax.swing.table.*;
 import java.sql.*;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.Vector;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.swing.JOptionPane;
 
 
@@ -18,9 +29,7 @@ Statement stat;
 ResultSet rs;
 public String base;
 int li_cols = 0;
-Vector allRows;
-Vector row;
-Vector newRow;
+Colonne[] colonnes;
 Vector colNames;
 String dbColNames[];
 String pkValues[];
@@ -33,6 +42,26 @@ Vector newRows;
 boolean ibRowNew = false;
 boolean ibRowInserted = false;
 
+int nb_lignes;
+Class[] classes;
+/** Colonne qui identifie une ligne pour rafraichir() (narticle, nclient, ...). */
+static final int COL_CLE = 0;
+
+// mode paginé
+static final int TAILLE_PAGE = 100;
+static final int PAGES_MAX = 20;
+boolean pagine = false;
+int nb_cles;
+String sql_debut, sql_suite, sql_saut;
+String liste_colonnes, from_where;
+String[] cles;
+Map<Integer, Object[][]> pages;
+Map<Integer, Object[]> fin_de_page;
+// pages en cours de lecture en fond, et numéro de relecture (EDT)
+Set<Integer> en_lecture = new HashSet<>();
+int generation;
+static final Object[][] PAGE_VIDE = new Object[0][];
+
    MyTableModel(String sql, String bas){
       try{
         Class.forName("com.mysql.jdbc.Driver");
@@ -45,18 +74,7 @@ boolean ibRowInserted = false;
       try{
          
         //
-            con = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            stat = con.createStatement();  
-            String sql1 = "select db_name from stock_table_parameter where code_activite = '"+base+"'";
-            rs = stat.executeQuery(sql1);
-            if (rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;
-            String user_bd="root";
-            String passwd_bd="";
-            con = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
-            }
-        //  
+            con = javaconnect.cnx_activite(base);
          //con = DriverManager.getConnection("jdbc:mysql://localhost:3306/test", "root", "");
          stat = con.createStatement();
          rs = stat.executeQuery(sql);
@@ -65,42 +83,475 @@ boolean ibRowInserted = false;
          myM = rs.getMetaData();
          tableName = myM.getTableName(1);
          li_cols = myM.getColumnCount();
-         dbColNames = new String[li_cols];
-         
-         for(int col = 0; col < li_cols; col ++){
-         dbColNames[col] = myM.getColumnName(col + 1);
-         }
-         allRows = new Vector();
-         while(rs.next()){
-            newRow = new Vector();
-            for(int i = 1; i <= li_cols; i++){
-              // if (myM.getColumnClassName(i)== "java.lang.Double") 
-               //{ 
-             //  Object aa = rs.getObject(i);
-               
-             //  Double jj = Double.parseDouble(aa.toString());
-               
-               //newRow.addElement(Double.parseDouble(patternFormatter.format(rs.getObject(i))));
-               //newRow.addElement(jj);
-              // } 
-              //  else {
-               newRow.addElement(rs.getObject(i));
-              // }
-               //JOptionPane.showMessageDialog(null, myM.getColumnClassName(i));
-            } // for
-            allRows.addElement(newRow);
-         } // while
+         prendre(lire(rs));
       } 
       catch(SQLException e){
          System.out.println(e.getMessage());
       } 
+      finally {
+         javaconnect.liberer(con);
+      }
    }
    
+   /**
+    * Mode paginé, pour les grandes listes : seul le nombre de lignes est lu
+    * à l'ouverture, puis les lignes par pages de TAILLE_PAGE quand la table
+    * les affiche. Les pages suivent l'ordre des colonnes cles, uniques
+    * ensemble ("A.designation", "A.narticle"), et une page est lue à partir
+    * de la dernière clé de la précédente (index, pas d'offset). Seules les
+    * PAGES_MAX pages les plus récentes restent en mémoire.
+    *
+    * Une page absente est lue par une Tache_Bd : getValueAt rend null pour
+    * ses cellules jusqu'à son arrivée (fireTableRowsUpdated), et la page
+    * suivante de celle affichée est lue d'avance. L'EDT n'attend jamais
+    * MySQL pendant le défilement.
+    *
+    * colonnes : liste du select ; from_where : "from ... [where ...]" sans
+    * order by ni limit.
+    */
+   MyTableModel(String colonnes, String xfrom_where, String[] xcles, String bas){
+      base = bas;
+      pagine = true;
+      liste_colonnes = colonnes;
+      from_where = xfrom_where;
+      cles = xcles;
+      nb_cles = cles.length;
+      pages = new LinkedHashMap<Integer, Object[][]>(PAGES_MAX, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+            return size() > PAGES_MAX;
+         }
+      };
+      fin_de_page = new HashMap<>();
+      String liste_cles = cles[0];
+      for (int k = 1; k < nb_cles; k++) {
+         liste_cles += ", " + cles[k];
+      }
+      String select = "select " + colonnes + ", " + liste_cles + " ";
+      String ordre = " order by " + liste_cles + " limit " + TAILLE_PAGE;
+      sql_debut = select + from_where + ordre;
+      sql_suite = select + ajouter_condition(from_where, apres_cle(cles)) + ordre;
+      sql_saut = select + from_where + " order by " + liste_cles + " limit ?, " + TAILLE_PAGE;
+      try{
+         con = javaconnect.cnx_activite(base);
+         stat = con.createStatement();
+         rs = stat.executeQuery("select count(*) " + from_where);
+         nb_lignes = rs.next() ? rs.getInt(1) : 0;
+         rs = stat.executeQuery(sql_debut);
+         myM = rs.getMetaData();
+         li_cols = myM.getColumnCount() - nb_cles;
+         dbColNames = new String[li_cols];
+         for(int col = 0; col < li_cols; col ++){
+            dbColNames[col] = myM.getColumnName(col + 1);
+         }
+         classes = classes_colonnes(myM, li_cols);
+         ranger_page(0, rs);
+      }
+      catch(SQLException e){
+         System.out.println(e.getMessage());
+      }
+      finally {
+         javaconnect.liberer(con);
+      }
+   }
+
+   /** Lignes lues par une requête, pour le constructeur ou rafraichir(). */
+   static class Releve {
+      String[] noms;
+      Class[] classes;
+      Colonne[] colonnes;
+      int nb_lignes;
+      // mode paginé : pages relues et dernière clé de chacune
+      Map<Integer, Object[][]> pages;
+      Map<Integer, Object[]> fins;
+   }
+
+   private static Releve lire(ResultSet r) throws SQLException {
+      ResultSetMetaData m = r.getMetaData();
+      int n = m.getColumnCount();
+      Releve rel = new Releve();
+      rel.noms = new String[n];
+      for (int col = 0; col < n; col++) {
+         rel.noms[col] = m.getColumnName(col + 1);
+      }
+      rel.classes = classes_colonnes(m, n);
+      rel.colonnes = new Colonne[n];
+      for (int col = 0; col < n; col++) {
+         rel.colonnes[col] = Colonne.pour(rel.classes[col]);
+      }
+      while (r.next()) {
+         for (int i = 0; i < n; i++) {
+            rel.colonnes[i].ajouter(r, i + 1);
+         }
+         rel.nb_lignes++;
+      }
+      for (Colonne c : rel.colonnes) {
+         c.ajuster();
+      }
+      return rel;
+   }
+
+   private void prendre(Releve r) {
+      dbColNames = r.noms;
+      classes = r.classes;
+      colonnes = r.colonnes;
+      nb_lignes = r.nb_lignes;
+      li_cols = r.noms.length;
+   }
+
+   /** Même source de pages que MyTableModel(colonnes, from_where, cles, base). */
+   boolean memes_pages(String colonnes, String xfrom_where, String[] xcles) {
+      return pagine && liste_colonnes.equals(colonnes) && from_where.equals(xfrom_where)
+              && Arrays.equals(cles, xcles);
+   }
+
+   /** Pages en mémoire, à passer à relire() (sur l'EDT). */
+   int[] pages_lues() {
+      int[] numeros = new int[pages.size()];
+      int i = 0;
+      for (Integer p : pages.keySet()) {
+         numeros[i++] = p;
+      }
+      return numeros;
+   }
+
+   /**
+    * Relit les lignes hors de l'EDT sans toucher au modèle ; appliquer()
+    * les pose ensuite sur l'EDT. Mode complet : xsql peut être une autre
+    * recherche sur les mêmes colonnes. Mode paginé : xsql est ignoré, le
+    * nombre de lignes et les pages numeros sont relus.
+    */
+   Releve relire(String xsql, int[] numeros) throws SQLException {
+      Connection cnx = null;
+      try {
+         cnx = javaconnect.cnx_activite(base);
+         Statement st = cnx.createStatement();
+         if (!pagine) {
+            return lire(st.executeQuery(xsql));
+         }
+         Releve rel = new Releve();
+         ResultSet r = st.executeQuery("select count(*) " + from_where);
+         rel.nb_lignes = r.next() ? r.getInt(1) : 0;
+         rel.pages = new HashMap<>();
+         rel.fins = new HashMap<>();
+         for (int p : numeros) {
+            PreparedStatement ps = cnx.prepareStatement(p == 0 ? sql_debut : sql_saut);
+            if (p > 0) {
+               ps.setInt(1, p * TAILLE_PAGE);
+            }
+            rel.pages.put(p, lire_lignes(ps.executeQuery(), p, rel.fins));
+         }
+         return rel;
+      } finally {
+         javaconnect.liberer(cnx);
+      }
+   }
+
+   /**
+    * Pose les lignes relues. Les lignes sont rapprochées par COL_CLE :
+    * suppressions, insertions puis modifications sont signalées ligne par
+    * ligne, si bien que la JTable garde sélection et défilement et ne
+    * redessine que les lignes changées. Une ligne dont la place dans l'ordre
+    * a changé est supprimée puis insérée.
+    */
+   void appliquer(Releve r) {
+      if (pagine) {
+         appliquer_pages(r);
+         return;
+      }
+      if (!Arrays.equals(dbColNames, r.noms) || !Arrays.equals(classes, r.classes)) {
+         prendre(r);
+         fireTableStructureChanged();
+         return;
+      }
+      int n_avant = nb_lignes;
+      int n_apres = r.nb_lignes;
+      HashMap<Object, Integer> index = new HashMap<>(n_avant * 2);
+      for (int l = 0; l < n_avant; l++) {
+         index.put(colonnes[COL_CLE].get(l), l);
+      }
+      int[] ancien = new int[n_apres];
+      for (int l = 0; l < n_apres; l++) {
+         Integer a = index.get(r.colonnes[COL_CLE].get(l));
+         ancien[l] = a == null ? -1 : a;
+      }
+      boolean[] garde = plus_longue_suite(ancien);
+      boolean[] reste = new boolean[n_avant];
+      boolean[] change = new boolean[n_apres];
+      for (int l = 0; l < n_apres; l++) {
+         if (garde[l]) {
+            reste[ancien[l]] = true;
+            for (int col = 0; col < li_cols && !change[l]; col++) {
+               change[l] = !Objects.equals(colonnes[col].get(ancien[l]), r.colonnes[col].get(l));
+            }
+         }
+      }
+      prendre(r);
+      // du bas vers le haut : les indices au-dessus restent valables
+      for (int l = n_avant - 1; l >= 0; l--) {
+         if (!reste[l]) {
+            int fin = l;
+            while (l > 0 && !reste[l - 1]) {
+               l--;
+            }
+            fireTableRowsDeleted(l, fin);
+         }
+      }
+      for (int l = 0; l < n_apres; l++) {
+         if (!garde[l]) {
+            int debut = l;
+            while (l + 1 < n_apres && !garde[l + 1]) {
+               l++;
+            }
+            fireTableRowsInserted(debut, l);
+         }
+      }
+      for (int l = 0; l < n_apres; l++) {
+         if (change[l]) {
+            int debut = l;
+            while (l + 1 < n_apres && change[l + 1]) {
+               l++;
+            }
+            fireTableRowsUpdated(debut, l);
+         }
+      }
+   }
+
+   /**
+    * Mode paginé : à nombre de lignes égal, seules les lignes modifiées des
+    * pages relues sont signalées ; sinon les positions ont glissé et toute
+    * la table est signalée changée.
+    */
+   private void appliquer_pages(Releve r) {
+      generation++;
+      fin_de_page.clear();
+      fin_de_page.putAll(r.fins);
+      if (r.nb_lignes != nb_lignes) {
+         nb_lignes = r.nb_lignes;
+         pages.clear();
+         pages.putAll(r.pages);
+         fireTableDataChanged();
+         return;
+      }
+      for (Map.Entry<Integer, Object[][]> e : r.pages.entrySet()) {
+         Object[][] avant = pages.put(e.getKey(), e.getValue());
+         Object[][] apres = e.getValue();
+         int premiere = e.getKey() * TAILLE_PAGE;
+         if (avant == null || avant.length != apres.length) {
+            if (apres.length > 0) {
+               fireTableRowsUpdated(premiere, premiere + apres.length - 1);
+            }
+            continue;
+         }
+         for (int i = 0; i < apres.length; i++) {
+            if (!Arrays.equals(avant[i], apres[i])) {
+               fireTableRowsUpdated(premiere + i, premiere + i);
+            }
+         }
+      }
+   }
+
+   /**
+    * Lignes nouvelles reprises telles quelles : la plus longue suite dont
+    * les indices anciens croissent (les autres sont supprimées puis
+    * insérées).
+    */
+   private static boolean[] plus_longue_suite(int[] ancien) {
+      int n = ancien.length;
+      int[] fins = new int[n];
+      int[] precedent = new int[n];
+      int longueur = 0;
+      for (int l = 0; l < n; l++) {
+         if (ancien[l] < 0) {
+            continue;
+         }
+         int bas = 0;
+         int haut = longueur;
+         while (bas < haut) {
+            int m = (bas + haut) >>> 1;
+            if (ancien[fins[m]] < ancien[l]) {
+               bas = m + 1;
+            } else {
+               haut = m;
+            }
+         }
+         precedent[l] = bas > 0 ? fins[bas - 1] : -1;
+         fins[bas] = l;
+         if (bas == longueur) {
+            longueur++;
+         }
+      }
+      boolean[] garde = new boolean[n];
+      for (int l = longueur > 0 ? fins[longueur - 1] : -1; l >= 0; l = precedent[l]) {
+         garde[l] = true;
+      }
+      return garde;
+   }
+
+   /** Ligne de la valeur cle dans la colonne COL_CLE, parmi les lignes en mémoire ; -1 sinon. */
+   int ligne(Object cle) {
+      if (!pagine) {
+         for (int l = 0; l < nb_lignes; l++) {
+            if (Objects.equals(colonnes[COL_CLE].get(l), cle)) {
+               return l;
+            }
+         }
+         return -1;
+      }
+      for (Map.Entry<Integer, Object[][]> e : pages.entrySet()) {
+         Object[][] lignes = e.getValue();
+         for (int i = 0; i < lignes.length; i++) {
+            if (Objects.equals(lignes[i][COL_CLE], cle)) {
+               return e.getKey() * TAILLE_PAGE + i;
+            }
+         }
+      }
+      return -1;
+   }
+
+   /** Classes des colonnes, lues une fois dans les métadonnées. */
+   private static Class[] classes_colonnes(ResultSetMetaData m, int n) throws SQLException {
+      Class[] c = new Class[n];
+      for (int col = 0; col < n; col++) {
+         try {
+            c[col] = Class.forName(m.getColumnClassName(col + 1));
+         } catch (ClassNotFoundException e) {
+            c[col] = Object.class;
+         }
+      }
+      return c;
+   }
+
+   /** Condition "après la clé (?, ?)" : k1 > ? or (k1 = ? and k2 > ?) ... */
+   private static String apres_cle(String[] cles) {
+      String condition = "";
+      for (int k = 0; k < cles.length; k++) {
+         String terme = "";
+         for (int j = 0; j < k; j++) {
+            terme += cles[j] + " = ? and ";
+         }
+         terme += cles[k] + " > ?";
+         condition += (k == 0 ? "" : " or ") + "(" + terme + ")";
+      }
+      return condition;
+   }
+
+   private static final Pattern WHERE = Pattern.compile("\\bwhere\\b", Pattern.CASE_INSENSITIVE);
+
+   private static String ajouter_condition(String from_where, String condition) {
+      Matcher m = WHERE.matcher(from_where);
+      if (m.find()) {
+         return from_where.substring(0, m.end()) + " (" + from_where.substring(m.end()) + ") and (" + condition + ")";
+      }
+      return from_where + " where " + condition;
+   }
+
+   /** La page si elle est en mémoire, sinon PAGE_VIDE et sa lecture en fond ; sur l'EDT. */
+   private Object[][] page(int p) {
+      Object[][] lignes = pages.get(p);
+      if (lignes == null) {
+         charger_page(p);
+         return PAGE_VIDE;
+      }
+      if ((p + 1) * TAILLE_PAGE < nb_lignes && !pages.containsKey(p + 1)) {
+         charger_page(p + 1);
+      }
+      return lignes;
+   }
+
+   private void charger_page(final int p) {
+      if (!en_lecture.add(p)) {
+         return;
+      }
+      final Object[] cle = p == 0 ? null : fin_de_page.get(p - 1);
+      final int lancee = generation;
+      new Tache_Bd<Object[][]>(null) {
+         private final Map<Integer, Object[]> fins = new HashMap<>();
+
+         @Override
+         protected Object[][] executer() throws SQLException {
+            return lire_page(p, cle, fins);
+         }
+
+         @Override
+         protected void terminer(Object[][] lignes) {
+            en_lecture.remove(p);
+            if (lancee != generation) {
+               return;
+            }
+            pages.put(p, lignes);
+            fin_de_page.putAll(fins);
+            int premiere = p * TAILLE_PAGE;
+            int derniere = Math.min(nb_lignes, premiere + TAILLE_PAGE) - 1;
+            if (derniere >= premiere) {
+               fireTableRowsUpdated(premiere, derniere);
+            }
+         }
+
+         @Override
+         protected void echouer(Exception e) {
+            en_lecture.remove(p);
+            System.out.println(e.getMessage());
+         }
+      }.lancer();
+   }
+
+   /** Hors EDT : la page p, lue après la clé cle (fin de la page p - 1) si on la connaît. */
+   private Object[][] lire_page(int p, Object[] cle, Map<Integer, Object[]> fins) throws SQLException {
+      Connection cnx = null;
+      try {
+         cnx = javaconnect.cnx_activite(base);
+         PreparedStatement ps;
+         if (p == 0) {
+            ps = cnx.prepareStatement(sql_debut);
+         } else if (cle != null) {
+            ps = cnx.prepareStatement(sql_suite);
+            int n = 1;
+            for (int k = 0; k < nb_cles; k++) {
+               for (int j = 0; j <= k; j++) {
+                  ps.setObject(n++, cle[j]);
+               }
+            }
+         } else {
+            ps = cnx.prepareStatement(sql_saut);
+            ps.setInt(1, p * TAILLE_PAGE);
+         }
+         return lire_lignes(ps.executeQuery(), p, fins);
+      } finally {
+         javaconnect.liberer(cnx);
+      }
+   }
+
+   private Object[][] ranger_page(int p, ResultSet r) throws SQLException {
+      Object[][] page = lire_lignes(r, p, fin_de_page);
+      pages.put(p, page);
+      return page;
+   }
+
+   private Object[][] lire_lignes(ResultSet r, int p, Map<Integer, Object[]> fins) throws SQLException {
+      List<Object[]> lignes = new ArrayList<>();
+      Object[] cle = null;
+      while (r.next()) {
+         Object[] ligne = new Object[li_cols];
+         for (int i = 0; i < li_cols; i++) {
+            ligne[i] = r.getObject(i + 1);
+         }
+         lignes.add(ligne);
+         cle = new Object[nb_cles];
+         for (int k = 0; k < nb_cles; k++) {
+            cle[k] = r.getObject(li_cols + k + 1);
+         }
+      }
+      if (cle != null) {
+         fins.put(p, cle);
+      }
+      return lignes.toArray(new Object[lignes.size()][]);
+   }
+
 @Override
 
 public Class getColumnClass(int col){
-        return getValueAt(0,col).getClass();
-      
+        return classes[col];
    }
    public boolean isCellEditable(int row, int col){
       if (ibRowNew){
@@ -117,7 +568,7 @@ public Class getColumnClass(int col){
       return dbColNames[col];
    }
    public int getRowCount(){
-      return allRows.size();
+      return nb_lignes;
    } 
 @Override
    public int getColumnCount(){
@@ -125,12 +576,27 @@ public Class getColumnClass(int col){
    }
 @Override
    public Object getValueAt(int arow, int col){
-      row = (Vector) allRows.elementAt(arow);
-      return row.elementAt(col);
+      if (pagine) {
+         Object[][] lignes = page(arow / TAILLE_PAGE);
+         int i = arow % TAILLE_PAGE;
+         return i < lignes.length ? lignes[i][col] : null;
+      }
+      return colonnes[col].get(arow);
    }
    public void setValueAt(Object aValue, int aRow, int aCol) {
-      Vector dataRow = (Vector) allRows.elementAt(aRow);
-      dataRow.setElementAt(aValue, aCol);
+      if (pagine) {
+         Object[][] lignes = pages.get(aRow / TAILLE_PAGE);
+         int i = aRow % TAILLE_PAGE;
+         if (lignes != null && i < lignes.length) {
+            lignes[i][aCol] = aValue;
+            fireTableCellUpdated(aRow, aCol);
+         }
+         return;
+      }
+      if (!colonnes[aCol].set(aRow, aValue)) {
+         colonnes[aCol] = colonnes[aCol].en_objets();
+         colonnes[aCol].set(aRow, aValue);
+      }
       fireTableCellUpdated(aRow, aCol);
    }
    
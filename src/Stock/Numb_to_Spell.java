@@ -7,6 +7,16 @@ import java.text.DecimalFormat;
 import javax.swing.JOptionPane;
 
 /**
+ * Montant en lettres des documents imprimés (fact_spell).
+ *
+ * Les nombres de 0 à 999 sont écrits une fois, au chargement de la classe,
+ * par convertLessThanOneThousand ; convert() et spell() assemblent ensuite
+ * milliards, millions, milliers et centimes dans un StringBuilder propre au
+ * thread, sans DecimalFormat ni découpage de chaîne. Les centimes sont
+ * arrondis comme le faisait DecimalFormat (au plus près, pair en cas
+ * d'égalité, sur la valeur exacte du double). Ce qui sort de ce cadre
+ * (négatifs, moins de 1 Da, plus de Integer.MAX_VALUE Da) passe par
+ * l'ancien calcul, pour rendre le même texte ou la même erreur.
  *
  * @author IT
  */
@@ -155,7 +165,59 @@ private static final String[] uniteNames1 = {
     return resultat;
   }
 
+  /** 0 à 999 en lettres. */
+  private static final String[] MOINS_DE_MILLE = new String[1000];
+
+  static {
+    for (int i = 0; i < MOINS_DE_MILLE.length; i++) {
+      MOINS_DE_MILLE[i] = convertLessThanOneThousand(i);
+    }
+  }
+
+  private static final ThreadLocal<StringBuilder> TEXTE = new ThreadLocal<StringBuilder>() {
+    @Override
+    protected StringBuilder initialValue() {
+      return new StringBuilder(256);
+    }
+  };
+
   public static String convert(long number) {
+    if (number < 0 || number > 999999999999L) {
+      return convert_hors_table(number);
+    }
+    StringBuilder sb = TEXTE.get();
+    sb.setLength(0);
+    return ecrire(sb, number).toString();
+  }
+
+  /** number en lettres à la suite de sb ; 0 à 999 999 999 999. */
+  private static StringBuilder ecrire(StringBuilder sb, long number) {
+    if (number == 0) {
+      return sb.append("zéro");
+    }
+    int lesMilliards = (int) (number / 1000000000L);
+    int lesMillions = (int) (number / 1000000L % 1000);
+    int lesCentMille = (int) (number / 1000L % 1000);
+    int lesMille = (int) (number % 1000);
+    if (lesMilliards > 0) {
+      sb.append(MOINS_DE_MILLE[lesMilliards]).append(lesMilliards == 1 ? " milliard " : " milliards ");
+    }
+    if (lesMillions > 0) {
+      sb.append(MOINS_DE_MILLE[lesMillions]).append(lesMillions == 1 ? " million " : " millions ");
+    }
+    if (lesCentMille == 1) {
+      sb.append("mille ");
+    } else if (lesCentMille > 1) {
+      sb.append(MOINS_DE_MILLE[lesCentMille]).append(" mille ");
+    }
+    return sb.append(MOINS_DE_MILLE[lesMille]);
+  }
+
+  /**
+   * L'ancien calcul, pour les nombres hors de 0 à 999 999 999 999 ; gardé
+   * comme référence par test/Stock/Equivalence_Numb_to_Spell.
+   */
+  static String convert_hors_table(long number) {
     // 0 à 999 999 999 999
     if (number == 0) { return "zéro"; }
 
@@ -262,7 +324,54 @@ private static final String[] uniteNames1 = {
     //System.out.println("*** " + Number_to_Spell.convert(partie2));
   } 
 */
-  public static String spell( double nombre , String txt_spell) { 
+  public static String spell(double nombre, String txt_spell) {
+    long centimes = centimes(nombre);
+    if (centimes < 100 || centimes / 100 > Integer.MAX_VALUE) {
+      return spell_hors_table(nombre, txt_spell);
+    }
+    StringBuilder sb = TEXTE.get();
+    sb.setLength(0);
+    sb.append("*** ");
+    ecrire(sb, centimes / 100).append(" Da et ");
+    return ecrire(sb, centimes % 100).append(" centimes.").toString();
+  }
+
+  /**
+   * nombre * 100 arrondi au plus près, pair en cas d'égalité, calculé sur
+   * la mantisse ; -1 si nombre est négatif, infini, NaN ou trop grand.
+   */
+  static long centimes(double nombre) {
+    if (!(nombre >= 0) || nombre >= 1e15) {
+      return -1;
+    }
+    long bits = Double.doubleToRawLongBits(nombre);
+    int exposant = (int) (bits >>> 52) & 0x7ff;
+    long mantisse = bits & 0xfffffffffffffL;
+    if (exposant == 0) {
+      exposant = 1;
+    } else {
+      mantisse |= 1L << 52;
+    }
+    // nombre = mantisse * 2^decalage
+    int decalage = exposant - 1075;
+    long cents = mantisse * 100;
+    if (decalage >= 0) {
+      return cents << decalage;
+    }
+    if (decalage < -62) {
+      return 0;
+    }
+    long entier = cents >> -decalage;
+    long reste = cents & ((1L << -decalage) - 1);
+    long moitie = 1L << (-decalage - 1);
+    if (reste > moitie || (reste == moitie && (entier & 1) == 1)) {
+      entier++;
+    }
+    return entier;
+  }
+
+  /** L'ancien calcul, par DecimalFormat ; référence des tests comme convert_hors_table. */
+  static String spell_hors_table( double nombre , String txt_spell) { 
                 DecimalFormat patternFormatter = new DecimalFormat ("############.00");
                 String x=patternFormatter.format(nombre).replace(",", ".");
                 //JOptionPane.showMessageDialog(null,x);
@@ -0,0 +1,149 @@
+/*
+ * Attribution des numéros de facture, de BL et de proforma.
+ */
+package Stock;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Les compteurs n_fact, n_bl et n_prof de mysql.stock_table_parameter
+ * contiennent le prochain numéro libre de l'activité. prendre() l'incrémente
+ * et le lit en une seule requête (LAST_INSERT_ID(n+k) est propre à la
+ * connexion), sans verrou applicatif : plusieurs postes peuvent facturer en
+ * même temps sans doublon.
+ *
+ * -Dstock.numeros.bloc=N réserve N numéros à la fois pour le poste ; les
+ * numéros non utilisés à la fermeture de l'application sont perdus et les
+ * numéros des différents postes s'entrelacent. 1 par défaut.
+ *
+ * @author IT
+ */
+public class Numerotation {
+
+    static final int BLOC = Math.max(1, Integer.getInteger("stock.numeros.bloc", 1));
+    static final String[] COMPTEURS = {"n_fact", "n_bl", "n_prof"};
+
+    /** Numéros réservés par ce poste : {prochain, dernier}, clé activité|compteur. */
+    private static final Map<String, int[]> blocs = new HashMap<>();
+
+    /** Compteur de stock_table_parameter pour le paramètre d'écran (stock_f, stock_bl ou ""). */
+    public static String compteur(String parametre) {
+        switch (parametre) {
+            case "stock_f":
+                return "n_fact";
+            case "stock_bl":
+                return "n_bl";
+            default:
+                return "n_prof";
+        }
+    }
+
+    /** Table maître du compteur. */
+    static String table(String compteur) {
+        switch (compteur) {
+            case "n_fact":
+                return "fact";
+            case "n_bl":
+                return "bl";
+            default:
+                return "fprof";
+        }
+    }
+
+    /** Numéro du nouveau document. */
+    public static int prendre(String base, String compteur) throws SQLException {
+        if (BLOC > 1) {
+            synchronized (blocs) {
+                int[] b = blocs.get(base + "|" + compteur);
+                if (b != null && b[0] <= b[1]) {
+                    return b[0]++;
+                }
+            }
+        }
+        int fin = reserver(base, compteur, BLOC);
+        int debut = fin - BLOC;
+        if (BLOC > 1) {
+            synchronized (blocs) {
+                blocs.put(base + "|" + compteur, new int[]{debut + 1, fin - 1});
+            }
+        }
+        return debut;
+    }
+
+    /**
+     * Rend le numéro d'un document abandonné ou supprimé, s'il est encore le
+     * dernier attribué ; sinon il reste un trou dans la numérotation.
+     */
+    public static void rendre(String base, String compteur, int numero) throws SQLException {
+        if (BLOC > 1) {
+            synchronized (blocs) {
+                int[] b = blocs.get(base + "|" + compteur);
+                if (b != null && b[0] == numero + 1) {
+                    b[0]--;
+                }
+            }
+            return;
+        }
+        String sql = "update mysql.stock_table_parameter set " + compteur + "=" + compteur
+                + "-1 where code_activite=? and " + compteur + "=?";
+        try (Connection cnx = javaconnect.cnx_mysql();
+             PreparedStatement St = cnx.prepareStatement(sql)) {
+            St.setString(1, base);
+            St.setInt(2, numero + 1);
+            St.executeUpdate();
+        }
+    }
+
+    /**
+     * Recale les trois compteurs sur les documents de l'exercice en cours,
+     * après un changement d'exercice. Lit max(nfact), servi par la clé.
+     */
+    public static void recaler(String base) throws SQLException {
+        synchronized (blocs) {
+            for (String c : COMPTEURS) {
+                blocs.remove(base + "|" + c);
+            }
+        }
+        int[] suivants = new int[COMPTEURS.length];
+        try (Connection cnx = javaconnect.cnx_activite(base);
+             Statement St = cnx.createStatement()) {
+            for (int i = 0; i < COMPTEURS.length; i++) {
+                ResultSet Rs = St.executeQuery("select coalesce(max(nfact), 0) + 1 from " + table(COMPTEURS[i]));
+                Rs.next();
+                suivants[i] = Rs.getInt(1);
+            }
+        }
+        String sql = "update mysql.stock_table_parameter set n_fact=?, n_bl=?, n_prof=? where code_activite=?";
+        try (Connection cnx = javaconnect.cnx_mysql();
+             PreparedStatement St = cnx.prepareStatement(sql)) {
+            for (int i = 0; i < suivants.length; i++) {
+                St.setInt(i + 1, suivants[i]);
+            }
+            St.setString(4, base);
+            St.executeUpdate();
+        }
+    }
+
+    /** Ajoute k au compteur et rend sa nouvelle valeur. */
+    private static int reserver(String base, String compteur, int k) throws SQLException {
+        String sql = "update mysql.stock_table_parameter set " + compteur + "=LAST_INSERT_ID(" + compteur
+                + "+" + k + ") where code_activite=?";
+        try (Connection cnx = javaconnect.cnx_mysql();
+             PreparedStatement St = cnx.prepareStatement(sql);
+             Statement St1 = cnx.createStatement()) {
+            St.setString(1, base);
+            if (St.executeUpdate() == 0) {
+                throw new SQLException("Activité " + base + " absente de stock_table_parameter");
+            }
+            ResultSet Rs = St1.executeQuery("select LAST_INSERT_ID()");
+            Rs.next();
+            return Rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Cache de la table mysql.stock_table_parameter.
+ */
+package Stock;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ligne de stock_table_parameter d'une activité, lue une seule fois puis
+ * gardée en mémoire. Il faut appeler invalider() à chaque changement
+ * d'exercice (select_an, Gestion_Stock.nouvel_an, choix de l'année).
+ *
+ * controle_stock vient de la colonne facultative du même nom (1 : refuser
+ * une vente que le stock ne couvre pas) ; sans la colonne, pas de contrôle.
+ *
+ * @author IT
+ */
+public class Param_Activite {
+
+    private static final ConcurrentHashMap<String, Param_Activite> cache = new ConcurrentHashMap<>();
+
+    public final String code_activite;
+    public final String db_name;
+    public final String lieu_backup;
+    public final boolean controle_stock;
+
+    private Param_Activite(String xcode_activite, String xdb_name, String xlieu_backup, boolean xcontrole_stock) {
+        code_activite = xcode_activite;
+        db_name = xdb_name;
+        lieu_backup = xlieu_backup;
+        controle_stock = xcontrole_stock;
+    }
+
+    public static Param_Activite get(String base) throws SQLException {
+        Param_Activite p = cache.get(base);
+        if (p == null) {
+            p = charger(base);
+            if (p == null) {
+                return new Param_Activite(base, "", "", false);
+            }
+            cache.put(base, p);
+        }
+        return p;
+    }
+
+    /** Exercice en cours de l'activité ("2024"). */
+    public static String db_name(String base) throws SQLException {
+        return get(base).db_name;
+    }
+
+    /** Schéma MySQL de l'exercice en cours ("2024_bu01"). */
+    public static String schema(String base) throws SQLException {
+        return get(base).db_name + "_" + base;
+    }
+
+    /**
+     * Oublie la ligne de l'activité, ferme les connexions libres de
+     * l'ancien exercice et oublie ses index, ses listes de référence et
+     * son en-tête d'impression.
+     */
+    public static void invalider(String base) {
+        Param_Activite p = cache.remove(base);
+        if (p != null) {
+            Pool_Cnx.vider(p.db_name + "_" + base);
+            Index_Codes.oublier(p.db_name + "_" + base);
+            Index_Articles.oublier(p.db_name + "_" + base);
+            Listes_Reference.oublier(p.db_name + "_" + base);
+            Entete_Activite.oublier(p.db_name + "_" + base);
+        }
+    }
+
+    private static Param_Activite charger(String base) throws SQLException {
+        String sql = "select * from stock_table_parameter where code_activite=?";
+        try (Connection cnx = javaconnect.cnx_mysql();
+             PreparedStatement St = cnx.prepareStatement(sql)) {
+            St.setString(1, base);
+            ResultSet Rs = St.executeQuery();
+            if (Rs.next()) {
+                return new Param_Activite(base, Rs.getString("db_name"), Rs.getString("lieu_backup"), controle_stock(Rs));
+            }
+        }
+        return null;
+    }
+
+    private static boolean controle_stock(ResultSet Rs) {
+        try {
+            return Rs.getInt("controle_stock") == 1;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
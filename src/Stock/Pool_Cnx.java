@@ -0,0 +1,343 @@
+/*
+ * Pool de connexions MySQL partagé par tous les écrans de l'application.
+ */
+package Stock;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Une file de connexions libres par schéma ("mysql", "2024_bu01", ...), donc
+ * par activité et par exercice. Taille maximale par schéma, éviction des
+ * connexions inactives et validation à l'emprunt.
+ *
+ * Les écrans gardent leur connexion de l'ouverture à dispose() : la taille
+ * maximale couvre ECRANS écrans ouverts plus les travaux de fond (FOND).
+ * Elle se règle par -Dstock.pool.taille=N, l'attente d'une connexion libre
+ * par -Dstock.pool.attente=secondes. Les connexions ne sont ouvertes qu'à
+ * la demande : la taille maximale n'est qu'un plafond.
+ * Le close() de la connexion empruntée la rend au pool sans la fermer.
+ * Ses Statement sont mesurés par Mesures_Sql.
+ *
+ * @author IT
+ */
+public class Pool_Cnx {
+
+    static final String SERVEUR = "jdbc:mysql://localhost:3306/";
+    static final String USER_BD = "root";
+    static final String PASSWD_BD = "";
+    /** Écrans ouverts en même temps sur une activité. */
+    static final int ECRANS = 32;
+    /**
+     * Tache_Bd, chargements de Listes_Reference, lectures parallèles de
+     * Chiffre_Affaires, préchargements d'Index_Articles et d'Entete_Activite,
+     * Enregistrement_Document.
+     */
+    static final int FOND = Tache_Bd.TAILLE_POOL + 4 + Chiffre_Affaires.CUMULS.length + 4;
+    static final int TAILLE_MAX = Math.max(1, Integer.getInteger("stock.pool.taille", ECRANS + FOND));
+    static final long INACTIF_MAX = 5 * 60 * 1000L;
+    static final long ATTENTE_MAX = Integer.getInteger("stock.pool.attente", 15) * 1000L;
+    static final int VALIDATION_SEC = 2;
+    /**
+     * Requêtes préparées côté serveur et gardées par connexion physique ;
+     * lots d'INSERT envoyés en une seule requête multi-lignes.
+     */
+    static final String OPTIONS = "useServerPrepStmts=true&cachePrepStmts=true"
+            + "&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048&rewriteBatchedStatements=true";
+
+    private static final Map<String, Pool_Cnx> pools = new HashMap<>();
+    private static Timer eviction;
+
+    private final String schema;
+    private final LinkedList<Libre> libres = new LinkedList<>();
+    private final List<Emprunt> emprunts = new ArrayList<>();
+    private int ouvertes = 0;
+
+    static {
+        try {
+            Class.forName("com.mysql.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            System.out.println("Cannot Load Driver!");
+        }
+    }
+
+    private Pool_Cnx(String xschema) {
+        schema = xschema;
+    }
+
+    /**
+     * Emprunte une connexion sur le schéma donné (options JDBC acceptées après
+     * un "?"). Il faut la rendre par close() ou javaconnect.liberer().
+     */
+    public static Connection emprunter(String schema) throws SQLException {
+        Pool_Cnx pool;
+        synchronized (pools) {
+            pool = pools.get(schema);
+            if (pool == null) {
+                pool = new Pool_Cnx(schema);
+                pools.put(schema, pool);
+            }
+            if (eviction == null) {
+                eviction = new Timer("Pool_Cnx-eviction", true);
+                eviction.schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        evincer();
+                    }
+                }, 60 * 1000L, 60 * 1000L);
+            }
+        }
+        return pool.emprunter();
+    }
+
+    /**
+     * Ferme les connexions libres des schémas commençant par le préfixe
+     * (changement d'exercice, sortie de l'application).
+     */
+    public static void vider(String prefixe) {
+        List<Pool_Cnx> liste;
+        synchronized (pools) {
+            liste = new ArrayList<>(pools.values());
+        }
+        for (Pool_Cnx pool : liste) {
+            if (pool.schema.startsWith(prefixe)) {
+                pool.fermer_libres(0);
+            }
+        }
+    }
+
+    private static void evincer() {
+        List<Pool_Cnx> liste;
+        synchronized (pools) {
+            liste = new ArrayList<>(pools.values());
+        }
+        for (Pool_Cnx pool : liste) {
+            pool.recuperer_abandons();
+            pool.fermer_libres(INACTIF_MAX);
+        }
+    }
+
+    private Connection emprunter() throws SQLException {
+        long limite = System.currentTimeMillis() + ATTENTE_MAX;
+        while (true) {
+            Connection physique = null;
+            synchronized (this) {
+                while (libres.isEmpty() && ouvertes >= TAILLE_MAX) {
+                    long reste = limite - System.currentTimeMillis();
+                    if (reste <= 0) {
+                        throw new SQLException("Plus de connexion disponible sur " + schema + " (" + TAILLE_MAX
+                                + " en cours, -Dstock.pool.taille pour augmenter)");
+                    }
+                    try {
+                        wait(reste);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Attente de connexion interrompue", e);
+                    }
+                }
+                if (!libres.isEmpty()) {
+                    physique = libres.removeFirst().cnx;
+                } else {
+                    ouvertes++;
+                }
+            }
+            if (physique == null) {
+                try {
+                    physique = DriverManager.getConnection(url(), USER_BD, PASSWD_BD);
+                    Mesures_Sql.connexion_ouverte(schema);
+                } catch (SQLException e) {
+                    abandonner(null);
+                    throw e;
+                }
+            } else if (!valide(physique)) {
+                abandonner(physique);
+                continue;
+            }
+            Connection cnx = envelopper(physique);
+            synchronized (this) {
+                emprunts.add(new Emprunt(cnx, physique));
+            }
+            Mesures_Sql.connexion_empruntee();
+            return cnx;
+        }
+    }
+
+    private String url() {
+        return SERVEUR + schema + (schema.contains("?") ? "&" : "?") + OPTIONS;
+    }
+
+    private static boolean valide(Connection physique) {
+        try {
+            return physique.isValid(VALIDATION_SEC);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void rendre(Connection physique, List<Statement> statements) {
+        for (Statement st : statements) {
+            try { st.close(); } catch (SQLException e) { }
+        }
+        try {
+            if (!physique.getAutoCommit()) {
+                physique.rollback();
+                physique.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            abandonner(physique);
+            retirer_emprunt(physique);
+            return;
+        }
+        synchronized (this) {
+            retirer_emprunt(physique);
+            libres.addFirst(new Libre(physique));
+            notifyAll();
+        }
+    }
+
+    private synchronized void retirer_emprunt(Connection physique) {
+        for (Iterator<Emprunt> it = emprunts.iterator(); it.hasNext();) {
+            if (it.next().physique == physique) {
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    private void abandonner(Connection physique) {
+        if (physique != null) {
+            try { physique.close(); } catch (SQLException e) { }
+        }
+        synchronized (this) {
+            ouvertes--;
+            notifyAll();
+        }
+    }
+
+    /** Connexions dont l'écran a disparu sans les rendre. */
+    private void recuperer_abandons() {
+        List<Connection> perdues = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Emprunt> it = emprunts.iterator(); it.hasNext();) {
+                Emprunt e = it.next();
+                if (e.proxy.get() == null) {
+                    perdues.add(e.physique);
+                    it.remove();
+                }
+            }
+        }
+        for (Connection physique : perdues) {
+            abandonner(physique);
+        }
+    }
+
+    private void fermer_libres(long inactif) {
+        long maintenant = System.currentTimeMillis();
+        List<Connection> a_fermer = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Libre> it = libres.iterator(); it.hasNext();) {
+                Libre l = it.next();
+                if (maintenant - l.depuis >= inactif) {
+                    a_fermer.add(l.cnx);
+                    it.remove();
+                }
+            }
+        }
+        for (Connection physique : a_fermer) {
+            abandonner(physique);
+        }
+    }
+
+    private Connection envelopper(final Connection physique) {
+        return (Connection) Proxy.newProxyInstance(Pool_Cnx.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new InvocationHandler() {
+            // ouverts et pas encore fermés par l'appelant
+            private final List<Statement> statements = new ArrayList<>();
+            private boolean rendue = false;
+
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                String nom = m.getName();
+                switch (nom) {
+                    case "close":
+                        if (!rendue) {
+                            rendue = true;
+                            List<Statement> ouverts;
+                            synchronized (statements) {
+                                ouverts = new ArrayList<>(statements);
+                                statements.clear();
+                            }
+                            rendre(physique, ouverts);
+                        }
+                        return null;
+                    case "isClosed":
+                        return rendue || physique.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Pool_Cnx[" + schema + "]";
+                }
+                if (rendue) {
+                    throw new SQLException("Connexion déjà rendue au pool");
+                }
+                try {
+                    Object resultat = m.invoke(physique, args);
+                    if (resultat instanceof Statement) {
+                        final Statement st = (Statement) resultat;
+                        synchronized (statements) {
+                            statements.add(st);
+                        }
+                        String sql = nom.startsWith("prepare") ? (String) args[0] : null;
+                        return Mesures_Sql.envelopper(st, sql, new Runnable() {
+                            @Override
+                            public void run() {
+                                synchronized (statements) {
+                                    statements.remove(st);
+                                }
+                            }
+                        });
+                    }
+                    return resultat;
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        });
+    }
+
+    private static class Libre {
+        final Connection cnx;
+        final long depuis = System.currentTimeMillis();
+
+        Libre(Connection xcnx) {
+            cnx = xcnx;
+        }
+    }
+
+    private static class Emprunt {
+        final WeakReference<Connection> proxy;
+        final Connection physique;
+
+        Emprunt(Connection xproxy, Connection xphysique) {
+            proxy = new WeakReference<>(xproxy);
+            physique = xphysique;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Recherche d'article à la frappe dans la liste des désignations.
+ */
+package Stock;
+
+import java.awt.AWTKeyStroke;
+import java.awt.Dimension;
+import java.awt.KeyboardFocusManager;
+import java.awt.Point;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+import javax.swing.JComboBox;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.ListSelectionModel;
+import javax.swing.Popup;
+import javax.swing.PopupFactory;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+/**
+ * Remplace le chargement de toutes les désignations dans la liste
+ * déroulante : la liste ne contient que les TOP_N articles trouvés par
+ * Index_Articles pour la saisie en cours, affichés sous la zone de saisie.
+ * Haut/Bas déplacent la sélection, Entrée ou un clic choisit l'article.
+ *
+ * Choisir un article le sélectionne dans la liste et prévient les
+ * PopupMenuListener de l'écran, comme la fermeture de la liste déroulante :
+ * l'écran lit alors le prix, la TVA et le stock comme avant.
+ *
+ * @author IT
+ */
+public class Recherche_Article {
+
+    static final int TOP_N = Integer.getInteger("stock.articles.propositions", 50);
+    static final int LIGNES_VISIBLES = 12;
+
+    /** Les articles proposés ; la sélection est la saisie, indépendante du contenu. */
+    private static class Propositions extends AbstractListModel<Object> implements ComboBoxModel<Object> {
+        private static final long serialVersionUID = 1L;
+        private List<Index_Articles.Article> articles = new ArrayList<>();
+        private Object choisi = "";
+
+        void remplacer(List<Index_Articles.Article> nouveaux) {
+            int avant = articles.size();
+            articles = nouveaux;
+            if (avant > 0) {
+                fireIntervalRemoved(this, 0, avant - 1);
+            }
+            if (!nouveaux.isEmpty()) {
+                fireIntervalAdded(this, 0, nouveaux.size() - 1);
+            }
+        }
+
+        @Override
+        public int getSize() {
+            return articles.size();
+        }
+
+        @Override
+        public Object getElementAt(int i) {
+            return articles.get(i);
+        }
+
+        @Override
+        public void setSelectedItem(Object o) {
+            choisi = o == null ? "" : o.toString();
+            fireContentsChanged(this, -1, -1);
+        }
+
+        @Override
+        public Object getSelectedItem() {
+            return choisi;
+        }
+    }
+
+    private final JComboBox<Object> combo;
+    private final String base;
+    private final JTextField saisie;
+    private final Propositions propositions = new Propositions();
+    private final JList<Object> liste = new JList<>(propositions);
+    private final JScrollPane defilement = new JScrollPane(liste);
+    private Popup popup;
+    private boolean choix_en_cours;
+
+    @SuppressWarnings("unchecked")
+    private Recherche_Article(JComboBox<?> xcombo, String xbase) {
+        combo = (JComboBox<Object>) xcombo;
+        base = xbase;
+        combo.setEditable(true);
+        combo.setModel(propositions);
+        saisie = (JTextField) combo.getEditor().getEditorComponent();
+        liste.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        liste.setFocusable(false);
+        liste.setPrototypeCellValue("XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX");
+        liste.setFont(saisie.getFont());
+        defilement.setFocusable(false);
+        defilement.getVerticalScrollBar().setFocusable(false);
+
+        // Entrée choisit l'article avant de passer au champ suivant.
+        Set<AWTKeyStroke> suivant = new HashSet<>(saisie.getFocusTraversalKeys(KeyboardFocusManager.FORWARD_TRAVERSAL_KEYS));
+        final boolean entree_suivant = suivant.remove(KeyStroke.getKeyStroke("ENTER"));
+        saisie.setFocusTraversalKeys(KeyboardFocusManager.FORWARD_TRAVERSAL_KEYS, suivant);
+
+        saisie.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                modifiee();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                modifiee();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        saisie.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                    case KeyEvent.VK_UP:
+                        if (popup != null) {
+                            deplacer(e.getKeyCode() == KeyEvent.VK_DOWN ? 1 : -1);
+                            e.consume();
+                        }
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        if (popup != null && liste.getSelectedIndex() >= 0) {
+                            choisir(liste.getSelectedIndex());
+                        }
+                        if (entree_suivant) {
+                            saisie.transferFocus();
+                        }
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        if (popup != null) {
+                            fermer();
+                            e.consume();
+                        }
+                        break;
+                    default:
+                }
+            }
+        });
+        saisie.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                fermer();
+            }
+        });
+        liste.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int i = liste.locationToIndex(e.getPoint());
+                if (i >= 0) {
+                    choisir(i);
+                }
+            }
+        });
+    }
+
+    /** Branche la recherche sur la liste des désignations d'un écran de saisie. */
+    public static Recherche_Article installer(JComboBox<?> combo, String base) {
+        return new Recherche_Article(combo, base);
+    }
+
+    private void modifiee() {
+        if (choix_en_cours || !saisie.isFocusOwner()) {
+            return;
+        }
+        // Le document ne doit pas être relu pendant sa propre notification.
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                proposer(saisie.getText());
+            }
+        });
+    }
+
+    private void proposer(String texte) {
+        List<Index_Articles.Article> trouves;
+        try {
+            trouves = Index_Articles.chercher(base, texte, TOP_N);
+        } catch (Exception e) {
+            trouves = new ArrayList<>();
+        }
+        propositions.remplacer(trouves);
+        fermer();
+        if (trouves.isEmpty() || !saisie.isShowing()) {
+            return;
+        }
+        liste.setVisibleRowCount(Math.min(LIGNES_VISIBLES, trouves.size()));
+        liste.setSelectedIndex(0);
+        Dimension d = defilement.getPreferredSize();
+        defilement.setPreferredSize(new Dimension(Math.max(combo.getWidth(), d.width), d.height));
+        Point p = saisie.getLocationOnScreen();
+        popup = PopupFactory.getSharedInstance().getPopup(saisie, defilement, p.x, p.y + saisie.getHeight());
+        popup.show();
+        defilement.setPreferredSize(null);
+    }
+
+    private void deplacer(int pas) {
+        int i = Math.max(0, Math.min(propositions.getSize() - 1, liste.getSelectedIndex() + pas));
+        liste.setSelectedIndex(i);
+        liste.ensureIndexIsVisible(i);
+    }
+
+    private void choisir(int i) {
+        Index_Articles.Article a = (Index_Articles.Article) propositions.getElementAt(i);
+        fermer();
+        choix_en_cours = true;
+        try {
+            combo.setSelectedItem(a.designation);
+        } finally {
+            choix_en_cours = false;
+        }
+        combo.firePopupMenuWillBecomeInvisible();
+    }
+
+    private void fermer() {
+        if (popup != null) {
+            popup.hide();
+            popup = null;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Exécution des accès à la base hors de l'EDT.
+ */
+package Stock;
+
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+
+/**
+ * Travail sur la base lancé depuis un écran : executer() tourne sur un des
+ * TAILLE_POOL threads de fond, puis terminer() ou echouer() sur l'EDT.
+ * Les tâches d'une fenêtre sont annulées par annuler(fenetre) dans son
+ * dispose() ; une tâche annulée n'appelle ni terminer() ni echouer().
+ *
+ * executer() ne doit ni toucher aux composants Swing ni utiliser le
+ * Statement de l'écran : les valeurs saisies sont lues avant lancer() et
+ * la tâche emprunte sa propre connexion au pool.
+ *
+ * @author IT
+ */
+public abstract class Tache_Bd<T> extends SwingWorker<T, Void> {
+
+    static final int TAILLE_POOL = 4;
+    static final int FILE_MAX = 100;
+
+    private static final ThreadPoolExecutor executeur = new ThreadPoolExecutor(
+            TAILLE_POOL, TAILLE_POOL, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(FILE_MAX), new ThreadFactory() {
+        private final AtomicInteger numero = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Tache_Bd-" + numero.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private static final Map<Window, List<Tache_Bd<?>>> en_cours = new WeakHashMap<>();
+
+    static {
+        executeur.allowCoreThreadTimeOut(true);
+    }
+
+    private final Window fenetre;
+    private final String appelant;
+
+    protected Tache_Bd(Window xfenetre) {
+        fenetre = xfenetre;
+        appelant = Mesures_Sql.appelant();
+    }
+
+    /** Hors EDT. */
+    protected abstract T executer() throws Exception;
+
+    /** Sur l'EDT, avec le résultat de executer(). */
+    protected void terminer(T resultat) {
+    }
+
+    /** Sur l'EDT, si executer() a levé une exception. */
+    protected void echouer(Exception e) {
+        JOptionPane.showMessageDialog(null, "Erreur d'accès à la base\n" + e.getMessage());
+    }
+
+    public final Tache_Bd<T> lancer() {
+        synchronized (en_cours) {
+            List<Tache_Bd<?>> taches = en_cours.get(fenetre);
+            if (taches == null) {
+                taches = new ArrayList<>();
+                en_cours.put(fenetre, taches);
+            }
+            taches.add(this);
+        }
+        try {
+            executeur.execute(this);
+        } catch (RejectedExecutionException e) {
+            retirer();
+            echouer(new Exception("Trop de traitements en attente, réessayer", e));
+        }
+        return this;
+    }
+
+    /** Annule les tâches en cours ou en attente de la fenêtre. */
+    public static void annuler(Window fenetre) {
+        List<Tache_Bd<?>> taches;
+        synchronized (en_cours) {
+            taches = en_cours.remove(fenetre);
+        }
+        if (taches != null) {
+            for (Tache_Bd<?> t : taches) {
+                t.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    protected final T doInBackground() throws Exception {
+        Mesures_Sql.contexte(appelant);
+        try {
+            return executer();
+        } finally {
+            Mesures_Sql.contexte(null);
+        }
+    }
+
+    @Override
+    protected final void done() {
+        retirer();
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            terminer(get());
+        } catch (CancellationException e) {
+            // fenêtre fermée entre-temps
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            echouer(cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+
+    private void retirer() {
+        synchronized (en_cours) {
+            List<Tache_Bd<?>> taches = en_cours.get(fenetre);
+            if (taches != null) {
+                taches.remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Sauvegarde d'un document hors de l'EDT.
+ */
+package Stock;
+
+import java.awt.Cursor;
+import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+import javax.swing.WindowConstants;
+
+/**
+ * Passe un Enregistrement_Document sur un thread de Tache_Bd. L'écran lit
+ * ses champs dans le document avant lancer() ; enregistre() (document
+ * validé) ou refuse() (transaction annulée) font la suite sur l'EDT :
+ * montant en lettres, impression, numéro rendu...
+ *
+ * Pendant la transaction, l'écran est désactivé et ne se ferme pas : ses
+ * boutons Quitter et sa fermeture rendraient le stock et le numéro d'un
+ * document en cours de validation. Les autres fenêtres restent utilisables.
+ * La tâche n'est pas annulée par le dispose() de l'écran.
+ *
+ * @author IT
+ */
+public abstract class Tache_Enregistrement extends Tache_Bd<Void> {
+
+    private final JFrame ecran;
+    private final Enregistrement_Document doc;
+    private final int fermeture;
+
+    protected Tache_Enregistrement(JFrame xecran, Enregistrement_Document xdoc) {
+        super(null);
+        ecran = xecran;
+        doc = xdoc;
+        fermeture = ecran.getDefaultCloseOperation();
+        ecran.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        ecran.setEnabled(false);
+        ecran.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+    }
+
+    @Override
+    protected final Void executer() throws Exception {
+        doc.executer();
+        return null;
+    }
+
+    /** Sur l'EDT, le document validé. */
+    protected abstract void enregistre();
+
+    /** Sur l'EDT, rien n'a été écrit. */
+    protected void refuse(Exception e) {
+        JOptionPane.showMessageDialog(null, "Erreur dans l'insertion table\n" + e.getMessage());
+    }
+
+    @Override
+    protected final void terminer(Void resultat) {
+        rendre_ecran();
+        enregistre();
+    }
+
+    @Override
+    protected final void echouer(Exception e) {
+        rendre_ecran();
+        refuse(e);
+    }
+
+    private void rendre_ecran() {
+        ecran.setCursor(Cursor.getDefaultCursor());
+        ecran.setEnabled(true);
+        ecran.setDefaultCloseOperation(fermeture);
+        ecran.toFront();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Remplissage d'un état Jasper hors de l'EDT.
+ */
+package Stock;
+
+import java.awt.BorderLayout;
+import java.awt.Window;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.sql.Connection;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperPrintManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.AsynchronousFillHandle;
+import net.sf.jasperreports.engine.fill.AsynchronousFilllListener;
+import net.sf.jasperreports.engine.fill.FillListener;
+import net.sf.jasperreports.view.JasperViewer;
+
+/**
+ * Prend l'état compilé chez Etats et le remplit sur une connexion
+ * empruntée au pool, puis l'affiche dans le JasperViewer sur l'EDT.
+ * La requête de l'écran passe dans hm sous Etats.REQUETE.
+ *
+ * Le remplissage passe par un AsynchronousFillHandle : il peut être
+ * arrêté en cours de route (bouton Annuler, fermeture de la fenêtre par
+ * Tache_Bd.annuler) et chaque page produite est annoncée par la propriété
+ * PAGES de la tâche, sur l'EDT. Un état qui dure plus de SUIVI_APRES ms
+ * affiche ce suivi dans une petite fenêtre au-dessus de l'écran.
+ *
+ * pdf() et imprimante() remplacent l'affichage : l'état rempli est
+ * exporté ou envoyé à l'imprimante hors de l'EDT, sans JasperViewer.
+ *
+ * @author IT
+ */
+public class Tache_Impression extends Tache_Bd<JasperPrint> {
+
+    /** Propriété annoncée à chaque page produite (nombre de pages). */
+    public static final String PAGES = "pages";
+
+    static final int SUIVI_APRES = 700;
+
+    private final Window fenetre;
+    protected final String etat;
+    private final Map<String, Object> hm;
+    protected final String schema;
+    private String pdf;
+    private boolean imprimante, dialogue;
+    private volatile AsynchronousFillHandle remplissage;
+    private int pages;
+    private JDialog suivi;
+
+    /** etat : nom du .jrxml (voir Etats) ; schema : Param_Activite.schema(base), ou "mysql". */
+    public Tache_Impression(Window xfenetre, String xetat, Map<String, Object> xhm, String xschema) {
+        super(xfenetre);
+        fenetre = xfenetre;
+        etat = xetat;
+        hm = xhm;
+        schema = xschema;
+        suivre();
+    }
+
+    /** Exporte l'état dans ce fichier PDF au lieu de l'afficher. */
+    public Tache_Impression pdf(String fichier) {
+        pdf = fichier;
+        return this;
+    }
+
+    /** Envoie l'état à l'imprimante au lieu de l'afficher ; dialogue : choix de l'imprimante. */
+    public Tache_Impression imprimante(boolean xdialogue) {
+        imprimante = true;
+        dialogue = xdialogue;
+        return this;
+    }
+
+    @Override
+    protected JasperPrint executer() throws Exception {
+        JasperPrint jp = produire();
+        if (pdf != null) {
+            JasperExportManager.exportReportToPdfFile(jp, pdf);
+        }
+        if (imprimante) {
+            JasperPrintManager.printReport(jp, dialogue);
+        }
+        return jp;
+    }
+
+    /** L'état rempli, hors EDT. */
+    protected JasperPrint produire() throws Exception {
+        JasperReport jr = Etats.etat(etat);
+        try (Connection cnx = javaconnect.cnx_schema(schema)) {
+            return remplir(AsynchronousFillHandle.createHandle(jr, hm, cnx));
+        }
+    }
+
+    /** Lance le remplissage et l'attend ; l'arrête si la tâche est annulée. */
+    protected JasperPrint remplir(AsynchronousFillHandle handle) throws Exception {
+        final CountDownLatch fini = new CountDownLatch(1);
+        final Object[] resultat = new Object[1];
+        handle.addListener(new AsynchronousFilllListener() {
+            @Override
+            public void reportFinished(JasperPrint jp) {
+                resultat[0] = jp;
+                fini.countDown();
+            }
+
+            @Override
+            public void reportCancelled() {
+                fini.countDown();
+            }
+
+            @Override
+            public void reportFillError(Throwable t) {
+                resultat[0] = t;
+                fini.countDown();
+            }
+        });
+        handle.addFillListener(new FillListener() {
+            @Override
+            public void pageGenerated(JasperPrint jp, int page) {
+                firePropertyChange(PAGES, pages, ++pages);
+            }
+
+            @Override
+            public void pageUpdated(JasperPrint jp, int page) {
+            }
+        });
+        remplissage = handle;
+        handle.startFill();
+        try {
+            fini.await();
+        } catch (InterruptedException e) {
+            try {
+                handle.cancellFill();
+            } catch (JRException ex) {
+                // déjà arrêté par arreter()
+            }
+            throw e;
+        } finally {
+            remplissage = null;
+        }
+        if (resultat[0] instanceof Throwable) {
+            Throwable t = (Throwable) resultat[0];
+            throw t instanceof Exception ? (Exception) t : new JRException(t);
+        }
+        if (resultat[0] == null) {
+            throw new InterruptedException("Impression annulée");
+        }
+        return (JasperPrint) resultat[0];
+    }
+
+    @Override
+    protected void terminer(JasperPrint jp) {
+        if (pdf == null && !imprimante) {
+            JasperViewer.viewReport(jp, false);
+        } else if (pdf != null) {
+            JOptionPane.showMessageDialog(null, "Etat enregistré dans " + pdf);
+        }
+    }
+
+    @Override
+    protected void echouer(Exception e) {
+        JOptionPane.showMessageDialog(null, "Erreur impression " + e.getMessage());
+    }
+
+    /** Arrête le remplissage en cours (bouton Annuler du suivi). */
+    public void arreter() {
+        AsynchronousFillHandle h = remplissage;
+        if (h != null) {
+            try {
+                h.cancellFill();
+            } catch (JRException e) {
+                // remplissage déjà terminé
+            }
+        }
+        cancel(true);
+    }
+
+    /** Fenêtre de suivi, ouverte si l'état n'est pas prêt après SUIVI_APRES ms. */
+    private void suivre() {
+        final JLabel pages = new JLabel("Préparation de l'état...");
+        final Timer ouvrir = new Timer(SUIVI_APRES, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (isDone()) {
+                    return;
+                }
+                suivi = new JDialog(fenetre, "Impression");
+                JButton annuler = new JButton("Annuler");
+                annuler.addActionListener(new ActionListener() {
+                    @Override
+                    public void actionPerformed(ActionEvent e) {
+                        arreter();
+                    }
+                });
+                pages.setBorder(BorderFactory.createEmptyBorder(10, 20, 10, 20));
+                suivi.add(pages, BorderLayout.CENTER);
+                suivi.add(annuler, BorderLayout.SOUTH);
+                suivi.pack();
+                suivi.setLocationRelativeTo(fenetre);
+                suivi.setVisible(true);
+            }
+        });
+        ouvrir.setRepeats(false);
+        ouvrir.start();
+        addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent e) {
+                if (PAGES.equals(e.getPropertyName())) {
+                    pages.setText("Préparation de l'état : " + e.getNewValue() + " page(s)");
+                } else if ("state".equals(e.getPropertyName()) && e.getNewValue() == SwingWorker.StateValue.DONE) {
+                    ouvrir.stop();
+                    if (suivi != null) {
+                        suivi.dispose();
+                        suivi = null;
+                    }
+                }
+            }
+        });
+    }
+}
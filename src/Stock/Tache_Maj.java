@@ -0,0 +1,39 @@
+/*
+ * Mise à jour de la base hors de l'EDT.
+ */
+package Stock;
+
+import java.awt.Window;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Exécute les requêtes de mise à jour, dans l'ordre, sur une connexion de
+ * l'exercice en cours empruntée au pool. Le résultat est le nombre total de
+ * lignes touchées.
+ *
+ * @author IT
+ */
+public class Tache_Maj extends Tache_Bd<Integer> {
+
+    private final String base;
+    private final String[] requetes;
+
+    public Tache_Maj(Window fenetre, String xbase, String... xrequetes) {
+        super(fenetre);
+        base = xbase;
+        requetes = xrequetes;
+    }
+
+    @Override
+    protected Integer executer() throws Exception {
+        int n = 0;
+        try (Connection cnx = javaconnect.cnx_activite(base);
+             Statement St = cnx.createStatement()) {
+            for (String query : requetes) {
+                n += St.executeUpdate(query);
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Totaux HT, TVA, timbre et marge d'un document en cours de saisie.
+ */
+package Stock;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sommes tenues à jour ligne par ligne, en BigDecimal : ajouter, modifier ou
+ * retirer une ligne ne coûte qu'une soustraction et une addition, quelle que
+ * soit la longueur du document. Une ligne est repérée par une clé (le code
+ * article pour facture_a, l'objet ligne pour Lignes_Facture).
+ *
+ * @author IT
+ */
+public class Totaux_Document {
+
+    static final BigDecimal CENT = new BigDecimal(100);
+    static final BigDecimal TIMBRE_MAX = new BigDecimal(2500);
+
+    /** {ht, tva, achat, qte} de chaque ligne. */
+    private final Map<Object, BigDecimal[]> lignes = new HashMap<>();
+    private BigDecimal ht = BigDecimal.ZERO;
+    private BigDecimal tva = BigDecimal.ZERO;
+    private BigDecimal achat = BigDecimal.ZERO;
+
+    /** Ajoute la ligne, ou remplace ses montants ; le prix d'achat connu est gardé. */
+    public void ligne(Object cle, int qte, double prix, double taux_tva) {
+        BigDecimal q = BigDecimal.valueOf(qte);
+        BigDecimal l_ht = q.multiply(BigDecimal.valueOf(prix));
+        BigDecimal l_tva = l_ht.multiply(BigDecimal.valueOf(taux_tva)).divide(CENT);
+        BigDecimal[] ancienne = lignes.get(cle);
+        BigDecimal pr_achat = BigDecimal.ZERO;
+        if (ancienne != null) {
+            retirer(cle);
+            if (ancienne[3].signum() != 0) {
+                pr_achat = ancienne[2].divide(ancienne[3]);
+            }
+        }
+        BigDecimal l_achat = q.multiply(pr_achat);
+        lignes.put(cle, new BigDecimal[]{l_ht, l_tva, l_achat, q});
+        ht = ht.add(l_ht);
+        tva = tva.add(l_tva);
+        achat = achat.add(l_achat);
+    }
+
+    /** Prix d'achat unitaire de la ligne, pour la marge. */
+    public void prix_achat(Object cle, double pr_achat) {
+        BigDecimal[] l = lignes.get(cle);
+        if (l != null) {
+            BigDecimal l_achat = l[3].multiply(BigDecimal.valueOf(pr_achat));
+            achat = achat.subtract(l[2]).add(l_achat);
+            l[2] = l_achat;
+        }
+    }
+
+    public void retirer(Object cle) {
+        BigDecimal[] l = lignes.remove(cle);
+        if (l != null) {
+            ht = ht.subtract(l[0]);
+            tva = tva.subtract(l[1]);
+            achat = achat.subtract(l[2]);
+        }
+    }
+
+    public void vider() {
+        lignes.clear();
+        ht = BigDecimal.ZERO;
+        tva = BigDecimal.ZERO;
+        achat = BigDecimal.ZERO;
+    }
+
+    /** Repart des lignes lues (colonnes narticle, qte, prix, tva), clé = narticle. */
+    public void recharger(ResultSet rs) throws SQLException {
+        vider();
+        while (rs.next()) {
+            ligne(rs.getString("narticle"), rs.getInt("qte"), rs.getDouble("prix"), rs.getDouble("tva"));
+        }
+    }
+
+    public double ht() {
+        return ht.doubleValue();
+    }
+
+    public double tva() {
+        return tva.doubleValue();
+    }
+
+    public double marge() {
+        return ht.subtract(achat).doubleValue();
+    }
+
+    /** Droit de timbre : 1 % de la base, plafonné à 2500. */
+    public static double timbre(double base) {
+        return BigDecimal.valueOf(base).divide(CENT).min(TIMBRE_MAX).doubleValue();
+    }
+}
@@ -7,22 +7,11 @@ package Stock;
 
 import java.awt.AWTKeyStroke;
 import java.awt.KeyboardFocusManager;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.Statement;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
-import net.sf.jasperreports.engine.JasperCompileManager;
-import net.sf.jasperreports.engine.JasperFillManager;
-import net.sf.jasperreports.engine.JasperPrint;
-import net.sf.jasperreports.engine.JasperReport;
-import net.sf.jasperreports.engine.design.JRDesignQuery;
-import net.sf.jasperreports.engine.design.JasperDesign;
-import net.sf.jasperreports.engine.xml.JRXmlLoader;
-import net.sf.jasperreports.view.JasperViewer;
 
 /**
  *
@@ -308,16 +297,12 @@ public class annexe01 extends javax.swing.JFrame {
         try {  
             String pilote = "com.mysql.jdbc.Driver";
              Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement(); 
          String sql = "select db_name from stock_table_parameter";
         //jd = JRXmlLoader.load("E:\\Dev\\St_Article\\src\\Stock\\Report_annexe01.jrxml");
-        jd = JRXmlLoader.load("C:\\outil_dev\\Report_annexe01.jrxml");
-            JRDesignQuery newquery = new JRDesignQuery();
-            newquery.setText(sql);
-            jd.setQuery(newquery);
+        etat = "Report_annexe01";
         
         HashMap hm = new HashMap();
+        hm.put(Etats.REQUETE, sql);
          //hm.put("designation", txt_designation);
         hm.put("nom_article", txt_designation.getText());
         hm.put("longueur", txt_longueur.getText());
@@ -337,9 +322,7 @@ public class annexe01 extends javax.swing.JFrame {
         
         //hm.put("designation", txt_designation);
         
-            JasperReport jr = JasperCompileManager.compileReport(jd);
-            JasperPrint jp = JasperFillManager.fillReport(jr, hm, cnx);            
-            JasperViewer.viewReport(jp, false);
+            new Tache_Impression(this, etat, hm, "mysql").lancer();
         
  } catch (Exception e) {
            JOptionPane.showMessageDialog(null, "Erreur impression " + e.getMessage());
@@ -354,6 +337,12 @@ public class annexe01 extends javax.swing.JFrame {
        this.dispose();        // TODO add your handling code here:
     }//GEN-LAST:event_jButton2ActionPerformed
     
+    @Override
+    public void dispose() {
+        Tache_Bd.annuler(this);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -388,9 +377,7 @@ public class annexe01 extends javax.swing.JFrame {
             }
         });
     }
-    public JasperDesign jd;
-    public Connection cnx;
-    public Statement St;
+    public String etat;
     //public pilote String;
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
@@ -48,7 +48,7 @@ public class entree_stock extends javax.swing.JFrame {
 KeyboardFocusManager.getCurrentKeyboardFocusManager()
         .setDefaultFocusTraversalKeys(
         KeyboardFocusManager.FORWARD_TRAVERSAL_KEYS, ftk);
-        
+        Recherche_Article.installer(jComboBox2, base);
         
     }
 
@@ -584,101 +584,37 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
 
 private void mettre_jour_stock_debut(String xcode_art, String oper, String qte, String type_fact)
     {
-    int x_resultat = 0;
-     
-       
     try {
-      
-       
-        String sql= "select stock_f,stock_bl from article where narticle = '" + xcode_art + "'";    
-        Rs = St.executeQuery(sql);
-        
-        if (Rs.next()) {
-        
-        String xstock_f = Rs.getString(type_fact);
-        int v_xstock_f = Integer.parseInt(xstock_f);
         int xqte = Integer.parseInt(qte);
-       if (!"ajouter1".equals(oper) ) {
-        x_resultat = v_xstock_f+xqte;
-       } else 
-       {
-        x_resultat = v_xstock_f-xqte;
-        
-       }      
-        //String sql1 = "update article set stock_f = '"+n_xstock.toString()+"' where narticle = '" +xcode_art+"'";                                    
-        String query = "update article set "+type_fact +" = '" +x_resultat +"' where narticle = '" +xcode_art+"'";                               
-        JOptionPane.showMessageDialog(null, query);     
-        St3.executeUpdate(query);
-       }                
+        new Mouvement_Stock().ajouter(type_fact, xcode_art, "ajouter1".equals(oper) ? -xqte : xqte).appliquer(cnx);
     }catch (Exception e) {
             JOptionPane.showMessageDialog(null, "faute" + e.getMessage());    
     }
 }
 
 private void fillCombo1() {
-    String sql ="select * from fournisseur order by nom_fournisseur";
     try {
-    jComboBox1.addItem("          ");    
-    Rs = St.executeQuery(sql);
-    while (Rs.next() ) {
-       String nme = Rs.getString("nom_fournisseur");
-       String nme1 = Rs.getString("nfournisseur");
-       jComboBox1.addItem(nme1+" "+nme);
-    }
-    
+        jComboBox1.setModel(Listes_Reference.modele(base, Listes_Reference.FOURNISSEURS, true, true));
     } catch (Exception e) {
-                JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
-            }
-    }
-private void fillCombo2() {
-    String sql ="select * from article order by designation";
-    try {
-    jComboBox2.addItem("          ");   
-    
-    Rs = St.executeQuery(sql);
-    while (Rs.next() ) {
-       String nme = Rs.getString("designation");
-       //String nme1 = Rs.getString("narticle");
-       jComboBox2.addItem(nme);
+        JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
     }
-    
-    } catch (Exception e) {
-                JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
+}
+    /** Charge l'index des articles pour la recherche à la frappe (Recherche_Article). */
+    private void charger_articles() {
+        new Tache_Bd<Void>(this) {
+            @Override
+            protected Void executer() throws Exception {
+                Index_Articles.charger(base);
+                return null;
             }
+        }.lancer();
     }
     
     private void mettre_jour_stock( String xcode_art, String oper, String qte)
     {
-        int x_resultat = 0;       
     try {
-    
-        String sql= "select stock_f,stock_bl from article where narticle = '" + xcode_art + "'";    
-        Rs = St.executeQuery(sql);
-        
-        if (Rs.next()) {
-        //String xstock_f = Rs.getString("stock_f");
-        String xstock_f = Rs.getString(parametre);
-        int v_xstock_f = Integer.parseInt(xstock_f);
         int xqte = Integer.parseInt(qte);
-       if (!"ajouter1".equals(oper) ) {
-        x_resultat = v_xstock_f+xqte;
-       } else 
-       {
-        x_resultat = v_xstock_f-xqte;
-        
-       }
-      
-        //String sql1 = "update article set stock_f = '"+n_xstock.toString()+"' where narticle = '" +xcode_art+"'";                
-          
-          
-          String query = "update article set "+parametre +" = '" +x_resultat +"' where narticle = '" +xcode_art+"'";                        
-       
-        JOptionPane.showMessageDialog(null, query);
-     
-        St3.executeUpdate(query);
-       
-       }        
-        
+        new Mouvement_Stock().ajouter(parametre, xcode_art, "ajouter1".equals(oper) ? -xqte : xqte).appliquer(cnx);
     }catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans la mise à jour dans la table Article\n" + e.getMessage());
     
@@ -687,35 +623,18 @@ private void fillCombo2() {
     private void calcul_des_montant() {
             
       try {       
-      String sql ="select sum(qte*prix) as \"s_total\",sum(qte*prix*tva/100) as \"s_tva\" from facture_a" ;
-        Rs = St.executeQuery(sql);
-        if (Rs.next()) {
-        String add1 = Rs.getString("s_total")+"0";
-        String add2 = Rs.getString("s_tva")+"0";
-        if ("null0".equals(add1)) {
-        add1="0.0";
-        add2="0.0";
-        } else {
-        add1 = Rs.getString("s_total");
-        add2 = Rs.getString("s_tva");
-        }        
-        double add1_d = Double.parseDouble(add1);
-        double add2_d = Double.parseDouble(add2);
+        double add1_d = totaux.ht();
+        double add2_d = totaux.tva();
         xtot_ht=add1_d;
         xtot_tva=add2_d;
-        add1= mntFmt.mntFmt(add1_d);
-        add2= mntFmt.mntFmt(add2_d);
+        String add1= mntFmt.mntFmt(add1_d);
+        String add2= mntFmt.mntFmt(add2_d);
         txt_s_total.setText(add1);
         txt_total_tva.setText(add2);
-        timbre = add1_d*1/100;
-        if (timbre > 2500.00) {
-         timbre = 2500.00;
-        }
+        timbre = Totaux_Document.timbre(add1_d);
         String add3 =mntFmt.mntFmt(timbre);
         txt_timbre.setText(add3);
         //txt_s_total.setEnabled(false);
-        
-        }
         } catch (Exception e) {
              JOptionPane.showMessageDialog(null, "Erreur dans la somme" + e.getMessage());
              }
@@ -723,7 +642,7 @@ private void fillCombo2() {
     private void champs_vide(){        
                 txt_code_art.setText("");
                  
-                jComboBox2.setSelectedIndex(0); 
+                jComboBox2.setSelectedItem(""); 
                 txt_prix_unit.setText("");
                 txt_tva.setText("");                 
                 txt_stock_f.setText("");                
@@ -744,14 +663,7 @@ private void fillCombo2() {
                 txt_code_art.setText(add3);
                 String add4 = Rs.getString("Designation");
 
-                for (j=0 ; j < jComboBox2.getItemCount() ; j++) {
-  
-                    if (add4.equals(jComboBox2.getItemAt(j).toString())) {
-                
-                        break;  
-                 }
-                }
-                jComboBox2.setSelectedIndex(j);                                                                                      
+                jComboBox2.setSelectedItem(add4);
                 String add5 = Rs.getString("Prix Unitaire");
                 txt_prix_unit.setText(mntFmt.mntFmt(Double.parseDouble(add5)));
                 String add6 = Rs.getString("TVA");
@@ -783,22 +695,14 @@ private void fillCombo2() {
 
     private void txt_code_artFocusLost(java.awt.event.FocusEvent evt) {//GEN-FIRST:event_txt_code_artFocusLost
         txt_code_art.setInputVerifier(new Pass_Verifier_Art(base));
-        String sql = "select * from article where narticle = '" + txt_code_art.getText() +"'";
         try {
-            Rs = St.executeQuery(sql);
+            Rs = dao.article(txt_code_art.getText());
             if (Rs.next()) {
                 String add = Rs.getString("designation");
                 String add1 = Rs.getString("narticle");
                 txt_code_art.setText(add1);
 
-                for (j=0 ; j < jComboBox2.getItemCount() ; j++) {
-
-                    if (add.equals(jComboBox2.getItemAt(j).toString())) {
-
-                        break;
-                    }
-                }
-                jComboBox2.setSelectedIndex(j);
+                jComboBox2.setSelectedItem(add);
             }
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans le comboBox \n" + e.getMessage());
@@ -808,21 +712,15 @@ private void fillCombo2() {
 
     private void txt_code_artKeyReleased(java.awt.event.KeyEvent evt) {//GEN-FIRST:event_txt_code_artKeyReleased
         try {
-            String sql = "select * from article where narticle = '" + txt_code_art.getText() + "'";
-            Rs = St.executeQuery(sql);
-
-            if (Rs.next()) {
-                //JOptionPane.showMessageDialog(null, "trouvé");
+            boolean trouve = Index_Codes.existe(base, Index_Codes.ARTICLE, txt_code_art.getText());
+            if (trouve) {
+                Rs = dao.article(txt_code_art.getText());
+                trouve = Rs.next();
+            }
+            if (trouve) {
                 String add4 = Rs.getString("Designation");
 
-                for (j=0 ; j < jComboBox2.getItemCount() ; j++) {
-
-                    if (add4.equals(jComboBox2.getItemAt(j).toString())) {
-
-                        break;
-                    }
-                }
-                jComboBox2.setSelectedIndex(j);
+                jComboBox2.setSelectedItem(add4);
                 String add5 = Rs.getString("Prix_unitaire");
                 txt_prix_unit.setText(mntFmt.mntFmt(Double.parseDouble(add5)));
                 String add6 = Rs.getString("TVA");
@@ -834,7 +732,7 @@ private void fillCombo2() {
                 txt_qte.setText("");
                 txt_prix_tot.setText("");
             } else {
-                jComboBox2.setSelectedIndex(0);
+                jComboBox2.setSelectedItem("");
                 txt_prix_unit.setText("");
                 txt_tva.setText("");
                 txt_stock_f.setText("");
@@ -890,9 +788,8 @@ private void fillCombo2() {
     private void jComboBox2PopupMenuWillBecomeInvisible(javax.swing.event.PopupMenuEvent evt) {//GEN-FIRST:event_jComboBox2PopupMenuWillBecomeInvisible
 
         String tmp = (String)jComboBox2.getSelectedItem();
-        String sql = "select * from article where designation = '" + tmp + "'";
         try {
-            Rs = St.executeQuery(sql);
+            Rs = dao.article_designation(tmp);
             if (Rs.next()) {
                 String add = Rs.getString("narticle");
                 txt_code_art.setText(add);
@@ -941,6 +838,7 @@ private void fillCombo2() {
             if (Rs.next()) {
 
                 String add7 = Rs.getString("qte");
+                double taux_tva = Rs.getDouble("tva");
 
                 mettre_jour_stock(txt_code_art.getText() , "ajouter1", add7);
                 String query = "update facture_a set qte ='"
@@ -948,6 +846,7 @@ private void fillCombo2() {
                 +prix_unitaire.toString()+"', total_ligne ='"
                 +stot_ligne.toString()+"' where narticle = '" +txt_code_art.getText()+"'";
                 St.executeUpdate(query);
+                totaux.ligne(txt_code_art.getText(), Integer.parseInt(txt_qte.getText()), prix_unitaire, taux_tva);
                 Update_Table_Factures();
                 calcul_des_montant();
                 mettre_jour_stock(txt_code_art.getText() , "restituer1", txt_qte.getText());
@@ -969,6 +868,7 @@ private void fillCombo2() {
                     +stot_ligne.toString()+"','"
                     +parametre+ "')";
                     St.executeUpdate(query);
+                    totaux.ligne(txt_code_art.getText(), Integer.parseInt(txt_qte.getText()), prix_unitaire, Double.parseDouble(txt_tva.getText()));
                     Update_Table_Factures();
                     mettre_jour_stock(txt_code_art.getText() , "restituer1", txt_qte.getText());
                     int lastRow = Table_Factures.getRowCount() - 1;
@@ -977,31 +877,28 @@ private void fillCombo2() {
             }
             calcul_des_montant();
             date_fact.setDateFormatString("yyyy-MM-dd");
-            String query = "insert into "+fichier_master+ "(nfact,nfournisseur,date_fact,ncheque,banque,montant_ht,timbre,tva,autre_taxe) values ('"
-            +txt_nfact.getText()+"','"
-            +txt_code_four.getText()+"','"
-            +((JTextField)date_fact.getDateEditor().getUiComponent()).getText()+"','"
-            +txt_n_cheque.getText()+"','" 
-            +txt_banque.getText()+"','"        
-            +xtot_ht.toString()+"','"
-            +timbre.toString()+"','"
-            +xtot_tva.toString()+"','"
-            +stot_ligne.toString()+"')";
-            //JOptionPane.showMessageDialog(null,query);     
-            St.executeUpdate(query);
-            query ="insert into "+ fichier_detail+" (nfact, narticle,nfournisseur, qte,tva,prix,total_ligne) select nfact, narticle, nfournisseur, qte,tva,prix,total_ligne from facture_a";
-            St.executeUpdate(query);
-            Update_Table_Factures();
-            query ="truncate table facture_a";
-            St.execute(query);
-            JOptionPane.showMessageDialog(null,"ligne ajoutée !");
-            int r =JOptionPane.showConfirmDialog(null, "Voulez vous confirmer votre choix","Confirmation",JOptionPane.YES_NO_OPTION);
+            Enregistrement_Document doc = new Enregistrement_Document(base, fichier_master);
+            doc.maj("insert into "+fichier_master+ "(nfact,nfournisseur,date_fact,ncheque,banque,montant_ht,timbre,tva,autre_taxe) values (?,?,?,?,?,?,?,?,?)",
+                    txt_nfact.getText(), txt_code_four.getText(),
+                    ((JTextField)date_fact.getDateEditor().getUiComponent()).getText(),
+                    txt_n_cheque.getText(), txt_banque.getText(), xtot_ht, timbre, xtot_tva, stot_ligne);
+            doc.maj("insert into "+ fichier_detail+" (nfact, narticle,nfournisseur, qte,tva,prix,total_ligne) select nfact, narticle, nfournisseur, qte,tva,prix,total_ligne from facture_a");
+            doc.maj("delete from facture_a");
+            new Tache_Enregistrement(this, doc) {
+                @Override
+                protected void enregistre() {
+                    Update_Table_Factures();
+                    totaux.vider();
+                    JOptionPane.showMessageDialog(null,"ligne ajoutée !");
+                    int r =JOptionPane.showConfirmDialog(null, "Voulez vous confirmer votre choix","Confirmation",JOptionPane.YES_NO_OPTION);
 
-            if (r == 0) {
-                JOptionPane.showMessageDialog(null,"Vous avez dit Yes !");
-            }
+                    if (r == 0) {
+                        JOptionPane.showMessageDialog(null,"Vous avez dit Yes !");
+                    }
 
-            calcul_des_montant();
+                    calcul_des_montant();
+                }
+            }.lancer();
             }           
           
         } catch (Exception e) {
@@ -1021,6 +918,7 @@ private void fillCombo2() {
             Rs = St.executeQuery(sql);
             if (Rs.next()) {
                 String add7 = Rs.getString("qte");
+                double taux_tva = Rs.getDouble("tva");
                 JOptionPane.showMessageDialog(null,add7);
                 mettre_jour_stock(txt_code_art.getText() , "ajouter1", add7);
                 String query = "update facture_a set qte ='"
@@ -1028,6 +926,7 @@ private void fillCombo2() {
                 +prix_unitaire.toString()+"', total_ligne ='"
                 +stot_ligne.toString()+"' where narticle = '" +txt_code_art.getText()+"'";
                 St.executeUpdate(query);
+                totaux.ligne(txt_code_art.getText(), Integer.parseInt(txt_qte.getText()), prix_unitaire, taux_tva);
                 mettre_jour_stock(txt_code_art.getText() , "restituer1", txt_qte.getText());
                 Update_Table_Factures();
                 JOptionPane.showMessageDialog(null,"ligne moodifiée !");
@@ -1044,6 +943,7 @@ private void fillCombo2() {
                 +stot_ligne.toString()+"','"
                 +parametre+ "')";
                 St.executeUpdate(query);
+                totaux.ligne(txt_code_art.getText(), Integer.parseInt(txt_qte.getText()), prix_unitaire, Double.parseDouble(txt_tva.getText()));
                 mettre_jour_stock(txt_code_art.getText() , "restituer1", txt_qte.getText());
                 Update_Table_Factures();
 
@@ -1081,6 +981,8 @@ private void fillCombo2() {
                     //query ="insert into "+ fichier_detail+" (nfact, narticle, qte,tva,prix,total_ligne) select nfact, narticle, qte,tva,prix,total_ligne from facture";
                     JOptionPane.showMessageDialog(null,query);
                     St.executeUpdate(query);
+                    totaux.recharger(St.executeQuery("select narticle, qte, prix, tva from facture_a"));
+                    calcul_des_montant();
                     affiche_champs();   
                     String sql = "select F.id as \"Seq.\", F.Narticle as \"Code Article\", A.Designation as \"Designation\", F.prix as \"Prix Unitaire\", A.tva as \"TVA\", F.qte as \"Quantité\", F.total_ligne as \"Prix Total\"  from facture_a AS F, article AS A where F.narticle=A.narticle order by F.id" ;
                     tm = new MyTableModel(sql,base);
@@ -1107,6 +1009,7 @@ private void fillCombo2() {
 
                 St = cnx.createStatement();
                 St.executeUpdate(sql);
+                totaux.retirer(txt_code_art.getText());
                 Update_Table_Factures();
                 calcul_des_montant();
                 JOptionPane.showMessageDialog(null," Ligne supprimée !");
@@ -1132,9 +1035,8 @@ private void fillCombo2() {
 
         // JOptionPane.showMessageDialog(null, txt_code_cli.getText());
         txt_code_four.setInputVerifier(new Pass_Verifier_Fournisseur(base));
-        String sql = "select * from fournisseur where nfournisseur = '" + txt_code_four.getText() +"'";
         try {
-            Rs = St.executeQuery(sql);
+            Rs = dao.fournisseur(txt_code_four.getText());
             if (Rs.next()) {
                 String add = txt_code_four.getText()+" " + Rs.getString("nom_fournisseur");
                 String add1 = txt_code_four.getText();
@@ -1160,8 +1062,7 @@ private void fillCombo2() {
 
     private void txt_code_fourKeyReleased(java.awt.event.KeyEvent evt) {//GEN-FIRST:event_txt_code_fourKeyReleased
         try {
-            String sql = "select * from fournisseur where nfournisseur = '" + txt_code_four.getText() + "'";
-            Rs = St.executeQuery(sql);
+            Rs = dao.fournisseur(txt_code_four.getText());
 
             if (Rs.next()) {
                 //JOptionPane.showMessageDialog(null, "trouvé");
@@ -1207,23 +1108,15 @@ private void fillCombo2() {
         try {
             // connexion avec la base de donnée 
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-            String sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;    
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            cnx = javaconnect.cnx_activite(base);
             St = cnx.createStatement();
-            }
+            dao = new Dao_Stock(cnx);
             
             //Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test?useUnicode=yes&amp;characterEncoding=UTF-8", "root", "");
             //St = cnx.createStatement();
             query ="truncate table facture_a";
             St.execute(query);
+            totaux.vider();
   /*          query="select count(*) as nbre_enr FROM "+fichier_master+";";
             St.execute(query);
             Rs=St.executeQuery(query);
@@ -1247,7 +1140,7 @@ private void fillCombo2() {
             }
 */
             fillCombo1();
-            fillCombo2();
+            charger_articles();
             
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur de connexcion\n" + e.getMessage());
@@ -1311,6 +1204,12 @@ private void fillCombo2() {
     txt_prix_unit.selectAll();        // TODO add your handling code here:
     }//GEN-LAST:event_txt_prix_unitFocusGained
     
+    @Override
+    public void dispose() {
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -1350,6 +1249,8 @@ private void fillCombo2() {
     private Statement St,St1,St3;
     private ResultSet Rs,Rs1;
     private Connection cnx;
+    private Dao_Stock dao;
+    private final Totaux_Document totaux = new Totaux_Document();
     public String parametre, fichier_detail, fichier_master, base;
     String query;
     
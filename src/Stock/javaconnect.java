@@ -13,33 +13,65 @@ import java.sql.*;
 import javax.swing.*;
 
 class javaconnect {
-    
+
     Connection conn = null;
     //private Statement St;
     public static Connection ConnecrDb() {
      try {
-         Class.forName("com.mysql.jdbc.Driver");
-         Connection cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            Statement St = cnx.createStatement();  
+            String schema = "mysql";
+            Connection cnx = cnx_mysql();
+            Statement St = cnx.createStatement();
             String sql1 = "select db_name from stock_table_parameter";
             ResultSet Rs = St.executeQuery(sql1);
             if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
-            St = cnx.createStatement();
+            schema = Rs.getString("db_name");
             }
-            Connection conn = cnx;
-        return conn;  
-     
+            cnx.close();
+        return Pool_Cnx.emprunter(schema);
+
      } catch (Exception e ) {
      JOptionPane.showMessageDialog(null, e);
        return null;
      }
     }
-    
-    
-    
-    
+
+    /**
+     * Connexion sur le schéma mysql (stock_table_parameter, user_info).
+     */
+    public static Connection cnx_mysql() throws SQLException {
+        return Pool_Cnx.emprunter("mysql");
+    }
+
+    /**
+     * Connexion sur un schéma quelconque du serveur ("" pour le serveur seul).
+     */
+    public static Connection cnx_schema(String schema) throws SQLException {
+        return Pool_Cnx.emprunter(schema);
+    }
+
+    /**
+     * Connexion sur la base de l'exercice en cours de l'activité (année_activité).
+     */
+    public static Connection cnx_activite(String base) throws SQLException {
+        return cnx_activite(base, "");
+    }
+
+    public static Connection cnx_activite(String base, String options) throws SQLException {
+        return Pool_Cnx.emprunter(Param_Activite.schema(base) + options);
+    }
+
+    /**
+     * Rend la connexion au pool, sans erreur si elle est nulle ou déjà rendue.
+     */
+    public static void liberer(Connection cnx) {
+        try {
+            if (cnx != null) {
+                cnx.close();
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+
 }
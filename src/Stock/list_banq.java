@@ -6,7 +6,6 @@ package Stock;
 
 import java.awt.Color;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -559,18 +558,8 @@ public class list_banq extends javax.swing.JFrame {
             
         try {
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-            String sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;    
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            cnx = javaconnect.cnx_activite(base);
             St = cnx.createStatement();
-            }
             sql = "truncate table fact_tmp";
             St.execute(sql);
             sql="insert into fact_tmp " + query;
@@ -911,9 +900,7 @@ try
             //query="select NFact, Nclient, date_fact,montant_ht, timbre, TVA, autre_taxe, banq, ncheque, nbc, nom_preneur from "+fichier_master+ condition;
             
             //JOptionPane.showMessageDialog(null, query);
-            tm = new MyTableModel(query,base);
-            Table_Banq.setModel(tm);
-            Table_Banq.setDefaultRenderer(Double.class, new TKMntRenderer());
+            new Chargement_Table(this, Table_Banq, query, base).lancer();
            
             } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "avec la table banque\n" + e.getMessage());
@@ -921,6 +908,13 @@ try
     }
     
     
+    @Override
+    public void dispose() {
+        Tache_Bd.annuler(this);
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */ 
@@ -14,14 +14,6 @@ import java.awt.event.KeyEvent;
 import java.sql.*;
 import java.util.HashMap;
 import javax.swing.*;
-import net.sf.jasperreports.engine.JasperCompileManager;
-import net.sf.jasperreports.engine.JasperFillManager;
-import net.sf.jasperreports.engine.JasperPrint;
-import net.sf.jasperreports.engine.JasperReport;
-import net.sf.jasperreports.engine.design.JRDesignQuery;
-import net.sf.jasperreports.engine.design.JasperDesign;
-import net.sf.jasperreports.engine.xml.JRXmlLoader;
-import net.sf.jasperreports.view.JasperViewer;
 
 
 public class liste_bl extends javax.swing.JFrame {
@@ -371,18 +363,8 @@ public class liste_bl extends javax.swing.JFrame {
         try {
             // connexion avec la base de donnée 
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-            String sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;    
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            cnx = javaconnect.cnx_activite(base);
             St = cnx.createStatement();
-            }
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur de connexcion\n" + e.getMessage());
         }
@@ -479,21 +461,17 @@ public class liste_bl extends javax.swing.JFrame {
     private void btn_imprimerActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btn_imprimerActionPerformed
     
         try {
-        jd = JRXmlLoader.load("C:\\outil_dev\\report_ventes.jrxml");
-        JRDesignQuery newquery = new JRDesignQuery();
+        etat = "report_ventes";
         query="select 1";
         // query="SELECT  `NFact`, `Nclient`, `raison_sociale` , `date_fact`, `montant_ht`, `timbre`, `TVA`, `autre_taxe`, `banq`, `ncheque`,    `nom_preneur` FROM  ventes";
-        newquery.setText(query);
-        jd.setQuery(newquery);
         HashMap hm = new HashMap();
+        hm.put(Etats.REQUETE, query);
         hm.put("title_p", title);
         hm.put("title_p1", title1);
         hm.put("som_sum_p",tot_g);        
         hm.put("sous_titre_p", "");
         hm.put("sql_p_req","");
-        JasperReport jr = JasperCompileManager.compileReport(jd);
-        JasperPrint jp = JasperFillManager.fillReport(jr, hm, cnx);            
-        JasperViewer.viewReport(jp, false);          
+        new Tache_Impression(this, etat, hm, Param_Activite.schema(base)).lancer();
        }
        catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans l'insertion table\n" + e.getMessage());
@@ -612,9 +590,7 @@ private void Update_Table_bl() {
             calcul_recette();
            // JOptionPane.showMessageDialog(null, "passer calcul recette");
             query="select * from ventes";
-            tm = new MyTableModel(query,base);
-            Table_bl.setModel(tm);
-            Table_bl.setDefaultRenderer(Double.class, new TKMntRenderer());
+            new Chargement_Table(this, Table_bl, query, base).lancer();
             sql_sum="select sum(montant_ht)+sum(tva)+sum(timbre) as autre_taxe, sum(marge) as marge  from ventes";        
             Rs=St.executeQuery(sql_sum);
             if (Rs.next()) {
@@ -631,6 +607,13 @@ private void Update_Table_bl() {
         }
     }    
     
+    @Override
+    public void dispose() {
+        Tache_Bd.annuler(this);
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
  public static void list_bl(final String par, final String det, final String mas, final String bas) {
     //public static void main(String args[]) {
         /* Set the Nimbus look and feel */
@@ -672,7 +655,7 @@ private void Update_Table_bl() {
     public String cell_click,title,title1;
     public int nbre_enr, rang_champ_select=7, int_nfact;
     boolean sele_deselect = false;
-    public JasperDesign jd;
+    public String etat;
     //public String parametre, fichier_detail, fichier_master;
     public String fichier_master,code_cli,xdate_fact,fichier_detail,parametre,query,sql,sql_sum,sql_del, base;
     MyTableModel tm;
@@ -413,20 +413,12 @@ public class rappel_fa_achat extends javax.swing.JFrame {
         txt_code_four.setText("");
     }//GEN-LAST:event_txt_code_fourFocusGained
 private void fillCombo1() {
-    String sql ="select * from fournisseur order by nom_fournisseur";
     try {
-    jComboBox1.addItem("          ");    
-    Rs = St.executeQuery(sql);
-    while (Rs.next() ) {
-       String nme = Rs.getString("nom_fournisseur");
-       //String nme1 = Rs.getString("nfournisseur");
-       jComboBox1.addItem(nme);
-    }
-    
+        jComboBox1.setModel(Listes_Reference.modele(base, Listes_Reference.FOURNISSEURS, true, false));
     } catch (Exception e) {
-                JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
-            }
+        JOptionPane.showMessageDialog(null, "Erreur dans la liste jComboBox1\n" + e.getMessage());
     }
+}
     
     private void txt_code_fourFocusLost(java.awt.event.FocusEvent evt) {//GEN-FIRST:event_txt_code_fourFocusLost
 
@@ -601,21 +593,10 @@ private void fillCombo1() {
             txt_titre.setText("B.L d'Achat" );
             }
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-           
-           String sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;    
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            cnx = javaconnect.cnx_activite(base);
             St = cnx.createStatement();
             St1 = cnx.createStatement();
             St2 = cnx.createStatement();
-            }
             query ="truncate table facture_a";
             St.execute(query);
             fillCombo1();                       
@@ -635,34 +616,6 @@ private void fillCombo1() {
     }//GEN-LAST:event_btn_quiterActionPerformed
 
 
-    private void mettre_jour_stock(String xcode_art, String oper, String qte, String type_fact)
-    {
-        
-     int x_resultat = 0; 
-   
-    try {
-        String sql= "select stock_f,stock_bl from article where narticle = '" + xcode_art + "'";            
-        Rs3 = St1.executeQuery(sql);       
-        if (Rs3.next()) {        
-        String xstock_f = Rs3.getString(type_fact);
-        int v_xstock_f = Integer.parseInt(xstock_f);
-        int xqte = Integer.parseInt(qte);
-       if ("ajouter".equals(oper) ) {
-        x_resultat = v_xstock_f+xqte;
-       } else {
-        x_resultat = v_xstock_f-xqte;        
-       }                                       
-       String query = "update article set "+type_fact +" = '" +x_resultat +"' where narticle = '" +xcode_art+"'";                               
-        St2.executeUpdate(query);
-       }     
-    }catch (Exception e) {
-                JOptionPane.showMessageDialog(null, "Erreur dans la table\n" + e.getMessage());;    
-    }    
-   
- }
-    
-
-    
     private void btn_supprimerActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btn_supprimerActionPerformed
           
         try { 
@@ -681,57 +634,49 @@ private void fillCombo1() {
                       else {
                          champ_ch_aff="cabl";
                           } 
-                   int i =1;
+            Mouvement_Stock stock = new Mouvement_Stock();
             while(Rs1.next())
             { 
-               // JOptionPane.showMessageDialog(null, i);
-              //  i=i+1;
-                String add1 = Rs1.getString("Narticle");
-                String add2 = Rs1.getString("qte");              
-                mettre_jour_stock(add1 , "restituer", add2,parametre);
-            
+                stock.ajouter(parametre, Rs1.getString("Narticle"), -Integer.parseInt(Rs1.getString("qte")));
             }
-                    //nettoyer_facture.nettoyer_facture(base);
                       sql =" select  montant_ht+tva+timbre as ttc from " +fichier_master+" where nfact ='"+txt_nfact.getText()+"' and nfournisseur ='"+txt_code_four.getText()+"'" ;                     
-                      
+                      xtot_ttc = 0;
                       Rs=St.executeQuery(sql);
                       if (Rs.next()) {
                       ttc = Rs.getString("ttc");
                       xtot_ttc = Double.parseDouble(ttc);
                       txt_ttc.setText(ttc);
                       }
-                       sql = " delete from "+fichier_detail+" where nfact ='"+txt_nfact.getText()+"' and nfournisseur ='"+txt_code_four.getText()+"'" ;
-                       St.executeUpdate(sql);  
-                       sql = " delete from "+fichier_master+" where nfact ='"+txt_nfact.getText()+"' and nfournisseur ='"+txt_code_four.getText()+"'" ;
-                       St.executeUpdate(sql);
-                                                                  
-                        query = "select "+champ_ch_aff+"  from fournisseur where nfournisseur= '"+txt_code_four.getText()+"'";
-                        Rs=St.executeQuery(query);
-                        if (Rs.next()) {
-                            String add1 = Rs.getString(champ_ch_aff);                               
-                            xtot_ttc = Double.parseDouble(add1)-xtot_ttc;            
-                            query = "update fournisseur set "+champ_ch_aff+"="+xtot_ttc+" where nfournisseur= '"+txt_code_four.getText()+"'";
-                            St.executeUpdate(query);
-                        }
-                    
-
-            sql ="truncate table facture_a";
-            St.executeUpdate(sql);
-           // vider_champs();
-                        txt_nfact.setText("");
-                        date_fact.setDate(null);
-                        txt_montant_tot_fact.setText("");
-                        txt_s_total.setText("");
-                        txt_n_cheque.setText("");
-                        txt_banque.setText("");
-                        txt_total_tva.setText("");
-                        txt_timbre.setText("");
-                        txt_code_four.setText("");
-                        txt_ttc.setText("");
-                        jComboBox1.setSelectedIndex(0);
-                        tm = new MyTableModel("select * from facture_a",base);
-                        Table_Factures.setModel(tm);
-                        Table_Factures.setDefaultRenderer(Double.class, new TKMntRenderer());
+                       Enregistrement_Document doc = new Enregistrement_Document(base, fichier_master);
+                       doc.stock(stock);
+                       doc.maj("delete from " + fichier_detail + " where nfact = ? and nfournisseur = ?", txt_nfact.getText(), txt_code_four.getText());
+                       doc.maj("delete from " + fichier_master + " where nfact = ? and nfournisseur = ?", txt_nfact.getText(), txt_code_four.getText());
+                       doc.chiffre_affaires("fournisseur", champ_ch_aff, "nfournisseur", txt_code_four.getText(), -xtot_ttc);
+                       doc.maj("delete from facture_a");
+                       new Tache_Enregistrement(this, doc) {
+                           @Override
+                           protected void enregistre() {
+                               txt_nfact.setText("");
+                               date_fact.setDate(null);
+                               txt_montant_tot_fact.setText("");
+                               txt_s_total.setText("");
+                               txt_n_cheque.setText("");
+                               txt_banque.setText("");
+                               txt_total_tva.setText("");
+                               txt_timbre.setText("");
+                               txt_code_four.setText("");
+                               txt_ttc.setText("");
+                               jComboBox1.setSelectedIndex(0);
+                               tm = new MyTableModel("select * from facture_a",base);
+                               Table_Factures.setModel(tm);
+                               Table_Factures.setDefaultRenderer(Double.class, new TKMntRenderer());
+                           }
+
+                           @Override
+                           protected void refuse(Exception e) {
+                               JOptionPane.showMessageDialog(null, "Erreur dans la table\n" + e.getMessage());
+                           }
+                       }.lancer();
             //                                     
            } 
             } catch (Exception e) {
@@ -741,6 +686,12 @@ private void fillCombo1() {
     }//GEN-LAST:event_btn_supprimerActionPerformed
     
     
+    @Override
+    public void dispose() {
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -15,15 +15,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.*;
 import net.sf.jasperreports.engine.JRException;
-import net.sf.jasperreports.engine.JasperCompileManager;
 import net.sf.jasperreports.engine.JasperExportManager;
-import net.sf.jasperreports.engine.JasperFillManager;
-import net.sf.jasperreports.engine.JasperPrint;
-import net.sf.jasperreports.engine.JasperReport;
-import net.sf.jasperreports.engine.design.JRDesignQuery;
-import net.sf.jasperreports.engine.design.JasperDesign;
-import net.sf.jasperreports.engine.xml.JRXmlLoader;
-import net.sf.jasperreports.view.JasperViewer;
 
 /**
  *
@@ -542,19 +534,8 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
             //JOptionPane.showMessageDialog(null, "Salam ");
             // connexion avec la base de donnée 
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-            
-            String sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;    
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            cnx = javaconnect.cnx_activite(base);
             St = cnx.createStatement();
-            }
             //cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/test?useUnicode=yes&amp;characterEncoding=UTF-8", "root", "");
             //St = cnx.createStatement();
             query ="truncate table facture_temp";
@@ -683,59 +664,43 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
    int r = JOptionPane.showOptionDialog(null, " Etes vous sur de vouloir Supprimer ?", "Confirmation",  JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE,null, options,options[1]);           
            
             if (r == 0) {    
-                sql = "truncate table facture";
-                  St.executeUpdate(sql);
-                sql = "insert into facture  select *  from facture_temp ";
-                  St.executeUpdate(sql);
-               String tab="facture";      
-               nettoyer_facture.nettoyer_facture(base, tab);
-                      sql = " delete from "+fichier_detail+" where nfact ='"+txt_nfact.getText()+"'" ;
-                     St.executeUpdate(sql);  
-                      sql = " delete from "+fichier_master+" where nfact ='"+txt_nfact.getText()+"'" ;
-                     St.executeUpdate(sql);
-                     
+                     // stock rendu dans la même transaction que la suppression
+                     Mouvement_Stock stock = new Mouvement_Stock();
                      if (! parametre.equals("")) {
-                        query = "select c_affaire_"+fichier_master+" as ca from client where nclient= '"+txt_code_cli.getText()+"'";
-                        St.execute(query);
-                        Rs=St.executeQuery(query);
-                        if (Rs.next()) {
-                            String add1 = Rs.getString("ca");            
-                            double xtot_ttc = Double.parseDouble(add1)-mnt;            
-                            query = "update client set c_affaire_"+fichier_master+"="+xtot_ttc+" where nclient= '"+txt_code_cli.getText()+"'";
-                            //JOptionPane.showMessageDialog(null,query);
-                            //JOptionPane.showMessageDialog(null,mnt);
-                            //JOptionPane.showMessageDialog(null,add1);
-                            St.executeUpdate(query);
-                        }
-                    }
-
-            sql ="truncate table facture_temp";
-            St.executeUpdate(sql);
-            query = "select "+titre+"  as nbre_enr FROM mysql.stock_table_parameter  where code_activite='"+base+"'";;
-            St.execute(query);
-            Rs = St.executeQuery(query);
-            if (Rs.next()) {
-               String add1 = Rs.getString("nbre_enr");
-               // JOptionPane.showMessageDialog(null,Integer.parseInt(add1));
-                //JOptionPane.showMessageDialog(null,Integer.parseInt(txt_nfact.getText()));
-                if (Integer.parseInt(add1)-1 == Integer.parseInt(txt_nfact.getText())) {
-                    
-                        int_nfact = Integer.parseInt(add1);                                                        
-                        txt_nfact.setText(Integer.toString(int_nfact));
-                        int_nfact = Integer.parseInt(add1) - 1;
-                        sql = "update mysql.stock_table_parameter set "+titre+ "="+int_nfact+ "  where code_activite='"+base+"'";
-                  //      JOptionPane.showMessageDialog(null,sql);
-                        St.executeUpdate(sql);
-                } 
-            
-                
-            }
-            
-            
-            
-            
-            vider_champs();
-            txt_nfact.setText("");
+                         PreparedStatement ps = cnx.prepareStatement("select narticle, qte from " + fichier_detail + " where nfact = ?");
+                         ps.setString(1, txt_nfact.getText());
+                         Rs = ps.executeQuery();
+                         while (Rs.next()) {
+                             stock.ajouter(parametre, Rs.getString("narticle"), Rs.getInt("qte"));
+                         }
+                         ps.close();
+                     }
+                     Enregistrement_Document doc = new Enregistrement_Document(base, fichier_master);
+                     doc.stock(stock);
+                     doc.maj("delete from " + fichier_detail + " where nfact = ?", txt_nfact.getText());
+                     doc.maj("delete from " + fichier_master + " where nfact = ?", txt_nfact.getText());
+                     if (! parametre.equals("")) {
+                         doc.chiffre_affaires("client", "c_affaire_" + fichier_master, "nclient", txt_code_cli.getText(), -mnt);
+                     }
+                     final int nfact = Integer.parseInt(txt_nfact.getText());
+                     new Tache_Enregistrement(this, doc) {
+                         @Override
+                         protected void enregistre() {
+                             try {
+                                 St.executeUpdate("truncate table facture_temp");
+                                 Numerotation.rendre(base, titre, nfact);
+                             } catch (Exception e) {
+                                 JOptionPane.showMessageDialog(null, "Erreur dans la table\n" + e.getMessage());
+                             }
+                             vider_champs();
+                             txt_nfact.setText("");
+                         }
+
+                         @Override
+                         protected void refuse(Exception e) {
+                             JOptionPane.showMessageDialog(null, "Erreur dans la table\n" + e.getMessage());
+                         }
+                     }.lancer();
            
             
             
@@ -758,7 +723,7 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
                 switch (parametre)
         {  
             case "stock_f":
-                 jd = JRXmlLoader.load("C:\\outil_dev\\report_fact.jrxml");
+                 etat = "report_fact";
                 //jd = JRXmlLoader.load("report_fact.jrxml");
              sql = "SELECT fact.`NFact` AS fact_NFact,      fact.`Nclient` AS fact_Nclient,      fact.`date_fact` AS fact_date_fact,      fact.`montant_ht` AS fact_montant_ht,      fact.`timbre` AS fact_timbre,      fact.`TVA` AS fact_TVA,      fact.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article       FROM      `client` client INNER JOIN `fact` fact ON client.`Nclient` = fact.`Nclient` WHERE fact.nfact ='"+txt_nfact.getText()+"'";
              //JOptionPane.showMessageDialog(null, "facture");
@@ -766,7 +731,7 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
 
             case "stock_bl":
                // JOptionPane.showMessageDialog(null, "bl");
-                 jd = JRXmlLoader.load("C:\\outil_dev\\report_bl.jrxml");
+                 etat = "report_bl";
                 //jd = JRXmlLoader.load("report_bl.jrxml");
                 //jd = JRXmlLoader.load("E:\\Dev\\St_Article\\src\\Stock\\Report_annexe01.jrxml");
                  sql = "SELECT bl.`NFact` AS fact_NFact,      bl.`Nclient` AS fact_Nclient,      bl.`date_fact` AS fact_date_fact,      bl.`montant_ht` AS fact_montant_ht,      bl.`timbre` AS fact_timbre,      bl.`TVA` AS fact_TVA,      bl.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article,  bl.`nbc` AS fact_nbc, bl.`date_bc` AS fact_date_bc, bl.`nom_preneur` AS fact_nom_preneur       FROM      `client` client INNER JOIN `bl` bl ON client.`Nclient` = bl.`Nclient` WHERE bl.nfact ='"+txt_nfact.getText()+"'";
@@ -774,7 +739,7 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
                 break;
 
             case "":
-                 jd = JRXmlLoader.load("C:\\outil_dev\\report_prof.jrxml");
+                 etat = "report_prof";
                 // jd = JRXmlLoader.load("report_prof.jrxml");
                  sql = "SELECT fprof.`NFact` AS fact_NFact,      fprof.`Nclient` AS fact_Nclient,      fprof.`date_fact` AS fact_date_fact,      fprof.`montant_ht` AS fact_montant_ht,      fprof.`timbre` AS fact_timbre,      fprof.`TVA` AS fact_TVA,      fprof.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article       FROM      `client` client INNER JOIN `fprof` fprof ON client.`Nclient` = fprof.`Nclient` WHERE fprof.nfact ='"+txt_nfact.getText()+"'";
                  //JOptionPane.showMessageDialog(null, "Proforma");
@@ -794,50 +759,11 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
     
 private void imprime(){
     try{
-        String query_a ="select * from activite";
-            Rs=St.executeQuery(query_a);
-             if (Rs.next()) { 
-                txt_domaine_actvite = Rs.getString("domaine_activite");                
-                txt_sous_domaine= Rs.getString("sous_domaine");
-                txt_raison_sociale_v=Rs.getString("raison_sociale");
-                txt_adresse = Rs.getString("adresse");
-                txt_commune = Rs.getString("commune");
-                txt_wilaya = Rs.getString("wilaya");
-                txt_tel_fixe = Rs.getString("tel_fixe");
-                txt_tel_port = Rs.getString("tel_port");
-                txt_email = Rs.getString("e_mail");
-                txt_nrcv = Rs.getString("nrc");
-                txt_nis = Rs.getString("nis");
-                txt_nart = Rs.getString("nart");
-                txt_ident_fiscal = Rs.getString("ident_fiscal");
-                txt_banq = Rs.getString("banq"); 
-                txt_entete_bon = Rs.getString("entete_bon"); 
-                //JOptionPane.showMessageDialog(null, txt_entete_bon);
-             }
-            JRDesignQuery newquery = new JRDesignQuery();
-            newquery.setText(sql);
-            jd.setQuery(newquery);
             //JOptionPane.showMessageDialog(null, txt_entete_bon);
-            HashMap hm = new HashMap();
+            HashMap hm = Entete_Activite.parametres(base);
+            hm.put(Etats.REQUETE, sql);
             hm.put("fact_spell", exp_spell);        
-            hm.put("domaine_activite_p",txt_domaine_actvite);
-            hm.put("sous_domaine_p",txt_sous_domaine);
-            hm.put("raison_sociale_p",txt_raison_sociale_v);
-            hm.put("adress_p",txt_adresse);
-            hm.put("commune_p",txt_commune);
-            hm.put("wilaya_p",txt_wilaya);
-            hm.put("tel_fixe_p",txt_tel_fixe);
-            hm.put("tel_port_p",txt_tel_port);
-            hm.put("e_mail_p",txt_email);
-            hm.put("nrc_p",txt_nrcv);
-            hm.put("nis_p",txt_nis);
-            hm.put("art_p",txt_nart);
-            hm.put("ident_fiscal_p",txt_ident_fiscal);
-            hm.put("banq_p",txt_banq);
-            hm.put("entete_p",txt_entete_bon);
-            JasperReport jr = JasperCompileManager.compileReport(jd);
-            JasperPrint jp = JasperFillManager.fillReport(jr,hm,cnx);               
-            JasperViewer.viewReport(jp, false); 
+            new Tache_Impression(this, etat, hm, Param_Activite.schema(base)).lancer();
             //JasperExportManager.exportReportToPdfFile(jp, "E:\\habib\\sample_report.pdf");
     } catch (Exception e) {
                 JOptionPane.showMessageDialog(null, "Erreur impression " + e.getMessage());
@@ -854,7 +780,7 @@ private void imprime(){
 
     private void btn_impression_ptit_formatActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btn_impression_ptit_formatActionPerformed
         try {
-            jd = JRXmlLoader.load("C:\\outil_dev\\report_smal_bl.jrxml");
+            etat = "report_smal_bl";
            // jd = JRXmlLoader.load("report_smal_bl.jrxml");
             sql = "SELECT bl.`NFact` AS fact_NFact,      bl.`Nclient` AS fact_Nclient,      bl.`date_fact` AS fact_date_fact,      bl.`montant_ht` AS fact_montant_ht,      bl.`timbre` AS fact_timbre,      bl.`TVA` AS fact_TVA,      bl.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article,  bl.`nbc` AS fact_nbc, bl.`date_bc` AS fact_date_bc, bl.`nom_preneur` AS fact_nom_preneur        FROM      `client` client INNER JOIN `bl` bl ON client.`Nclient` = bl.`Nclient` WHERE bl.nfact ='" + txt_nfact.getText() + "'";                    
              imprime();
@@ -865,7 +791,7 @@ private void imprime(){
 
     private void btn_impression_de_bonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btn_impression_de_bonActionPerformed
         try {
-            jd = JRXmlLoader.load("C:\\outil_dev\\report_ticket.jrxml");
+            etat = "report_ticket";
            // jd = JRXmlLoader.load("report_ticket.jrxml");
             //jd = JRXmlLoader.load("C:\\outil_dev\\report_bon.jrxml");
             // jd = JRXmlLoader.load("C:\\outil_dev\\report_ext_smal_bl.jrxml");
@@ -888,6 +814,13 @@ private void imprime(){
             JOptionPane.showMessageDialog(null, "avec la table Clients\n" + e.getMessage());
         }
     }
+    @Override
+    public void dispose() {
+        Tache_Bd.annuler(this);
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -931,10 +864,9 @@ private void imprime(){
     private ResultSet Rs;
     public Connection cnx;
     public String parametre, fichier_detail, fichier_master;
-    public String txt_domaine_actvite,txt_sous_domaine,txt_raison_sociale_v,txt_adresse,txt_commune,txt_email,txt_wilaya;
-    public String txt_tel_fixe,txt_tel_port,txt_nrcv,txt_nis,txt_nart,txt_ident_fiscal,txt_banq,txt_query,exp_spell;
-    public String sql,query, base,titre,txt_entete_bon;
-    public JasperDesign jd ;
+    public String txt_query,exp_spell;
+    public String sql,query, base,titre;
+    public String etat;
     int j, int_nfact;
     double mnt;
     MyTableModel tm;
@@ -5,7 +5,6 @@
 package Stock;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import javax.swing.JOptionPane;
@@ -138,16 +137,10 @@ public static void base_name (){
         try {
             // connexion avec la base de donnée 
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/information_schema", "root", "");
+            cnx = javaconnect.cnx_schema("information_schema");
             St = cnx.createStatement();  
             fillCombo1_an();
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();
-            String sql =" select db_name from  stock_table_parameter where code_activite= '"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-                tmp = Rs.getString("db_name");                                   
-            }
+            tmp = Param_Activite.db_name(base);
             for (j = 0; j < jComboBox1_an.getItemCount(); j++) {
                         
                         if (tmp.equals(jComboBox1_an.getItemAt(j).toString())) {
@@ -166,10 +159,13 @@ public static void base_name (){
          tmp = (String) jComboBox1_an.getSelectedItem();                        
         try {
             
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
+            javaconnect.liberer(cnx);
+            cnx = javaconnect.cnx_mysql();
             St = cnx.createStatement();
             String sql =" update stock_table_parameter set db_name ="+tmp+" where code_activite= '"+base+"'";
             St.executeUpdate(sql);                                   
+            Param_Activite.invalider(base);
+            Numerotation.recaler(base);
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans le comboBox \n" + e.getMessage());            
     }       
@@ -188,6 +184,12 @@ public static void base_name (){
     }//GEN-LAST:event_jButton1ActionPerformed
 
     
+    @Override
+    public void dispose() {
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -9,21 +9,17 @@ import java.awt.KeyboardFocusManager;
 import java.awt.event.KeyEvent;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
-import net.sf.jasperreports.engine.JasperCompileManager;
-import net.sf.jasperreports.engine.JasperFillManager;
-import net.sf.jasperreports.engine.JasperPrint;
-import net.sf.jasperreports.engine.JasperReport;
-import net.sf.jasperreports.engine.design.JRDesignQuery;
-import net.sf.jasperreports.engine.design.JasperDesign;
-import net.sf.jasperreports.engine.xml.JRXmlLoader;
-import net.sf.jasperreports.view.JasperViewer;
 
 /**
  *
@@ -79,26 +75,7 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
           try {
             fichier_master ="fact";
             fichier_detail ="detail_fact";
-            String query="select count(*) as nbre_enr FROM "+fichier_master+";";
-            St.execute(query);
-            Rs=St.executeQuery(query);
-            if (Rs.next()) {
-            String add1 = Rs.getString("nbre_enr");
-            if (Integer.parseInt(add1) > 0) {
-            query="select max(nfact) as nfact_max FROM "+fichier_master+";";
-            //JOptionPane.showMessageDialog(null, query);
-            Rs=St.executeQuery(query);
-            if (Rs.next()) {
-            String add2 = Rs.getString("nfact_max");
-            
-            int_nfact= Integer.parseInt(add2)+1;
-            } 
-            }else {
-            int_nfact=1;
-             }            
-            //JOptionPane.showMessageDialog(null,int_nfact );
-            //txt_nfact.setText(Integer.toString(int_nfact));
-            }
+            int_nfact = Numerotation.prendre(base, "n_fact");
     } catch (Exception e) {
     
     JOptionPane.showMessageDialog(null, "Erreur dans la table\n" + e.getMessage());
@@ -465,18 +442,8 @@ KeyboardFocusManager.getCurrentKeyboardFocusManager()
         try {
             // connexion avec la base de donnée 
             Class.forName(pilote);
-            cnx = DriverManager.getConnection("jdbc:mysql://localhost:3306/mysql", "root", "");
-            St = cnx.createStatement();  
-            String sql = "select db_name from stock_table_parameter where code_activite='"+base+"'";
-            Rs = St.executeQuery(sql);
-            if (Rs.next()) {
-            String var_cnx= "jdbc:mysql://localhost:3306/"+Rs.getString("db_name");
-            var_cnx=var_cnx+"_"+base;    
-            String user_bd="root";
-            String passwd_bd="";
-            cnx = DriverManager.getConnection(var_cnx, user_bd, passwd_bd);
+            cnx = javaconnect.cnx_activite(base);
             St = cnx.createStatement();
-            }
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur de connexcion\n" + e.getMessage());
         }
@@ -575,8 +542,6 @@ private void transferer() {
     
     try{
         String xnbc="", xnom_preneur="", xdate_bc="";
-            sql ="truncate table facture";
-            St.execute(sql);
             tot_montant_ht =0.00;
             tot_timbre=0.00;
             tot_tva=0.00;
@@ -584,6 +549,7 @@ private void transferer() {
             ind = false;
             
             Object [][] temp = new Object [nbre_enr][2];
+            List<String> bls = new ArrayList<>();
           for ( int j =0; j<nbre_enr; j++) {
                 
                 if ((Table_bl.getModel().getValueAt(j, rang_champ_select)).equals(true))
@@ -602,77 +568,74 @@ private void transferer() {
                    
                     code_cli= txt_code_cli.getText();
                     xdate_fact= Table_bl.getModel().getValueAt(j, 1).toString();
-                   //JOptionPane.showMessageDialog(null, txt_code_cli.getText()); 
-                    // vérifier que la table facture est vide à faire
-                 String sql = "SELECT nbc,DATE_bc,nom_preneur FROM bl where nclient = '"+ txt_code_cli.getText() +"'";  
-           // JOptionPane.showMessageDialog(null,sql);
-            St.execute(sql);
+                    bls.add(temp [j][0].toString());
+                }
+            }
+          if (ind) {
+                 sql = "SELECT nbc,DATE_bc,nom_preneur FROM bl where nclient = '"+ txt_code_cli.getText() +"'";  
             Rs=St.executeQuery(sql);
             if (Rs.next()) {
              xnbc = Rs.getString("nbc");
              xdate_bc = Rs.getString("date_bc");
              xnom_preneur = Rs.getString("nom_preneur");
             }
-                    sql ="insert into facture (NFact, Narticle, Qte, tva, pr_achat, prix, total_ligne)  select NFact, Narticle, Qte, tva, pr_achat, prix, total_ligne from detail_bl where nfact ='" + Table_bl.getModel().getValueAt(j, 0) +"'" ;                                      
-                    St.executeUpdate(sql);
-                     String query ="delete from detail_bl where nfact ='" + Table_bl.getModel().getValueAt(j, 0) +"'" ;
-                    St.executeUpdate(query);
-                    query ="delete from bl where nfact ='" + Table_bl.getModel().getValueAt(j, 0) +"'" ;
-                    St.executeUpdate(query);
-                
-                }
+            // les BL choisis en une requête par table
+            StringBuilder liste = new StringBuilder();
+            for (int i = 0; i < bls.size(); i++) {
+                liste.append(i == 0 ? "?" : ", ?");
             }
-     //     JOptionPane.showMessageDialog(null, "consulter la table facture");
-          if (ind) {
-          fill_prix_achat();    
-          Update_Table_bl_instance();    
-          Update_Table_bl();
-          txt_code_cli.setText("");
-          txt_raison_sociale.setText("");
+            Object[] nums = bls.toArray();
+          fill_prix_achat("(" + liste + ")", nums);    
             calcul_nfact();
-            String sql ="update facture set nfact = '" + Integer.toString(int_nfact)+ "'";
-            // JOptionPane.showMessageDialog(null,sql );
-            St.executeUpdate(sql);
             if (r ==1) {
             tot_timbre=0.00;
             }
-            String query = "insert into "+fichier_master+ "(nfact,nclient,date_fact,montant_ht,timbre,tva,autre_taxe,marge, banq,ncheque,nbc,date_bc,nom_preneur) values ('"
-            +int_nfact +"','"
-            +code_cli+"','"
-            +xdate_fact+"','"
-            +tot_montant_ht+"','"
-            +tot_timbre+"','"
-            +tot_tva+"','"
-            +tot_autre_taxe+"','"
-            +marge+"','"        
-            +txt_banq.getText()+"','"
-            +txt_ncheque.getText()+"','"
-            +xnbc+"','"
-            +xdate_bc+"','"
-            +xnom_preneur+"')";
-            // JOptionPane.showMessageDialog(null,query);
-            St.executeUpdate(query);
+            Enregistrement_Document doc = new Enregistrement_Document(base, fichier_master);
+            doc.maj("delete from facture");
+            doc.maj("insert into facture (NFact, Narticle, Qte, tva, pr_achat, prix, total_ligne)  select NFact, Narticle, Qte, tva, pr_achat, prix, total_ligne from detail_bl where nfact in (" + liste + ")", nums);
+            doc.maj("update facture set nfact = ?", Integer.toString(int_nfact));
+            doc.maj("insert into "+fichier_master+ "(nfact,nclient,date_fact,montant_ht,timbre,tva,autre_taxe,marge, banq,ncheque,nbc,date_bc,nom_preneur) values (?,?,?,?,?,?,?,?,?,?,?,?,?)",
+                    int_nfact, code_cli, xdate_fact, tot_montant_ht, tot_timbre, tot_tva, tot_autre_taxe, marge,
+                    txt_banq.getText(), txt_ncheque.getText(), xnbc, xdate_bc, xnom_preneur);
             //query ="insert into "+ fichier_detail+" (nfact, narticle, qte,tva,prix,total_ligne) SELECT nfact, narticle, sum(qte), tva , prix  , sum( prix*qte ) FROM facture GROUP BY narticle";
-            query ="insert into "+ fichier_detail+" (nfact, narticle, qte,tva,pr_achat, prix ,total_ligne) SELECT nfact, narticle, qte, tva , pr_achat, prix  , prix*qte  FROM facture ";
-            St.executeUpdate(query);
-            String message =" Voulez-vous imprimer la facture N°: "+ int_nfact ;
-            Object[] options1 = {"Oui","Non"};                 
-            int t = JOptionPane.showOptionDialog(null, message, " Impression",  JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE,null, options1,options1[0]);
-            if ( t == 0) {
-            // appel programme d'impression de facture
-            //JOptionPane.showMessageDialog(null,"impression en cours...");
-            imprimer_fact();
-            } else {
-            //JOptionPane.showMessageDialog(null,"impression différée...");
-            }
-            query ="truncate table facture";
-            St.execute(query);
-            btn_valider();
-            
+            doc.maj("insert into "+ fichier_detail+" (nfact, narticle, qte,tva,pr_achat, prix ,total_ligne) SELECT nfact, narticle, qte, tva , pr_achat, prix  , prix*qte  FROM facture ");
+            doc.maj("delete from detail_bl where nfact in (" + liste + ")", nums);
+            doc.maj("delete from bl where nfact in (" + liste + ")", nums);
+            doc.maj("delete from facture");
+            final int nfact = int_nfact;
+            new Tache_Enregistrement(this, doc) {
+                @Override
+                protected void enregistre() {
+                    Update_Table_bl_instance();
+                    Update_Table_bl();
+                    txt_code_cli.setText("");
+                    txt_raison_sociale.setText("");
+                    String message =" Voulez-vous imprimer la facture N°: "+ nfact ;
+                    Object[] options1 = {"Oui","Non"};
+                    int t = JOptionPane.showOptionDialog(null, message, " Impression",  JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE,null, options1,options1[0]);
+                    if ( t == 0) {
+                    // appel programme d'impression de facture
+                    imprimer_fact();
+                    }
+                    btn_valider();
+                    Update_Table_detail();
+                }
+
+                @Override
+                protected void refuse(Exception e) {
+                    try {
+                        Numerotation.rendre(base, "n_fact", nfact);
+                    } catch (SQLException ex) {
+                        System.out.println("Numéro non rendu : " + ex.getMessage());
+                    }
+                    JOptionPane.showMessageDialog(null, "Erreur dans la table\n" + e.getMessage());
+                }
+            }.lancer();
+          } else {
+            Update_Table_bl_instance();
+            Update_Table_bl();
+            Update_Table_detail();
           }
-        Update_Table_bl_instance();  
-        Update_Table_bl();
-        Update_Table_detail();
           // JOptionPane.showMessageDialog(null,"revenir au début...");
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Erreur dans la table\n" + e.getMessage());
@@ -680,13 +643,18 @@ private void transferer() {
     
 }
     
-private void fill_prix_achat() {
+/** Marge des BL choisis, avant leur transfert (nfacts : "(?, ?, ...)"). */
+private void fill_prix_achat(String nfacts, Object[] nums) {
         try {                        
-            sql ="select sum(qte*prix)-sum(qte*pr_achat) as marge FROM facture";
-            Rs = St.executeQuery(sql);
+            PreparedStatement ps = cnx.prepareStatement("select sum(qte*prix)-sum(qte*pr_achat) as marge FROM detail_bl where nfact in " + nfacts);
+            for (int i = 0; i < nums.length; i++) {
+                ps.setObject(i + 1, nums[i]);
+            }
+            Rs = ps.executeQuery();
             while (Rs.next()) {
                 marge = Rs.getString("marge");                
             }            
+            ps.close();
         } catch (Exception e) {
            JOptionPane.showMessageDialog(null, "Erreur dans la table facture\n" + e.getMessage());
         }
@@ -768,50 +736,16 @@ private void imprimer_fact() {
                 query = "insert into facture_temp (nfact, narticle, qte,tva,pr_achat, prix,total_ligne)  select nfact, narticle, qte,tva,pr_achat,prix,total_ligne from "+fichier_detail+" where nfact ='"+int_nfact+"'" ;
                 St.executeUpdate(query);
                                 
-                String query_a ="select * from activite";
-                Rs=St.executeQuery(query_a);
-             if (Rs.next()) { 
-                txt_domaine_actvite = Rs.getString("domaine_activite");                
-                txt_sous_domaine= Rs.getString("sous_domaine");
-                txt_raison_sociale_v=Rs.getString("raison_sociale");
-                txt_adresse = Rs.getString("adresse");
-                txt_commune = Rs.getString("commune");
-                txt_wilaya = Rs.getString("wilaya");
-                txt_tel_fixe = Rs.getString("tel_fixe");
-                txt_tel_port = Rs.getString("tel_port");
-                txt_nrcv = Rs.getString("nrc");
-                txt_nis = Rs.getString("nis");
-                txt_nart = Rs.getString("nart");
-                txt_ident_fiscal = Rs.getString("ident_fiscal");
-                txt_banq_v = Rs.getString("banq");                                
-             }             
             double mnt = tot_montant_ht+tot_timbre+tot_tva;
             exp_spell = Numb_to_Spell.spell(mnt, "");
             //JOptionPane.showMessageDialog(null,exp_spell);
-             jd = JRXmlLoader.load("C:\\outil_dev\\report_fact.jrxml");
+             etat = "report_fact";
              sql = "SELECT fact.`NFact` AS fact_NFact,      fact.`Nclient` AS fact_Nclient,      fact.`date_fact` AS fact_date_fact,      fact.`montant_ht` AS fact_montant_ht,      fact.`timbre` AS fact_timbre,      fact.`TVA` AS fact_TVA,      fact.`autre_taxe` AS fact_autre_taxe,      client.`Nclient` AS client_Nclient,      client.`Raison_sociale` AS client_Raison_sociale,      client.`adresse` AS client_adresse,      client.`NRC` AS client_NRC,      client.`Date_RC` AS client_Date_RC,      client.`Lieu_RC` AS client_Lieu_RC,      client.`I_Fiscal` AS client_I_Fiscal,      client.`N_article` AS client_N_article       FROM      `client` client INNER JOIN `fact` fact ON client.`Nclient` = fact.`Nclient` WHERE fact.nfact ='"+int_nfact+"'";
              
-            JRDesignQuery newquery = new JRDesignQuery();
-            newquery.setText(sql);
-            jd.setQuery(newquery);
-            HashMap hm = new HashMap();
+            HashMap hm = Entete_Activite.parametres(base);
+            hm.put(Etats.REQUETE, sql);
             hm.put("fact_spell", exp_spell);        
-            hm.put("domaine_activite_p",txt_domaine_actvite);
-            hm.put("sous_domaine_p",txt_sous_domaine);
-            hm.put("raison_sociale_p",txt_raison_sociale_v);
-            hm.put("adress_p",txt_adresse);
-            hm.put("commune_p",txt_commune);
-            hm.put("wilaya_p",txt_wilaya);
-            hm.put("tel_fixe_p",txt_tel_fixe);
-            hm.put("tel_port_p",txt_tel_port);
-            hm.put("nrc_p",txt_nrcv);
-            hm.put("nis_p",txt_nis);
-            hm.put("art_p",txt_nart);
-            hm.put("ident_fiscal_p",txt_ident_fiscal);
-            hm.put("banq_p",txt_banq_v);
-            JasperReport jr = JasperCompileManager.compileReport(jd);
-               JasperPrint jp = JasperFillManager.fillReport(jr,hm,cnx);               
-               JasperViewer.viewReport(jp, false); 
+            new Tache_Impression(this, etat, hm, Param_Activite.schema(base)).lancer();
             } catch (Exception e) {
                 JOptionPane.showMessageDialog(null, "Erreur impression " + e.getMessage());
             }            
@@ -821,6 +755,13 @@ private void imprimer_fact() {
 
 
 
+    @Override
+    public void dispose() {
+        Tache_Bd.annuler(this);
+        javaconnect.liberer(cnx);
+        super.dispose();
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -863,9 +804,9 @@ private void imprimer_fact() {
     public int nbre_enr,nbre_enr_sel, rang_champ_select=6,r, int_nfact;
     boolean sele_deselect = false,ind = false;
     String fichier_master,code_cli,xdate_fact,fichier_detail;
-    public JasperDesign jd ;
-    public String txt_domaine_actvite,txt_sous_domaine,txt_raison_sociale_v,txt_adresse,txt_commune,txt_wilaya,sql;
-    public String txt_tel_fixe,txt_tel_port,txt_nrcv,txt_nis,txt_nart,txt_ident_fiscal,txt_banq_v,txt_query,exp_spell;
+    public String etat;
+    public String sql;
+    public String txt_query,exp_spell;
     MyTableModel tm,tm1;
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JTable Table_bl;
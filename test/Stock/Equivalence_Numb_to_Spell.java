@@ -0,0 +1,139 @@
+/*
+ * Montant en lettres : la table contre l'ancien calcul.
+ */
+package Stock;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compare convert() et spell() à convert_hors_table() et spell_hors_table()
+ * (l'ancien calcul par DecimalFormat), et centimes() à BigDecimal, dans les
+ * locales où tourne l'application :
+ *   - convert : tous les nombres de 0 à 2 000 000 (chaque tranche de 0 à
+ *     999 dans chaque position) puis des tirages jusqu'à 10^12 et négatifs ;
+ *   - spell et centimes : k/100 et ses deux voisins en double, k/8 et
+ *     (2k+1)/200 (égalités d'arrondi) pour k de 0 à 2 000 000, des tirages
+ *     jusqu'à 10^11, et les bornes (1 Da, Integer.MAX_VALUE, 10^15, NaN...).
+ * Les tirages ont une graine fixe : un écart se reproduit à l'identique.
+ *
+ *   java -cp build/classes:build/test/classes Stock.Equivalence_Numb_to_Spell [tirages]
+ * Sort en erreur (code 1) au premier écart trouvé, après en avoir listé 10.
+ *
+ * @author IT
+ */
+public class Equivalence_Numb_to_Spell {
+
+    static final Locale[] LOCALES = {Locale.FRANCE, Locale.US, new Locale("ar", "DZ")};
+    static final long BORNE_EXHAUSTIVE = 2000000;
+
+    static long cas, ecarts;
+
+    public static void main(String[] args) {
+        int tirages = args.length > 0 ? Integer.parseInt(args[0]) : 3000000;
+        Locale initiale = Locale.getDefault();
+        try {
+            for (Locale l : LOCALES) {
+                Locale.setDefault(l);
+                long avant = ecarts;
+                verifier(tirages);
+                System.out.println(l + " : " + cas + " cas, " + (ecarts - avant) + " écart(s)");
+            }
+        } finally {
+            Locale.setDefault(initiale);
+        }
+        if (ecarts > 0) {
+            System.out.println("ECHEC");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    static void verifier(int tirages) {
+        cas = 0;
+        Random r = new Random(42);
+        for (long i = 0; i <= BORNE_EXHAUSTIVE; i++) {
+            convert(i);
+        }
+        for (int i = 0; i < tirages; i++) {
+            convert((long) (r.nextDouble() * 1e12));
+            convert(r.nextLong() % 2000000000000L);
+        }
+        for (long k = 0; k <= BORNE_EXHAUSTIVE; k++) {
+            double v = k / 100.0;
+            spell(v);
+            spell(Math.nextUp(v));
+            spell(Math.nextAfter(v, 0));
+            spell(k / 8.0);
+            spell((2 * k + 1) / 200.0);
+        }
+        for (int i = 0; i < tirages; i++) {
+            spell(r.nextDouble() * Math.pow(10, r.nextInt(12)));
+            spell(Math.floor(r.nextDouble() * 1e11) / 100);
+            spell(-r.nextDouble() * 1e6);
+            double egalite = (r.nextInt(1000000) * 2 + 1) / 200.0;
+            spell(Math.nextUp(egalite));
+            spell(Math.nextAfter(egalite, 0));
+        }
+        for (double v : new double[]{0, -0.0, 0.004, 0.005, 0.125, 0.375, 0.5, 0.994999, 0.995, 0.9951, 1,
+            2147483647.99, 2147483647.995, 2147483648.0, 999999999999.99, 1e15, 1e20, Double.NaN,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -1, -12.5, Double.MIN_VALUE, Double.MAX_VALUE}) {
+            spell(v);
+        }
+    }
+
+    static void convert(long n) {
+        comparer("convert " + n, ancien_convert(n), nouveau_convert(n));
+    }
+
+    static void spell(double v) {
+        comparer("spell " + v, ancien_spell(v), nouveau_spell(v));
+        if (v >= 0 && v < 1e15) {
+            long attendu = new BigDecimal(v).movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).longValue();
+            comparer("centimes " + v, String.valueOf(attendu), String.valueOf(Numb_to_Spell.centimes(v)));
+        }
+    }
+
+    static void comparer(String quoi, String attendu, String obtenu) {
+        cas++;
+        if (!attendu.equals(obtenu) && ecarts++ < 10) {
+            System.out.println(Locale.getDefault() + " " + quoi + "\n  attendu : " + attendu + "\n  obtenu  : " + obtenu);
+        }
+    }
+
+    // les exceptions font partie du résultat : l'ancien calcul refuse les négatifs
+
+    static String ancien_convert(long n) {
+        try {
+            return Numb_to_Spell.convert_hors_table(n);
+        } catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+
+    static String nouveau_convert(long n) {
+        try {
+            return Numb_to_Spell.convert(n);
+        } catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+
+    static String ancien_spell(double v) {
+        try {
+            return Numb_to_Spell.spell_hors_table(v, "");
+        } catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+
+    static String nouveau_spell(double v) {
+        try {
+            return Numb_to_Spell.spell(v, "");
+        } catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+}
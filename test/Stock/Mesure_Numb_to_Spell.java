@@ -0,0 +1,64 @@
+/*
+ * Montant en lettres : temps par appel, table contre ancien calcul.
+ */
+package Stock;
+
+import java.util.Random;
+
+/**
+ * Temps moyen d'un appel à spell() et convert(), par la table et par
+ * l'ancien calcul, sur des montants de 0 à 10 000 000 Da au centime.
+ * Les premiers tours chauffent la JIT et ne sont pas comptés ; le total
+ * imprimé à la fin empêche la JIT d'écarter les appels.
+ *
+ *   java -cp build/classes:build/test/classes Stock.Mesure_Numb_to_Spell [tours]
+ *
+ * @author IT
+ */
+public class Mesure_Numb_to_Spell {
+
+    static final int MONTANTS = 100000;
+    static final int CHAUFFE = 5;
+
+    public static void main(String[] args) {
+        int tours = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        Random r = new Random(1);
+        double[] montants = new double[MONTANTS];
+        long[] nombres = new long[MONTANTS];
+        for (int i = 0; i < MONTANTS; i++) {
+            montants[i] = Math.floor(r.nextDouble() * 1e9) / 100;
+            nombres[i] = (long) (r.nextDouble() * 1e12);
+        }
+        long total = 0;
+        long[] ns = new long[4];
+        for (int t = 0; t < CHAUFFE + tours; t++) {
+            long d = System.nanoTime();
+            for (double m : montants) {
+                total += Numb_to_Spell.spell_hors_table(m, "").length();
+            }
+            long d1 = System.nanoTime();
+            for (double m : montants) {
+                total += Numb_to_Spell.spell(m, "").length();
+            }
+            long d2 = System.nanoTime();
+            for (long n : nombres) {
+                total += Numb_to_Spell.convert_hors_table(n).length();
+            }
+            long d3 = System.nanoTime();
+            for (long n : nombres) {
+                total += Numb_to_Spell.convert(n).length();
+            }
+            long d4 = System.nanoTime();
+            if (t >= CHAUFFE) {
+                ns[0] += d1 - d;
+                ns[1] += d2 - d1;
+                ns[2] += d3 - d2;
+                ns[3] += d4 - d3;
+            }
+        }
+        long appels = (long) tours * MONTANTS;
+        System.out.println("spell   : ancien " + ns[0] / appels + " ns, table " + ns[1] / appels + " ns");
+        System.out.println("convert : ancien " + ns[2] / appels + " ns, table " + ns[3] / appels + " ns");
+        System.out.println("(" + total + ")");
+    }
+}
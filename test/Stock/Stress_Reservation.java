@@ -0,0 +1,133 @@
+/*
+ * Réservations concurrentes sur un même article.
+ */
+package Stock;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * THREADS postes réservent chacun QTE, ESSAIS_PAR_POSTE fois, sur un seul
+ * article dont le stock ne couvre pas toutes les demandes, puis sur un
+ * article au stock NULL. Le stock final doit valoir le stock de départ
+ * moins les réservations acceptées :
+ *   - sans contrôle (défaut), toutes sont acceptées, le stock devient
+ *     négatif ;
+ *   - avec contrôle, les refus s'ajoutent aux acceptées et le stock ne
+ *     descend jamais sous 0.
+ *
+ * Travaille dans un schéma jetable, créé puis supprimé :
+ *   java -cp build/classes:build/test/classes:librairie_St/* Stock.Stress_Reservation
+ *        [jdbc:mysql://localhost:3306/ [utilisateur [mot_de_passe]]]
+ * Sort en erreur (code 1) si une mise à jour a été perdue.
+ *
+ * @author IT
+ */
+public class Stress_Reservation {
+
+    static final String SCHEMA = "stress_reservation";
+    static final int THREADS = 16;
+    static final int ESSAIS_PAR_POSTE = 200;
+    static final int QTE = 3;
+    static final int STOCK_DEPART = 5000;
+
+    static String url, user, mdp;
+    static boolean echec;
+
+    public static void main(String[] args) throws Exception {
+        url = args.length > 0 ? args[0] : "jdbc:mysql://localhost:3306/";
+        user = args.length > 1 ? args[1] : "root";
+        mdp = args.length > 2 ? args[2] : "";
+        Class.forName("com.mysql.jdbc.Driver");
+
+        try (Connection cnx = DriverManager.getConnection(url, user, mdp); Statement st = cnx.createStatement()) {
+            st.executeUpdate("drop database if exists " + SCHEMA);
+            st.executeUpdate("create database " + SCHEMA);
+            st.executeUpdate("create table " + SCHEMA + ".article (narticle varchar(20) primary key,"
+                    + " stock_f int default null, stock_bl int default null) engine=InnoDB");
+        }
+        try {
+            for (boolean controle : new boolean[]{false, true}) {
+                essayer("A1", STOCK_DEPART, controle);
+                essayer("A2", null, controle);
+            }
+        } finally {
+            executer("drop database " + SCHEMA);
+        }
+        if (echec) {
+            System.out.println("ECHEC");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    static void essayer(final String narticle, Integer depart, final boolean controle) throws Exception {
+        executer("delete from " + SCHEMA + ".article");
+        executer("insert into " + SCHEMA + ".article values ('" + narticle + "', " + depart + ", 0)");
+
+        final AtomicInteger acceptees = new AtomicInteger();
+        final AtomicInteger refusees = new AtomicInteger();
+        final List<Exception> erreurs = new ArrayList<>();
+        final CountDownLatch top = new CountDownLatch(1);
+        List<Thread> postes = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread t = new Thread("poste-" + i) {
+                @Override
+                public void run() {
+                    try (Connection cnx = DriverManager.getConnection(url + SCHEMA, user, mdp)) {
+                        top.await();
+                        for (int j = 0; j < ESSAIS_PAR_POSTE; j++) {
+                            try {
+                                Mouvement_Stock.reserver(cnx, "stock_f", narticle, QTE, controle);
+                                acceptees.incrementAndGet();
+                            } catch (Mouvement_Stock.Stock_Insuffisant e) {
+                                refusees.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        synchronized (erreurs) {
+                            erreurs.add(e);
+                        }
+                    }
+                }
+            };
+            postes.add(t);
+            t.start();
+        }
+        top.countDown();
+        for (Thread t : postes) {
+            t.join();
+        }
+
+        int stock;
+        try (Connection cnx = DriverManager.getConnection(url + SCHEMA, user, mdp); Statement st = cnx.createStatement()) {
+            ResultSet rs = st.executeQuery("select stock_f from article where narticle = '" + narticle + "'");
+            rs.next();
+            stock = rs.getInt(1);
+        }
+        int attendu = (depart == null ? 0 : depart) - acceptees.get() * QTE;
+        System.out.println(narticle + (controle ? " avec" : " sans") + " contrôle : acceptées " + acceptees
+                + ", refusées " + refusees + ", erreurs " + erreurs.size() + ", stock " + stock
+                + " (attendu " + attendu + ")");
+        for (Exception e : erreurs) {
+            e.printStackTrace();
+        }
+        if (stock != attendu || !erreurs.isEmpty()
+                || acceptees.get() + refusees.get() != THREADS * ESSAIS_PAR_POSTE
+                || (controle ? stock < 0 : refusees.get() > 0)) {
+            echec = true;
+        }
+    }
+
+    static void executer(String sql) throws Exception {
+        try (Connection cnx = DriverManager.getConnection(url, user, mdp); Statement st = cnx.createStatement()) {
+            st.executeUpdate(sql);
+        }
+    }
+}